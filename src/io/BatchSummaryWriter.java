@@ -0,0 +1,79 @@
+package io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import problem.BatchJob;
+
+// Combines the estatísticas.txt figures of every job of a batch into one CSV file, one line per job
+public class BatchSummaryWriter {
+	// Each "Name: value" line of the file, in order
+	public static Map<String, String> readStatistics(String filename) throws IOException {
+		Map<String, String> statistics = new LinkedHashMap<>();
+		
+		if (!new File(filename).exists()) return statistics; // The job didn't find a solution
+		
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(filename), "utf-8"));
+		String fileLine;
+		
+		while ((fileLine = reader.readLine()) != null) {
+			fileLine = fileLine.replace("\ufeff", "");
+			int separator = fileLine.indexOf(": ");
+			
+			if (separator < 0) continue;
+			
+			statistics.put(fileLine.substring(0, separator), fileLine.substring(separator + 2));
+		}
+		
+		reader.close();
+		
+		return statistics;
+	}
+	
+	// Jobs that failed have null statistics
+	public static void writeSummary(String filename, Map<BatchJob, Map<String, String>> statistics, Map<BatchJob, Double> runTimes) throws IOException {
+		List<String> names = new ArrayList<>();
+		
+		for (Map<String, String> jobStatistics : statistics.values()) {
+			if (jobStatistics == null) continue;
+			
+			for (String name : jobStatistics.keySet()) {
+				if (!names.contains(name)) names.add(name);
+			}
+		}
+		
+		String output = "TRABALHO;SEMESTRE;VERSAO;OBRIGATORIA;ESTADO;TEMPO";
+		
+		for (String name : names) {
+			output += ";" + name;
+		}
+		
+		for (Map.Entry<BatchJob, Map<String, String>> jobStatistics : statistics.entrySet()) {
+			BatchJob job = jobStatistics.getKey();
+			Double runTime = runTimes.get(job);
+			
+			output += "\r\n" + job.getName() + ";" + job.getSemester() + ";" + job.getProcVersion() + ";" + (job.getMandatoryAssignment() ? "1" : "0") + ";"
+					+ (jobStatistics.getValue() == null ? "falhou" : jobStatistics.getValue().isEmpty() ? "sem solução" : "concluído") + ";" + (runTime != null ? runTime : "");
+			
+			for (String name : names) {
+				String value = (jobStatistics.getValue() != null) ? jobStatistics.getValue().get(name) : null;
+				output += ";" + (value != null ? value : "");
+			}
+		}
+		
+		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filename), "utf-8"));
+		writer.write("\ufeff"); // Adding BOM for compatibility with Excel
+		writer.write(output);
+		writer.close();
+	}
+}
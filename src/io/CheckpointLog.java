@@ -0,0 +1,157 @@
+package io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.BufferedInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// Append-only binary log of incumbent solutions. The header lists every assignment variable as a (student, course, group) code triple,
+// and each record holds a timestamp, the objective value and the indices of the variables set to 1, followed by a CRC32 so torn writes are detected
+public class CheckpointLog {
+	private static final int MAGIC = 0x43484b31; // "CHK1"
+	
+	private FileChannel channel;
+	private ExecutorService executor; // Records are written on this thread so the solver never waits for the disk
+	private double bestObjective;
+	
+	public CheckpointLog(String filename, List<String[]> variableKeys) throws IOException {
+		Path path = Paths.get(filename);
+		Path tempPath = Paths.get(filename + ".tmp");
+		
+		ByteArrayOutputStream header = new ByteArrayOutputStream();
+		DataOutputStream headerStream = new DataOutputStream(header);
+		headerStream.writeInt(MAGIC);
+		headerStream.writeInt(variableKeys.size());
+		
+		for (String[] variableKey : variableKeys) {
+			headerStream.writeUTF(variableKey[0]); // Student code
+			headerStream.writeUTF(variableKey[1]); // Course code
+			headerStream.writeUTF(variableKey[2]); // Group code
+		}
+		
+		headerStream.close();
+		
+		// The new log replaces the previous one in a single step, so there's always a readable log on disk
+		Files.write(tempPath, header.toByteArray());
+		Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		
+		this.channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		this.executor = Executors.newSingleThreadExecutor();
+		this.bestObjective = Double.NEGATIVE_INFINITY;
+	}
+	
+	// Queues an incumbent to be written, if it improves on the best one logged so far (the objective is maximized)
+	public synchronized void append(double objective, int[] assignedVariables) {
+		if (objective <= bestObjective) return;
+		
+		bestObjective = objective;
+		long timestamp = System.currentTimeMillis();
+		
+		executor.submit(() -> {
+			ByteBuffer payload = ByteBuffer.allocate(8 + 8 + 4 + 4 * assignedVariables.length);
+			payload.putLong(timestamp);
+			payload.putDouble(objective);
+			payload.putInt(assignedVariables.length);
+			for (int variable : assignedVariables) payload.putInt(variable);
+			payload.flip();
+			
+			CRC32 crc = new CRC32();
+			crc.update(payload.array(), 0, payload.limit());
+			
+			ByteBuffer record = ByteBuffer.allocate(4 + payload.limit() + 4);
+			record.putInt(payload.limit());
+			record.put(payload);
+			record.putInt((int) crc.getValue());
+			record.flip();
+			
+			try {
+				while (record.hasRemaining()) channel.write(record);
+				channel.force(false);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		});
+	}
+	
+	public void close() throws IOException {
+		executor.shutdown();
+		
+		try {
+			executor.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		
+		channel.close();
+	}
+	
+	// Returns the (student, course, group) code triples assigned in the best complete record of the log, or null if there isn't one
+	public static List<String[]> readBestSolution(String filename) throws IOException {
+		if (!Files.exists(Paths.get(filename))) return null;
+		
+		DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)));
+		List<String[]> bestSolution = null;
+		
+		try {
+			if (input.readInt() != MAGIC) return null;
+			
+			List<String[]> variableKeys = new ArrayList<>();
+			int numVariables = input.readInt();
+			
+			for (int i = 0; i < numVariables; ++i) {
+				variableKeys.add(new String[] {input.readUTF(), input.readUTF(), input.readUTF()});
+			}
+			
+			double bestObjective = Double.NEGATIVE_INFINITY;
+			
+			while (true) {
+				int length = input.readInt();
+				if (length < 20) break; // Corrupted record
+				
+				byte[] payload = new byte[length];
+				input.readFully(payload);
+				int storedCrc = input.readInt();
+				
+				CRC32 crc = new CRC32();
+				crc.update(payload);
+				if ((int) crc.getValue() != storedCrc) break; // Torn or corrupted write; everything before it is still good
+				
+				ByteBuffer record = ByteBuffer.wrap(payload);
+				record.getLong(); // Timestamp
+				double objective = record.getDouble();
+				int numAssigned = record.getInt();
+				
+				if (objective > bestObjective) {
+					bestObjective = objective;
+					bestSolution = new ArrayList<>();
+					
+					for (int i = 0; i < numAssigned; ++i) {
+						bestSolution.add(variableKeys.get(record.getInt()));
+					}
+				}
+			}
+		} catch (EOFException e) {
+			// End of the log (possibly in the middle of a record that was never completely written)
+		} finally {
+			input.close();
+		}
+		
+		return bestSolution;
+	}
+}
@@ -0,0 +1,79 @@
+package io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Splits regions of a text file into line-aligned chunks, memory-maps each chunk and processes the chunks on every core.
+// The results are returned in file order, so merging them gives the same result as reading the file on one thread
+class ChunkedFileReader {
+	private static final long MIN_CHUNK_SIZE = 256 * 1024;
+	
+	public interface ChunkProcessor<T> {
+		T process(ByteBuffer chunk, long fileOffset);
+	}
+	
+	// Regions are [start, end) byte offsets that start at the beginning of a line and end at the end of one (or of the file)
+	public static <T> List<T> process(String filename, List<long[]> regions, ChunkProcessor<T> processor) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			long totalSize = 0;
+			
+			for (long[] region : regions) {
+				totalSize += region[1] - region[0];
+			}
+			
+			long chunkSize = Math.max(MIN_CHUNK_SIZE, totalSize / (Runtime.getRuntime().availableProcessors() * 4));
+			List<long[]> chunks = new ArrayList<>();
+			
+			for (long[] region : regions) {
+				long chunkStart = region[0];
+				
+				while (chunkStart < region[1]) {
+					long chunkEnd = (region[1] - chunkStart <= chunkSize) ? region[1] : findLineEnd(channel, chunkStart + chunkSize, region[1]);
+					
+					chunks.add(new long[] {chunkStart, chunkEnd});
+					chunkStart = chunkEnd;
+				}
+			}
+			
+			try {
+				return chunks.parallelStream().map(chunk -> {
+					try {
+						return processor.process(channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]), chunk[0]);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+				}).collect(Collectors.toList());
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		}
+	}
+	
+	// Offset just after the first line break at or after 'position' (or 'limit' if there's none before it)
+	static long findLineEnd(FileChannel channel, long position, long limit) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		
+		while (position < limit) {
+			buffer.clear();
+			buffer.limit((int) Math.min(buffer.capacity(), limit - position));
+			
+			int read = channel.read(buffer, position);
+			if (read <= 0) break;
+			
+			for (int i = 0; i < read; ++i) {
+				if (buffer.get(i) == '\n') return position + i + 1;
+			}
+			
+			position += read;
+		}
+		
+		return limit;
+	}
+}
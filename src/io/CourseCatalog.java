@@ -0,0 +1,68 @@
+package io;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.Course;
+
+// The contents of uc.csv, read once and shared by every problem built from it. Course objects hold each problem's own state (groups, enrollments),
+// so every problem gets new ones from createCourses instead of sharing them
+public class CourseCatalog {
+	private String filename;
+	private List<Entry> entries;
+	
+	public CourseCatalog(String filename) throws IOException {
+		this.filename = filename;
+		this.entries = new ArrayList<>();
+		
+		BufferedReader reader = new BufferedReader(new FileReader(filename));
+		reader.readLine();
+		String fileLine;
+		
+		while ((fileLine = reader.readLine()) != null) {
+			String[] line = fileLine.split(";");
+			
+			int weeklyTimeslots = Integer.parseInt(line[4]) * 2; // Input data is in hours (2*timeslots)
+			boolean mandatory = (Integer.parseInt(line[5]) == 0) ? true : false;
+			
+			entries.add(new Entry(line[0], line[3], weeklyTimeslots, mandatory));
+		}
+		
+		reader.close();
+	}
+	
+	public String getFilename() {
+		return filename;
+	}
+	
+	public Map<String, Course> createCourses(int semester) {
+		Map<String, Course> courses = new HashMap<>();
+		
+		for (Entry entry : entries) {
+			if (!((semester == 1 && entry.semester.equals("1S")) || (semester == 2 && entry.semester.equals("2S")))) continue;
+			
+			courses.put(entry.code, new Course(entry.code, entry.mandatory, entry.weeklyTimeslots));
+		}
+		
+		return courses;
+	}
+	
+	private static class Entry {
+		private final String code;
+		private final String semester;
+		private final int weeklyTimeslots;
+		private final boolean mandatory;
+		
+		public Entry(String code, String semester, int weeklyTimeslots, boolean mandatory) {
+			this.code = code;
+			this.semester = semester;
+			this.weeklyTimeslots = weeklyTimeslots;
+			this.mandatory = mandatory;
+		}
+	}
+}
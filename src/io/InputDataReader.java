@@ -1,11 +1,13 @@
 package io;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -15,16 +17,19 @@ import model.Group;
 import model.Schedule;
 import model.Student;
 import model.StudentPreference;
+import problem.CapacityScenario;
 
 public class InputDataReader {
-	private String coursesFilename, groupsFilename, scheduleFilename, groupCompositesFilename, preferencesFilename, gradesFilename, procVersion;
+	private CourseCatalog courseCatalog;
+	private String groupsFilename, scheduleFilename, groupCompositesFilename, preferencesFilename, gradesFilename, procVersion;
 	private int semester;
 	private Map<String, Course> courses;
 	private Schedule schedule;
 	private Map<String, Student> students;
+	private List<String[]> inputProblems; // (course, group, description) of the rows that were skipped because of unknown codes
 	
-	public InputDataReader(String coursesFilename, String groupsFilename, String scheduleFilename, String groupCompositesFilename, String preferencesFilename, String gradesFilename, int semester, String procVersion) throws IOException {
-		this.coursesFilename = coursesFilename;
+	public InputDataReader(CourseCatalog courseCatalog, String groupsFilename, String scheduleFilename, String groupCompositesFilename, String preferencesFilename, String gradesFilename, int semester, String procVersion) throws IOException {
+		this.courseCatalog = courseCatalog;
 		this.groupsFilename = groupsFilename;
 		this.scheduleFilename = scheduleFilename;
 		this.groupCompositesFilename = groupCompositesFilename;
@@ -35,6 +40,7 @@ public class InputDataReader {
 		this.courses = new HashMap<>();
 		this.schedule = new Schedule();
 		this.students = new HashMap<>();
+		this.inputProblems = new ArrayList<>();
 	}
 	
 	public void readData() throws IOException {
@@ -58,24 +64,36 @@ public class InputDataReader {
 		return students;
 	}
 	
-	private void readCourses() throws IOException {
-		BufferedReader reader = new BufferedReader(new FileReader(coursesFilename));
+	public List<String[]> getInputProblems() {
+		return inputProblems;
+	}
+	
+	// One line per change (CENARIO;UC;TURMA;VAGAS), lines with the same scenario name are evaluated together
+	public static List<CapacityScenario> readCapacityScenarios(String filename) throws IOException {
+		Map<String, CapacityScenario> scenarios = new LinkedHashMap<>();
+		
+		BufferedReader reader = new BufferedReader(new FileReader(filename));
 		reader.readLine();
 		String fileLine;
 		
 		while ((fileLine = reader.readLine()) != null) {
 			String[] line = fileLine.split(";");
 			
-			if (!((semester == 1 && line[3].equals("1S")) || (semester == 2 && line[3].equals("2S")))) continue;
+			String scenarioName = line[0];
+			String courseCode = line[1];
+			String groupCode = line[2];
+			int seats = Integer.parseInt(line[3]);
 			
-			String courseCode = line[0];
-			int weeklyTimeslots = Integer.parseInt(line[4]) * 2; // Input data is in hours (2*timeslots)
-			boolean mandatory = (Integer.parseInt(line[5]) == 0) ? true : false;
-			
-			courses.put(courseCode, new Course(courseCode, mandatory, weeklyTimeslots));
+			scenarios.computeIfAbsent(scenarioName, CapacityScenario::new).addChange(courseCode, groupCode, seats);
 		}
 		
 		reader.close();
+		
+		return new ArrayList<>(scenarios.values());
+	}
+	
+	private void readCourses() {
+		courses = courseCatalog.createCourses(semester);
 	}
 	
 	private void readGroups() throws IOException {
@@ -90,8 +108,15 @@ public class InputDataReader {
 			String groupCode = line[1];
 			int groupCapacity = Integer.parseInt(line[2]);
 			
+			Course thisCourse = courses.get(courseCode);
+			
+			if (thisCourse == null) {
+				inputProblems.add(new String[] {courseCode, groupCode, "UC desconhecida em " + new File(groupsFilename).getName()});
+				continue;
+			}
+			
 			Group thisGroup = new Group(groupCode, groupCapacity, 1f);
-			courses.get(courseCode).getGroups().put(groupCode, thisGroup);
+			thisCourse.getGroups().put(groupCode, thisGroup);
 		}
 		
 		reader.close();
@@ -146,9 +171,19 @@ public class InputDataReader {
 			Course thisCourse = courses.get(courseCode);
 			Set<String> groupsFromComposite = groupComposites.get(groupCode);
 			
+			if (thisCourse == null) {
+				inputProblems.add(new String[] {courseCode, groupCode, "UC desconhecida em " + new File(scheduleFilename).getName()});
+				continue;
+			}
+			
 			if (groupsFromComposite == null) { // If this is not a group composite, add it to the schedule
 				Group thisGroup = thisCourse.getGroups().get(groupCode);
 				
+				if (thisGroup == null) {
+					inputProblems.add(new String[] {courseCode, groupCode, "turma desconhecida em " + new File(scheduleFilename).getName()});
+					continue;
+				}
+				
 				adjust1stYearCapacity(thisGroup);
 				schedule.addCourseGroup(thisCourse, thisGroup, isPracticalClass, weekDay, startTime, duration);
 			}
@@ -183,16 +218,12 @@ public class InputDataReader {
 		}
 	}
 	
+	// Only the rows of this process version are read, through the file's index
 	private void readStudents() throws IOException {
-		BufferedReader reader = new BufferedReader(new FileReader(preferencesFilename));
-		reader.readLine();
-		String fileLine;
+		PreferencesIndex index = PreferencesIndex.load(preferencesFilename);
 		
-		while ((fileLine = reader.readLine()) != null) {
-			String[] line = fileLine.split(";");
-			
-			if (!line[0].equals(procVersion)) continue;
-			
+		// The rows are parsed in parallel but come back in file order, so the preferences are built exactly as if the file was read line by line
+		for (String[] line : index.readRows(preferencesFilename, procVersion)) {
 			String studentCode = line[1];
 			String studentName = line[2];
 			int preferenceOrder = Integer.parseInt(line[6]);
@@ -215,25 +246,30 @@ public class InputDataReader {
 			}
 			
 			Course thisCourse = courses.get(courseCode);
-			Group thisGroup = thisCourse.getGroups().get(groupCode);
+			Group thisGroup = (thisCourse != null) ? thisCourse.getGroups().get(groupCode) : null;
+			
+			if (thisGroup == null) { // The whole preference is dropped once every row was read, since it can't be fulfilled as the student made it
+				thisPreference.setValid(false);
+				inputProblems.add(new String[] {courseCode, groupCode, (thisCourse == null ? "UC" : "turma") + " desconhecida em " + new File(preferencesFilename).getName()
+						+ " (estudante " + studentCode + ", opção " + preferenceOrder + ")"});
+				continue;
+			}
 			
 			thisPreference.addCourseGroupPair(thisCourse, thisGroup);
 			
 			thisStudent.getEnrolledCourses().add(thisCourse); // Add it to the list of this student's enrollments
 			thisStudent.setWantedPeriodsTrue(thisGroup.getOccupiedPeriods());
 		}
-		
-		reader.close();
 	}
 	
 	private void makeStudentsAdjustments() {
 		for (Student student : students.values()) {
-			// Remove duplicate preferences
+			// Remove invalid and duplicate preferences (the rest are numbered again from 1, so preference N is still at index N - 1)
 			List<StudentPreference> preferences = student.getPreferences();
 			List<StudentPreference> preferencesWithoutDuplicates = new ArrayList<>();
 			
 			for (StudentPreference preference : preferences) {
-				if (!preferencesWithoutDuplicates.contains(preference)) {
+				if (preference.isValid() && !preferencesWithoutDuplicates.contains(preference)) {
 					preferencesWithoutDuplicates.add(preference);
 					preference.setOrder(preferencesWithoutDuplicates.size());
 				}
@@ -0,0 +1,122 @@
+package io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Location of a built model saved in CPLEX's SAV format, plus an index file with every variable's coefficient in each objective sum and how each
+// sum is normalized. Both are named after a hash of the input files and of everything else that changes the model's structure (but not the weights)
+public class ModelCache {
+	private String modelFilename;
+	private String indexFilename;
+	
+	public ModelCache(String cacheDirectory, String[] inputFilenames, String structureKey) throws IOException {
+		String hash = hash(inputFilenames, structureKey);
+		
+		new File(cacheDirectory).mkdirs();
+		
+		this.modelFilename = cacheDirectory + "modelo_" + hash.substring(0, 16) + ".sav";
+		this.indexFilename = cacheDirectory + "modelo_" + hash.substring(0, 16) + ".idx";
+	}
+	
+	// SHA-256 (in hexadecimal) of the contents of the files, followed by the key
+	public static String hash(String[] inputFilenames, String key) throws IOException {
+		MessageDigest digest;
+		
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		
+		for (String inputFilename : inputFilenames) {
+			digest.update(Files.readAllBytes(Paths.get(inputFilename)));
+			digest.update((byte) 0);
+		}
+		
+		digest.update(key.getBytes(StandardCharsets.UTF_8));
+		
+		String hash = "";
+		
+		for (byte b : digest.digest()) {
+			hash += String.format("%02x", b);
+		}
+		
+		return hash;
+	}
+	
+	public String getModelFilename() {
+		return modelFilename;
+	}
+	
+	public boolean exists() {
+		return new File(modelFilename).exists() && new File(indexFilename).exists();
+	}
+	
+	// One line with the offsets of every sum, one with their scales, then one line per variable: its name followed by its coefficient in every sum
+	public void writeIndex(double[] offsets, double[] scales, Map<String, double[]> coefficients) throws IOException {
+		BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(indexFilename), "utf-8"));
+		
+		writer.write(join(offsets));
+		writer.write("\r\n" + join(scales));
+		
+		for (Map.Entry<String, double[]> variableCoefficients : coefficients.entrySet()) {
+			writer.write("\r\n" + variableCoefficients.getKey() + "\t" + join(variableCoefficients.getValue()));
+		}
+		
+		writer.close();
+	}
+	
+	// Fills 'offsets' and 'scales' and returns each variable's coefficients by name
+	public Map<String, double[]> readIndex(double[] offsets, double[] scales) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFilename), "utf-8"));
+		Map<String, double[]> coefficients = new LinkedHashMap<>();
+		
+		split(reader.readLine(), offsets);
+		split(reader.readLine(), scales);
+		
+		String line;
+		
+		while ((line = reader.readLine()) != null) {
+			int separator = line.indexOf('\t');
+			double[] variableCoefficients = new double[offsets.length];
+			
+			split(line.substring(separator + 1), variableCoefficients);
+			coefficients.put(line.substring(0, separator), variableCoefficients);
+		}
+		
+		reader.close();
+		
+		return coefficients;
+	}
+	
+	private static String join(double[] values) {
+		String output = "";
+		
+		for (int i = 0; i < values.length; ++i) {
+			output += (i > 0 ? "\t" : "") + Double.toString(values[i]); // Exact round trip
+		}
+		
+		return output;
+	}
+	
+	private static void split(String line, double[] values) {
+		String[] fields = line.split("\t");
+		
+		for (int i = 0; i < values.length; ++i) {
+			values[i] = Double.parseDouble(fields[i]);
+		}
+	}
+}
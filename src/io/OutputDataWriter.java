@@ -5,16 +5,17 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
 import ilog.concert.IloException;
 import ilog.concert.IloIntVar;
-import ilog.concert.IloLinearIntExpr;
 import ilog.cplex.IloCplex;
 import model.Course;
 import model.Group;
 import model.Student;
 import model.StudentPreference;
+import model.StudentTimetable;
 
 public class OutputDataWriter {
 	private IloCplex cplex;
@@ -67,8 +68,82 @@ public class OutputDataWriter {
 	}
 	
 	public void writeOutputData() throws IloException, IOException {
-		writeStudentsAssignments();
-		writeGroupStats();
+		writeOutputData(readSolutionTimetables());
+	}
+	
+	// Writes a solution that didn't necessarily come from CPLEX (students missing from the map aren't assigned to anything)
+	public void writeOutputData(Map<Student, StudentTimetable> timetables) throws IOException {
+		writeStudentsAssignments(timetables);
+		writeGroupStats(timetables);
+	}
+	
+	private Map<Student, StudentTimetable> readSolutionTimetables() throws IloException {
+		Map<Student, StudentTimetable> timetables = new HashMap<>();
+		
+		for (Student student : students.values()) {
+			Map<Course, Group> courseGroupPairs = new HashMap<>();
+			
+			for (Map.Entry<Course, Map<Group, IloIntVar>> courseEntry : student.getCourseGroupAssignments().entrySet()) {
+				for (Map.Entry<Group, IloIntVar> groupEntry : courseEntry.getValue().entrySet()) {
+					if (Math.abs(cplex.getValue(groupEntry.getValue()) - 1) < cplexTolerance) {
+						courseGroupPairs.put(courseEntry.getKey(), groupEntry.getKey());
+						break; // A student can't be assigned to more than one group per course, so the loop can be terminated
+					}
+				}
+			}
+			
+			StudentTimetable timetable = new StudentTimetable(student, courseGroupPairs);
+			
+			boolean hasCompleteAssignmentCplex = (Math.abs(cplex.getValue(student.getHasCompleteAssignment()) - 1) < cplexTolerance); // CPLEX variable indicating a complete assignment
+			
+			if (hasCompleteAssignmentCplex != timetable.isComplete()) {
+				System.out.println("CPLEX reports incorrect number of complete assignments!");
+			}
+			
+			timetables.put(student, timetable);
+		}
+		
+		return timetables;
+	}
+	
+	public void writeSymmetryReport(String output) throws IOException {
+		writeToFile(outputPath + "simetria.txt", output);
+	}
+	
+	public void writeCapacityDuals(String output) throws IOException {
+		writeToFile(outputPath + "valor marginal vagas.csv", output);
+	}
+	
+	public void writeCapacityScenarios(String output) throws IOException {
+		writeToFile(outputPath + "cenários vagas.csv", output);
+	}
+	
+	public void writeLexicographicReport(String output) throws IOException {
+		writeToFile(outputPath + "lexicográfico.csv", output);
+	}
+	
+	public void writeTopKPreferencesReport(String output) throws IOException {
+		writeToFile(outputPath + "preferências top-K.csv", output);
+	}
+	
+	public void writeGradeTiersReport(String output) throws IOException {
+		writeToFile(outputPath + "níveis de média.csv", output);
+	}
+	
+	public void writeDeferredAcceptanceReport(String output) throws IOException {
+		writeToFile(outputPath + "aceitação diferida.txt", output);
+	}
+	
+	public void writeDiagnosticsReport(String output) throws IOException {
+		writeToFile(outputPath + "diagnóstico.csv", output);
+	}
+	
+	public void writeRunMetrics(String output) throws IOException {
+		writeToFile(outputPath + "execução.txt", output);
+	}
+	
+	public void writeNumericsReport(String output) throws IOException {
+		writeToFile(outputPath + "estatísticas numéricas.txt", output);
 	}
 	
 	private void writeToFile(String filename, String output) throws IOException {
@@ -78,51 +153,35 @@ public class OutputDataWriter {
 		writer.close();
 	}
 	
-	private void writeStudentsAssignments() throws IloException, IOException {
+	private void writeStudentsAssignments(Map<Student, StudentTimetable> timetables) throws IOException {
 		String output = "ESTUD_NUM_UNICO_INST;NOME;MEDIA;OPCAO;CODIGO;SIGLA";
 		
 		int courseEnrollments = 0, courseAssignments = 0, completeAssignments = 0, partialAssignments = 0, preferencesFulfilled = 0;
 		
 		for (Student student : students.values()) {
+			StudentTimetable timetable = timetables.get(student);
+			StudentPreference preference = (timetable != null) ? timetable.getFulfilledPreference() : null;
 			int fulfilledPreference = -1;
 			
-			for (StudentPreference preference : student.getPreferences()) {
-				IloIntVar wasFulfilled = preference.getWasFulfilled();
-				
-				if (Math.abs(cplex.getValue(wasFulfilled) - 1) < cplexTolerance) {
-					preferencesFulfilled += 1;
-					fulfilledPreference = preference.getOrder();
-					break;
-				}
+			if (preference != null) {
+				preferencesFulfilled += 1;
+				fulfilledPreference = preference.getOrder();
 			}
 			
 			int studentEnrollments = 0, studentAssignments = 0;
 			
-			for (Map.Entry<Course, Map<Group, IloIntVar>> courseEntry : student.getCourseGroupAssignments().entrySet()) {
+			for (Course course : student.getEnrolledCourses()) {
 				++courseEnrollments; ++studentEnrollments;
-				Course course = courseEntry.getKey();
+				Group group = (timetable != null) ? timetable.getCourseGroupPairs().get(course) : null;
 				
-				for (Map.Entry<Group, IloIntVar> groupEntry : courseEntry.getValue().entrySet()) {
-					IloIntVar assignmentVar = groupEntry.getValue();
+				if (group != null) {
+					++courseAssignments; ++studentAssignments;
 					
-					if (Math.abs(cplex.getValue(assignmentVar) - 1) < cplexTolerance) {
-						++courseAssignments; ++studentAssignments;
-						Group group = groupEntry.getKey();
-						
-						output += "\r\n" + student.getCode() + ";" + student.getName() + ";" + student.getAvgGrade() + ";" + fulfilledPreference + ";" + course.getCode() + ";" + group.getCode();
-						
-						break; // A student can't be assigned to more than one group per course, so the loop can be terminated
-					}
+					output += "\r\n" + student.getCode() + ";" + student.getName() + ";" + student.getAvgGrade() + ";" + fulfilledPreference + ";" + course.getCode() + ";" + group.getCode();
 				}
 			}
 			
-			boolean hasCompleteAssignmentCplex = (Math.abs(cplex.getValue(student.getHasCompleteAssignment()) - 1) < cplexTolerance); // CPLEX variable indicating a complete assignment
-			boolean hasCompleteAssignmentCheck = (studentEnrollments == studentAssignments); // Manually checking if the student has a complete assignment
-			
-			if (hasCompleteAssignmentCplex != hasCompleteAssignmentCheck) {
-				System.out.println("CPLEX reports incorrect number of complete assignments!");
-			}
-			else if (hasCompleteAssignmentCheck) {
+			if (studentEnrollments == studentAssignments) {
 				++completeAssignments;
 			}
 			else if (studentAssignments > 0) {
@@ -153,14 +212,20 @@ public class OutputDataWriter {
 		writeToFile(outputPath + "estatísticas.txt", output);
 	}
 	
-	private void writeGroupStats() throws IloException, IOException {
+	private void writeGroupStats(Map<Student, StudentTimetable> timetables) throws IOException {
 		String output = "UC;TURMA;COLOCADOS;CAPACIDADE;OPTATIVA";
 		
+		Map<Group, Integer> numStudentsAssigned = new IdentityHashMap<>(); // Groups from different courses can share the same code, so they're counted by identity
+		
+		for (StudentTimetable timetable : timetables.values()) {
+			for (Group group : timetable.getCourseGroupPairs().values()) {
+				numStudentsAssigned.merge(group, 1, Integer::sum);
+			}
+		}
+		
 		for (Course course : courses.values()) {
 			for (Group group : course.getGroups().values()) {
-				IloLinearIntExpr numStudentsAssigned = group.getSumAllAssignedStudents();
-				
-				output += "\r\n" + course.getCode() + ";" + group.getCode() + ";" + (numStudentsAssigned != null ? (int) cplex.getValue(numStudentsAssigned) : 0) + ";" + group.getCapacity() + ";" + (course.getMandatory() ? "0" : "1");
+				output += "\r\n" + course.getCode() + ";" + group.getCode() + ";" + numStudentsAssigned.getOrDefault(group, 0) + ";" + group.getCapacity() + ";" + (course.getMandatory() ? "0" : "1");
 			}
 		}
 		
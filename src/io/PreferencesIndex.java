@@ -0,0 +1,254 @@
+package io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Byte ranges of the rows of each (process version, student) in the preferences file, so only the rows of one version have to be read.
+// It's kept next to the file (escolhas.csv.idx) and rebuilt whenever the file's size or modification time changes
+public class PreferencesIndex {
+	private static final int MAGIC = 0x45534331; // "ESC1"
+	
+	private long fileSize, lastModified;
+	private Map<String, LinkedHashMap<String, List<long[]>>> ranges; // Version -> student -> [start, end) ranges, in file order
+	
+	private PreferencesIndex(long fileSize, long lastModified) {
+		this.fileSize = fileSize;
+		this.lastModified = lastModified;
+		this.ranges = new HashMap<>();
+	}
+	
+	// Reads the index of the file, or builds it (and tries to save it) if there's none or it's out of date
+	public static PreferencesIndex load(String preferencesFilename) throws IOException {
+		Path path = Paths.get(preferencesFilename);
+		Path indexPath = Paths.get(preferencesFilename + ".idx");
+		long fileSize = Files.size(path), lastModified = Files.getLastModifiedTime(path).toMillis();
+		
+		if (Files.exists(indexPath)) {
+			try (DataInputStream input = new DataInputStream(Files.newInputStream(indexPath))) {
+				if (input.readInt() == MAGIC && input.readLong() == fileSize && input.readLong() == lastModified) {
+					PreferencesIndex index = new PreferencesIndex(fileSize, lastModified);
+					int numVersions = input.readInt();
+					
+					for (int v = 0; v < numVersions; ++v) {
+						LinkedHashMap<String, List<long[]>> studentRanges = new LinkedHashMap<>();
+						index.ranges.put(input.readUTF(), studentRanges);
+						
+						int numStudents = input.readInt();
+						
+						for (int s = 0; s < numStudents; ++s) {
+							List<long[]> rowRanges = new ArrayList<>();
+							studentRanges.put(input.readUTF(), rowRanges);
+							
+							int numRanges = input.readInt();
+							
+							for (int r = 0; r < numRanges; ++r) {
+								rowRanges.add(new long[] {input.readLong(), input.readLong()});
+							}
+						}
+					}
+					
+					return index;
+				}
+			} catch (IOException e) {
+				System.out.println("Preferences index " + indexPath + " is unreadable, rebuilding it.");
+			}
+		}
+		
+		PreferencesIndex index = build(path, fileSize, lastModified);
+		
+		try {
+			index.save(indexPath);
+		} catch (IOException e) {
+			System.out.println("Preferences index couldn't be saved to " + indexPath + ": " + e.getMessage());
+		}
+		
+		return index;
+	}
+	
+	// Consecutive rows of the same (version, student) found in one chunk of the file
+	private static class Run {
+		private String version, studentCode;
+		private long start, end;
+	}
+	
+	// The file is scanned in memory-mapped chunks on every core. The version and student code are the first two fields of each row, and they're
+	// plain ASCII, so the bytes don't have to be decoded. The runs of each chunk are merged in file order, so the index doesn't depend on the chunking
+	private static PreferencesIndex build(Path path, long fileSize, long lastModified) throws IOException {
+		PreferencesIndex index = new PreferencesIndex(fileSize, lastModified);
+		long headerEnd;
+		
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			headerEnd = ChunkedFileReader.findLineEnd(channel, 0, fileSize);
+		}
+		
+		List<List<Run>> chunkRuns = ChunkedFileReader.process(path.toString(), Collections.singletonList(new long[] {headerEnd, fileSize}), PreferencesIndex::scanChunk);
+		
+		for (List<Run> runs : chunkRuns) {
+			for (Run run : runs) {
+				List<long[]> rowRanges = index.ranges.computeIfAbsent(run.version, key -> new LinkedHashMap<>()).computeIfAbsent(run.studentCode, key -> new ArrayList<>());
+				long[] lastRange = rowRanges.isEmpty() ? null : rowRanges.get(rowRanges.size() - 1);
+				
+				if (lastRange != null && lastRange[1] == run.start) {
+					lastRange[1] = run.end; // The student's rows are usually contiguous, even across chunks
+				}
+				else {
+					rowRanges.add(new long[] {run.start, run.end});
+				}
+			}
+		}
+		
+		return index;
+	}
+	
+	private static List<Run> scanChunk(ByteBuffer chunk, long fileOffset) {
+		List<Run> runs = new ArrayList<>();
+		int lineStart = 0, size = chunk.limit();
+		
+		while (lineStart < size) {
+			int lineEnd = indexOf(chunk, (byte) '\n', lineStart, size);
+			if (lineEnd < 0) lineEnd = size;
+			
+			int nextLineStart = Math.min(size, lineEnd + 1);
+			int firstSeparator = indexOf(chunk, (byte) ';', lineStart, lineEnd);
+			int secondSeparator = (firstSeparator >= 0) ? indexOf(chunk, (byte) ';', firstSeparator + 1, lineEnd) : -1;
+			
+			if (secondSeparator >= 0) {
+				String version = ascii(chunk, lineStart, firstSeparator);
+				String studentCode = ascii(chunk, firstSeparator + 1, secondSeparator);
+				Run lastRun = runs.isEmpty() ? null : runs.get(runs.size() - 1);
+				
+				if (lastRun != null && lastRun.end == fileOffset + lineStart && lastRun.version.equals(version) && lastRun.studentCode.equals(studentCode)) {
+					lastRun.end = fileOffset + nextLineStart;
+				}
+				else {
+					Run run = new Run();
+					run.version = version;
+					run.studentCode = studentCode;
+					run.start = fileOffset + lineStart;
+					run.end = fileOffset + nextLineStart;
+					runs.add(run);
+				}
+			}
+			
+			lineStart = nextLineStart;
+		}
+		
+		return runs;
+	}
+	
+	private static int indexOf(ByteBuffer buffer, byte value, int from, int to) {
+		for (int i = from; i < to; ++i) {
+			if (buffer.get(i) == value) return i;
+		}
+		
+		return -1;
+	}
+	
+	private static String ascii(ByteBuffer buffer, int from, int to) {
+		char[] chars = new char[to - from];
+		
+		for (int i = from; i < to; ++i) {
+			chars[i - from] = (char) (buffer.get(i) & 0xff);
+		}
+		
+		return new String(chars);
+	}
+	
+	private void save(Path indexPath) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream output = new DataOutputStream(bytes);
+		
+		output.writeInt(MAGIC);
+		output.writeLong(fileSize);
+		output.writeLong(lastModified);
+		output.writeInt(ranges.size());
+		
+		for (Map.Entry<String, LinkedHashMap<String, List<long[]>>> versionRanges : ranges.entrySet()) {
+			output.writeUTF(versionRanges.getKey());
+			output.writeInt(versionRanges.getValue().size());
+			
+			for (Map.Entry<String, List<long[]>> studentRanges : versionRanges.getValue().entrySet()) {
+				output.writeUTF(studentRanges.getKey());
+				output.writeInt(studentRanges.getValue().size());
+				
+				for (long[] range : studentRanges.getValue()) {
+					output.writeLong(range[0]);
+					output.writeLong(range[1]);
+				}
+			}
+		}
+		
+		output.close();
+		
+		Path tempPath = Paths.get(indexPath + ".tmp");
+		Files.write(tempPath, bytes.toByteArray());
+		Files.move(tempPath, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	// Every student of the version, with the [start, end) byte ranges of their rows, in file order (empty if the version isn't in the file)
+	public Map<String, List<long[]>> getStudentRanges(String version) {
+		Map<String, List<long[]>> studentRanges = ranges.get(version);
+		
+		return (studentRanges != null) ? studentRanges : new LinkedHashMap<>();
+	}
+	
+	// Fields of every row of the version, in file order. The row ranges are merged into runs of adjacent rows, which are memory-mapped in line-aligned chunks,
+	// decoded and split on every core
+	public List<String[]> readRows(String preferencesFilename, String version) throws IOException {
+		List<long[]> rowRanges = new ArrayList<>();
+		
+		for (List<long[]> studentRanges : getStudentRanges(version).values()) {
+			rowRanges.addAll(studentRanges);
+		}
+		
+		rowRanges.sort((a, b) -> Long.compare(a[0], b[0]));
+		
+		List<long[]> spans = new ArrayList<>();
+		
+		for (long[] range : rowRanges) {
+			long[] lastSpan = spans.isEmpty() ? null : spans.get(spans.size() - 1);
+			
+			if (lastSpan != null && lastSpan[1] == range[0]) lastSpan[1] = range[1];
+			else spans.add(new long[] {range[0], range[1]});
+		}
+		
+		if (!spans.isEmpty() && spans.get(spans.size() - 1)[1] > Files.size(Paths.get(preferencesFilename))) {
+			throw new IOException("Preferences file " + preferencesFilename + " is shorter than its index");
+		}
+		
+		// Same charset as the FileReader that reads the rest of the input files
+		List<List<String[]>> chunkRows = ChunkedFileReader.process(preferencesFilename, spans, (chunk, fileOffset) -> {
+			List<String[]> rows = new ArrayList<>();
+			
+			for (String row : Charset.defaultCharset().decode(chunk).toString().split("\r?\n")) {
+				if (!row.isEmpty()) rows.add(row.split(";"));
+			}
+			
+			return rows;
+		});
+		
+		List<String[]> rows = new ArrayList<>();
+		
+		for (List<String[]> chunk : chunkRows) {
+			rows.addAll(chunk);
+		}
+		
+		return rows;
+	}
+}
@@ -0,0 +1,63 @@
+package io;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.Locale;
+
+import problem.ProgressListener;
+import problem.ProgressSample;
+
+// Writes every progress sample of a solve to progresso.csv and progresso.jsonl (one JSON object per line) as it arrives
+public class TelemetryWriter implements ProgressListener {
+	private BufferedWriter csvWriter;
+	private BufferedWriter jsonWriter;
+	
+	public TelemetryWriter(String outputPath) throws IOException {
+		this.csvWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputPath + "progresso.csv"), "utf-8"));
+		this.jsonWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputPath + "progresso.jsonl"), "utf-8"));
+		
+		csvWriter.write("\ufeff"); // Adding BOM for compatibility with Excel
+		csvWriter.write("TEMPO;INCUMBENTE;LIMITE;GAP;NOS;" + String.join(";", ProgressSample.COMPONENT_NAMES));
+		csvWriter.flush();
+	}
+	
+	@Override
+	public synchronized void progressUpdated(ProgressSample sample) {
+		double[] components = sample.getComponents();
+		
+		String csvLine = "\r\n" + sample.getTime() + ";" + format(sample.getIncumbent()) + ";" + format(sample.getBound()) + ";" + format(sample.getGap()) + ";" + sample.getNumNodes();
+		String jsonLine = "{\"time\":" + sample.getTime() + ",\"incumbent\":" + toJson(sample.getIncumbent()) + ",\"bound\":" + toJson(sample.getBound())
+				+ ",\"gap\":" + toJson(sample.getGap()) + ",\"nodes\":" + sample.getNumNodes() + ",\"newIncumbent\":" + sample.isNewIncumbent();
+		
+		for (int i = 0; i < ProgressSample.COMPONENT_NAMES.length; ++i) {
+			csvLine += ";" + (components != null ? format(components[i]) : "");
+			if (components != null) jsonLine += ",\"" + ProgressSample.COMPONENT_NAMES[i] + "\":" + toJson(components[i]);
+		}
+		
+		jsonLine += "}\n";
+		
+		try {
+			csvWriter.write(csvLine);
+			csvWriter.flush();
+			jsonWriter.write(jsonLine);
+			jsonWriter.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	private static String format(double value) {
+		return Double.isNaN(value) ? "" : String.format(Locale.ROOT, "%.6f", value);
+	}
+	
+	private static String toJson(double value) {
+		return (Double.isNaN(value) || Double.isInfinite(value)) ? "null" : String.format(Locale.ROOT, "%.6f", value);
+	}
+	
+	public void close() throws IOException {
+		csvWriter.close();
+		jsonWriter.close();
+	}
+}
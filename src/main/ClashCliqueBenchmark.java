@@ -0,0 +1,136 @@
+package main;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import io.CourseCatalog;
+import io.InputDataReader;
+import model.Course;
+import model.Group;
+import model.Student;
+import model.Timeslot;
+import problem.AssignmentProblem;
+import problem.ClashCliqueFinder;
+import problem.SolverSettings;
+
+// Compares the s1 and s2 models with the per-timeslot practical class rows and with the clash graph's maximal cliques: number of rows and nonzeros
+// (counted without CPLEX), then the LP relaxation bound and the MIP solve time with a time limit
+public class ClashCliqueBenchmark {
+	private static final double TIME_LIMIT = 300;
+	
+	public static void main(String[] args) {
+		String coursesFilename = "res" + File.separator + "input" + File.separator + "uc.csv";
+		
+		for (int semester = 1; semester <= 2; ++semester) {
+			String inputPath = "res" + File.separator + "input" + File.separator + "s" + semester + File.separator;
+			String outputPath = "res" + File.separator + "output" + File.separator + "cliques" + File.separator + "s" + semester + "v4" + File.separator;
+			
+			try {
+				InputDataReader reader = new InputDataReader(new CourseCatalog(coursesFilename), inputPath + "turmas.csv", inputPath + "horário.csv",
+						inputPath + "compostos.csv", inputPath + "escolhas.csv", inputPath + "médias.csv", semester, "4");
+				reader.readData();
+				
+				countRows(semester, reader);
+			} catch (Exception e) {
+				System.out.println("s" + semester + "v4 failed:");
+				e.printStackTrace();
+				continue;
+			}
+			
+			for (boolean clashCliques : new boolean[] {false, true}) {
+				String name = "s" + semester + "v4 " + (clashCliques ? "cliques" : "per-timeslot rows");
+				
+				try {
+					AssignmentProblem relaxation = createProblem(coursesFilename, inputPath, semester, outputPath + (clashCliques ? "cliques" : "base") + File.separator);
+					relaxation.setClashCliques(clashCliques);
+					
+					double bound = relaxation.solveRelaxation();
+					int numConstraints = relaxation.getNumConstraints();
+					relaxation.end();
+					
+					SolverSettings solverSettings = new SolverSettings();
+					solverSettings.setTimeLimit(TIME_LIMIT);
+					
+					AssignmentProblem problem = createProblem(coursesFilename, inputPath, semester, outputPath + (clashCliques ? "cliques" : "base") + File.separator);
+					problem.setClashCliques(clashCliques);
+					problem.setLinearizedFormulation(true);
+					problem.setSolverSettings(solverSettings);
+					problem.run();
+					
+					System.out.println(String.format(Locale.ROOT, "%s: %d rows, LP bound %.6f, solved in %.1f s (limit %.0f s)", name, numConstraints, bound,
+							problem.getSolveTime(), TIME_LIMIT));
+					
+					problem.end();
+				} catch (Exception e) {
+					System.out.println(name + " failed:");
+					e.printStackTrace();
+				}
+			}
+			
+			System.out.println();
+		}
+	}
+	
+	private static AssignmentProblem createProblem(String coursesFilename, String inputPath, int semester, String outputPath) throws Exception {
+		return new AssignmentProblem(coursesFilename, inputPath + "turmas.csv", inputPath + "horário.csv", inputPath + "compostos.csv",
+				inputPath + "escolhas.csv", inputPath + "médias.csv", semester, "4", true, AssignmentProblem.PreferenceWeightingMode.EXPONENT,
+				.25f, .1f, .1f, .1f, .15f, .1f, .1f, .1f, outputPath);
+	}
+	
+	// Rows with at least 2 assignment variables from different courses (the rest are implied by "at most 1 group per course"), and checks every one of
+	// them is covered by a clique
+	private static void countRows(int semester, InputDataReader reader) {
+		int numTimeslotRows = 0, numTimeslotNonzeros = 0, numCliqueRows = 0, numCliqueNonzeros = 0, numFallbackStudents = 0, numUncoveredRows = 0;
+		
+		for (Student student : reader.getStudents().values()) {
+			ClashCliqueFinder cliqueFinder = new ClashCliqueFinder(student);
+			List<int[]> cliques = cliqueFinder.findCliques();
+			List<Set<Group>> cliqueGroups = new ArrayList<>();
+			
+			if (cliques == null) {
+				++numFallbackStudents;
+			}
+			else {
+				for (int[] clique : cliques) {
+					Set<Group> groups = Collections.newSetFromMap(new IdentityHashMap<>());
+					
+					for (int vertex : clique) {
+						groups.add(cliqueFinder.getGroup(vertex));
+					}
+					
+					cliqueGroups.add(groups);
+					++numCliqueRows;
+					numCliqueNonzeros += clique.length;
+				}
+			}
+			
+			for (Timeslot timeslot : reader.getSchedule()) {
+				Set<Course> rowCourses = new HashSet<>();
+				List<Group> rowGroups = new ArrayList<>();
+				
+				for (Map.Entry<Course, Set<Group>> practicalClass : timeslot.getPracticalClasses().entrySet()) {
+					if (!student.getEnrolledCourses().contains(practicalClass.getKey())) continue;
+					
+					rowCourses.add(practicalClass.getKey());
+					rowGroups.addAll(practicalClass.getValue());
+				}
+				
+				if (rowCourses.size() < 2) continue;
+				
+				++numTimeslotRows;
+				numTimeslotNonzeros += rowGroups.size();
+				
+				if (cliques != null && cliqueGroups.stream().noneMatch(groups -> groups.containsAll(rowGroups))) ++numUncoveredRows;
+			}
+		}
+		
+		System.out.println(String.format(Locale.ROOT, "s%dv4: %d per-timeslot rows (%d nonzeros) against %d clique rows (%d nonzeros), %d students kept their per-timeslot rows, %d rows not covered by a clique",
+				semester, numTimeslotRows, numTimeslotNonzeros, numCliqueRows, numCliqueNonzeros, numFallbackStudents, numUncoveredRows));
+	}
+}
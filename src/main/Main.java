@@ -1,9 +1,19 @@
 package main;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import ilog.concert.IloException;
+import io.CourseCatalog;
+import io.InputDataReader;
 import problem.AssignmentProblem;
+import problem.BatchJob;
+import problem.BatchRunner;
+import problem.CapacityScenario;
+import problem.ProgressSample;
+import problem.SolverSettings;
 
 public class Main {
 	public static void main(String[] args) {
@@ -26,15 +36,136 @@ public class Main {
 //			AssignmentProblem s2v2 = new AssignmentProblem(coursesFilename, s2InputPath + "turmas.csv", s2InputPath + "horário.csv", s2InputPath + "compostos.csv", s2InputPath + "escolhas.csv", s2InputPath + "médias.csv", 2, "2", false, AssignmentProblem.PreferenceWeightingMode.EXPONENT, s2v2OutputPath);
 //			s2v2.run();
 			
+			List<String> arguments = Arrays.asList(args);
+			SolverSettings solverSettings = new SolverSettings();
+			solverSettings.parseArguments(arguments);
+			
+			// --batch=<semester>:<version>:<mandatory|optional>,... runs every job (--licence-tokens=<n> at a time) reading uc.csv only once
+			for (String argument : arguments) {
+				if (!argument.startsWith("--batch=")) continue;
+				
+				int licenceTokens = 1;
+				
+				for (String otherArgument : arguments) {
+					if (otherArgument.startsWith("--licence-tokens=")) licenceTokens = Integer.parseInt(otherArgument.substring("--licence-tokens=".length()));
+				}
+				
+				BatchRunner batch = new BatchRunner(new CourseCatalog(coursesFilename), "res" + File.separator + "input" + File.separator,
+						"res" + File.separator + "output" + File.separator + "lote" + File.separator, licenceTokens, solverSettings.getThreads(), solverSettings);
+				
+				for (String job : argument.substring("--batch=".length()).split(",")) {
+					String[] fields = job.split(":");
+					
+					batch.addJob(new BatchJob(Integer.parseInt(fields[0]), fields[1], !fields[2].equals("optional"), AssignmentProblem.PreferenceWeightingMode.EXPONENT,
+							.25f, .1f, .1f, .1f, .15f, .1f, .1f, .1f));
+				}
+				
+				batch.run();
+				return;
+			}
+			
 			String s2v4OutputPath = "res" + File.separator + "output" + File.separator + "s2v4" + File.separator;
 			AssignmentProblem s2v4 = new AssignmentProblem(coursesFilename, s2InputPath + "turmas.csv", s2InputPath + "horário.csv", s2InputPath + "compostos.csv",
 					s2InputPath + "escolhas.csv", s2InputPath + "médias.csv", 2, "4", true, AssignmentProblem.PreferenceWeightingMode.EXPONENT,
 					.25f, .1f, .1f, .1f, .15f, .1f, .1f, .1f, s2v4OutputPath);
-			s2v4.run();
+			s2v4.setSolverSettings(solverSettings);
+			s2v4.setResumeFromCheckpoint(arguments.contains("--resume"));
+			
+			for (String argument : arguments) {
+				if (argument.startsWith("--model-cache=")) s2v4.setModelCacheDirectory(argument.substring("--model-cache=".length()) + File.separator);
+				if (argument.equals("--variable-names=none")) s2v4.setVariableNaming(AssignmentProblem.VariableNaming.NONE);
+				if (argument.equals("--no-flow")) s2v4.setFlowFastPath(false);
+				if (argument.equals("--no-clash-cliques")) s2v4.setClashCliques(false);
+				if (argument.equals("--break-symmetries")) s2v4.setBreakSymmetries(true);
+				if (argument.equals("--lazy-clash-rows")) s2v4.setLazyClashRows(true);
+				if (argument.equals("--scaled-objective")) s2v4.setScaledObjective(true);
+				if (argument.equals("--numerics-report")) s2v4.setNumericsReport(true);
+			}
+			
+			String lexicographicArgument = null;
+			int topPreferences = 0;
+			String gradeTiersArgument = null;
+			String lagrangianArgument = null;
+			String columnGenerationArgument = null;
+			
+			for (String argument : arguments) {
+				if (argument.startsWith("--lexicographic=")) lexicographicArgument = argument.substring("--lexicographic=".length());
+				if (argument.startsWith("--top-preferences=")) topPreferences = Integer.parseInt(argument.substring("--top-preferences=".length()));
+				if (argument.startsWith("--grade-tiers=")) gradeTiersArgument = argument.substring("--grade-tiers=".length());
+				if (argument.startsWith("--lagrangian")) lagrangianArgument = argument.startsWith("--lagrangian=") ? argument.substring("--lagrangian=".length()) : "";
+				if (argument.startsWith("--column-generation")) {
+					columnGenerationArgument = argument.startsWith("--column-generation=") ? argument.substring("--column-generation=".length()) : "";
+				}
+			}
+			
+			if (lexicographicArgument != null) {
+				// --lexicographic=<objective>:<tolerance>,... with the objectives named as in progresso.csv, from the most to the least important
+				String[] stages = lexicographicArgument.split(",");
+				int[] objectiveOrder = new int[stages.length];
+				double[] tolerances = new double[stages.length];
+				
+				for (int i = 0; i < stages.length; ++i) {
+					String[] fields = stages[i].split(":");
+					
+					objectiveOrder[i] = Arrays.asList(ProgressSample.COMPONENT_NAMES).indexOf(fields[0]);
+					tolerances[i] = (fields.length > 1) ? Double.parseDouble(fields[1]) : 0;
+					
+					if (objectiveOrder[i] < 0) throw new IllegalArgumentException("Unknown objective " + fields[0]);
+				}
+				
+				s2v4.runLexicographic(objectiveOrder, tolerances);
+			}
+			else if (topPreferences > 0) {
+				// --top-preferences=<K> models each student's first K preferences, adding K more at a time to those who don't get any of them
+				s2v4.runTopKPreferences(topPreferences);
+			}
+			else if (gradeTiersArgument != null) {
+				// --grade-tiers=<n>[:monolithic] solves the students in n grade tiers, best first, optionally comparing with the full model
+				String[] fields = gradeTiersArgument.split(":");
+				s2v4.runGradeTiers(Integer.parseInt(fields[0]), fields.length > 1 && fields[1].equals("monolithic"));
+			}
+			else if (lagrangianArgument != null) {
+				// --lagrangian[=<iterations>[:<seconds>]] solves the Lagrangian relaxation instead of the MIP (500 iterations and --time-limit by default)
+				String[] fields = lagrangianArgument.split(":");
+				int maxIterations = lagrangianArgument.isEmpty() ? 500 : Integer.parseInt(fields[0]);
+				double timeLimit = (fields.length > 1) ? Double.parseDouble(fields[1]) : solverSettings.getTimeLimit();
+				
+				s2v4.runLagrangianRelaxation(maxIterations, timeLimit);
+			}
+			else if (columnGenerationArgument != null) {
+				// --column-generation[=<iterations>[:<seconds>]] solves the timetable-per-column formulation (1000 iterations and --time-limit by default)
+				String[] fields = columnGenerationArgument.split(":");
+				int maxIterations = columnGenerationArgument.isEmpty() ? 1000 : Integer.parseInt(fields[0]);
+				double timeLimit = (fields.length > 1) ? Double.parseDouble(fields[1]) : solverSettings.getTimeLimit();
+				
+				s2v4.runColumnGeneration(maxIterations, timeLimit);
+			}
+			else if (arguments.contains("--deferred-acceptance")) {
+				s2v4.runDeferredAcceptance();
+			}
+			else if (arguments.contains("--portfolio")) {
+				s2v4.runPortfolio();
+			}
+			else {
+				s2v4.run();
+			}
+			
+			// --capacity-analysis[=<scenarios file>] ranks the groups by the value of an extra seat and evaluates the scenarios (CENARIO;UC;TURMA;VAGAS)
+			for (String argument : arguments) {
+				if (!argument.startsWith("--capacity-analysis")) continue;
+				
+				List<CapacityScenario> scenarios = argument.startsWith("--capacity-analysis=")
+						? InputDataReader.readCapacityScenarios(argument.substring("--capacity-analysis=".length())) : new ArrayList<>();
+				int threads = (solverSettings.getThreads() > 0) ? solverSettings.getThreads() : Runtime.getRuntime().availableProcessors();
+				
+				s2v4.runCapacityAnalysis(scenarios, threads);
+			}
 		} catch (IOException e) {
 			e.printStackTrace();
 		} catch (IloException e) {
 			e.printStackTrace();
+		} catch (InterruptedException e) {
+			e.printStackTrace();
 		}
 	}
 }
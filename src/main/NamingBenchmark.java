@@ -0,0 +1,60 @@
+package main;
+import java.io.File;
+import java.util.Locale;
+
+import problem.AssignmentProblem;
+
+// Builds the s1 and s2 models with and without variable names and compares the Java heap they use
+public class NamingBenchmark {
+	public static void main(String[] args) {
+		String coursesFilename = "res" + File.separator + "input" + File.separator + "uc.csv";
+		
+		for (int semester = 1; semester <= 2; ++semester) {
+			String inputPath = "res" + File.separator + "input" + File.separator + "s" + semester + File.separator;
+			String outputPath = "res" + File.separator + "output" + File.separator + "s" + semester + "v4" + File.separator;
+			long[] usedMemory = new long[AssignmentProblem.VariableNaming.values().length];
+			
+			for (AssignmentProblem.VariableNaming variableNaming : AssignmentProblem.VariableNaming.values()) {
+				try {
+					long memoryBefore = getUsedMemory();
+					
+					AssignmentProblem problem = new AssignmentProblem(coursesFilename, inputPath + "turmas.csv", inputPath + "horário.csv", inputPath + "compostos.csv",
+							inputPath + "escolhas.csv", inputPath + "médias.csv", semester, "4", true, AssignmentProblem.PreferenceWeightingMode.EXPONENT,
+							.25f, .1f, .1f, .1f, .15f, .1f, .1f, .1f, outputPath);
+					problem.setVariableNaming(variableNaming);
+					problem.buildModel();
+					
+					usedMemory[variableNaming.ordinal()] = getUsedMemory() - memoryBefore;
+					
+					System.out.println(String.format(Locale.ROOT, "s%dv4 %s: %d variables, built in %.3f s, %.1f MB of Java heap", semester, variableNaming,
+							problem.getNumVariables(), problem.getModelBuildTime(), usedMemory[variableNaming.ordinal()] / 1048576.));
+					
+					problem.end();
+				} catch (Exception e) {
+					System.out.println("s" + semester + "v4 " + variableNaming + " failed:");
+					e.printStackTrace();
+				}
+			}
+			
+			long fullMemory = usedMemory[AssignmentProblem.VariableNaming.FULL.ordinal()], noneMemory = usedMemory[AssignmentProblem.VariableNaming.NONE.ordinal()];
+			
+			if (fullMemory > 0 && noneMemory > 0) {
+				System.out.println(String.format(Locale.ROOT, "s%dv4 saving without names: %.1f MB (%.1f%%)", semester, (fullMemory - noneMemory) / 1048576.,
+						100. * (fullMemory - noneMemory) / fullMemory));
+			}
+			
+			System.out.println();
+		}
+	}
+	
+	// Heap in use after asking for a full collection, so the model is the only difference between two measurements
+	private static long getUsedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		
+		for (int i = 0; i < 3; ++i) {
+			System.gc();
+		}
+		
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
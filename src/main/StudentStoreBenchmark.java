@@ -0,0 +1,110 @@
+package main;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import io.CourseCatalog;
+import io.InputDataReader;
+import model.Student;
+import model.StudentPreference;
+import model.StudentStore;
+
+// Compares the Java heap taken by 100000 students as Student objects and as a StudentStore. The students are copies of the s1 and s2 (version 4)
+// students with different codes, so both representations hold the same data
+public class StudentStoreBenchmark {
+	private static final int NUM_STUDENTS = 100000;
+	
+	public static void main(String[] args) {
+		String coursesFilename = "res" + File.separator + "input" + File.separator + "uc.csv";
+		
+		for (int semester = 1; semester <= 2; ++semester) {
+			String inputPath = "res" + File.separator + "input" + File.separator + "s" + semester + File.separator;
+			
+			try {
+				InputDataReader reader = new InputDataReader(new CourseCatalog(coursesFilename), inputPath + "turmas.csv", inputPath + "horário.csv",
+						inputPath + "compostos.csv", inputPath + "escolhas.csv", inputPath + "médias.csv", semester, "4");
+				reader.readData();
+				
+				List<Student> students = new ArrayList<>(reader.getStudents().values());
+				
+				if (students.isEmpty()) continue;
+				
+				long memoryBefore = getUsedMemory();
+				List<Student> copies = new ArrayList<>(NUM_STUDENTS);
+				
+				for (int i = 0; i < NUM_STUDENTS; ++i) {
+					copies.add(copyStudent(students.get(i % students.size()), i / students.size()));
+				}
+				
+				long objectMemory = getUsedMemory() - memoryBefore;
+				
+				memoryBefore = getUsedMemory();
+				StudentStore store = new StudentStore(reader.getCourses().values(), copies);
+				long storeMemory = getUsedMemory() - memoryBefore;
+				
+				int mismatches = 0;
+				
+				for (Student copy : copies) {
+					Student stored = store.createStudent(store.indexOf(copy.getCode()));
+					
+					if (!stored.getName().equals(copy.getName()) || stored.getAvgGrade() != copy.getAvgGrade() || stored.getWantedPeriodMask() != copy.getWantedPeriodMask()
+							|| !stored.getEnrolledCourses().equals(copy.getEnrolledCourses()) || !stored.getPreferences().equals(copy.getPreferences())) {
+						++mismatches;
+					}
+				}
+				
+				System.out.println(String.format(Locale.ROOT, "s%dv4 (%d students copied to %d): objects %.1f MB, store %.1f MB (%.1f MB by its own count), %.1f%% smaller, %d mismatches",
+						semester, students.size(), NUM_STUDENTS, objectMemory / 1048576., storeMemory / 1048576., store.getFootprint() / 1048576.,
+						100. * (objectMemory - storeMemory) / objectMemory, mismatches));
+				System.out.println(store);
+				System.out.println();
+				
+				copies.clear();
+			} catch (Exception e) {
+				System.out.println("s" + semester + "v4 failed:");
+				e.printStackTrace();
+			}
+		}
+	}
+	
+	// Same data as the student (with its own preference objects and sets), but a different code
+	private static Student copyStudent(Student student, int copyNumber) {
+		Student copy = new Student(student.getCode() + "_" + copyNumber, student.getName());
+		List<StudentPreference> preferences = new ArrayList<>();
+		Set<Integer> periods = new HashSet<>();
+		
+		copy.setAvgGrade(student.getAvgGrade());
+		copy.getEnrolledCourses().addAll(student.getEnrolledCourses());
+		
+		for (int period = 0; period < 12; ++period) {
+			if (student.getWantedPeriod(period)) periods.add(period);
+		}
+		
+		copy.setWantedPeriodsTrue(periods);
+		
+		for (StudentPreference preference : student.getPreferences()) {
+			StudentPreference preferenceCopy = new StudentPreference(preference.getOrder());
+			
+			preference.getCourseGroupPairs().forEach(preferenceCopy::addCourseGroupPair);
+			preferences.add(preferenceCopy);
+		}
+		
+		copy.setPreferences(preferences);
+		
+		return copy;
+	}
+	
+	// Heap in use after asking for a full collection, so the students are the only difference between two measurements
+	private static long getUsedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+		
+		for (int i = 0; i < 3; ++i) {
+			System.gc();
+		}
+		
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
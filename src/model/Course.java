@@ -1,5 +1,6 @@
 package model;
 
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -9,6 +10,7 @@ public class Course {
 	private int weeklyTimeslots;
 	private Map<String, Group> groups;
 	private int numEnrollments;
+	private BitSet occupiedTimeslots; // Timeslots (indexed as day * 25 + timeslot) where at least one of this course's groups has a class
 	
 	public Course(String code, boolean mandatory, int weeklyTimeslots) {
 		this.code = code;
@@ -16,6 +18,7 @@ public class Course {
 		this.weeklyTimeslots = weeklyTimeslots;
 		this.groups = new HashMap<>();
 		this.numEnrollments = 0;
+		this.occupiedTimeslots = new BitSet();
 	}
 	
 	public String getCode() {
@@ -42,6 +45,14 @@ public class Course {
 		numEnrollments += 1;
 	}
 	
+	public BitSet getOccupiedTimeslots() {
+		return occupiedTimeslots;
+	}
+	
+	public void addOccupiedTimeslot(int timeslotIndex) {
+		occupiedTimeslots.set(timeslotIndex);
+	}
+	
 	public int calculateSumGroupCapacities() {
 		int sumGroupCapacities = 0;
 		
@@ -1,5 +1,6 @@
 package model;
 
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -14,12 +15,17 @@ public class Group {
 	private float minUtilization; // Minimum percentage of students assigned to this group, relative to the theoretical number of students who should be assigned to it
 	private IloLinearIntExpr sumAllAssignedStudents; // Sum of all decision variables indicating whether a student has been assigned to this group
 	private Set<Integer> occupiedPeriods;
+	private int occupiedPeriodMask; // Bit N is set if this group occupies period N (12 bits, Monday morning to Saturday afternoon)
+	private BitSet occupiedTimeslots; // Timeslots (indexed as day * 25 + timeslot) occupied by any class of this group
+	private BitSet occupiedPracticalTimeslots; // Timeslots occupied by practical classes of this group
 	
 	public Group(String code, int capacity, float minUtilization) {
 		this.code = code;
 		this.capacity = capacity;
 		this.minUtilization = minUtilization;
 		this.occupiedPeriods = new HashSet<>();
+		this.occupiedTimeslots = new BitSet();
+		this.occupiedPracticalTimeslots = new BitSet();
 	}
 	
 	public String getCode() {
@@ -53,6 +59,28 @@ public class Group {
 	
 	public void addOccupiedPeriod(int period) {
 		occupiedPeriods.add(period);
+		occupiedPeriodMask |= 1 << period;
+	}
+	
+	public int getOccupiedPeriodMask() {
+		return occupiedPeriodMask;
+	}
+	
+	public boolean occupiesPeriod(int period) {
+		return (occupiedPeriodMask & (1 << period)) != 0;
+	}
+	
+	public BitSet getOccupiedTimeslots() {
+		return occupiedTimeslots;
+	}
+	
+	public BitSet getOccupiedPracticalTimeslots() {
+		return occupiedPracticalTimeslots;
+	}
+	
+	public void addOccupiedTimeslot(int timeslotIndex, boolean practicalClass) {
+		occupiedTimeslots.set(timeslotIndex);
+		if (practicalClass) occupiedPracticalTimeslots.set(timeslotIndex);
 	}
 	
 	@Override
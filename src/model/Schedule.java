@@ -37,6 +37,10 @@ public class Schedule implements Iterable<Timeslot> {
 		return schedule.get(day).get(timeslot);
 	}
 	
+	public Timeslot getTimeslot(int timeslotIndex) {
+		return getTimeslot(timeslotIndex / 25, timeslotIndex % 25);
+	}
+	
 	public void addCourseGroup(Course course, Group group, boolean practicalClass, int weekDay, int startTime, int duration) {
 		for (int i = 0; i < duration; ++i) {
 			int timeslotNo = startTime + i;
@@ -56,6 +60,9 @@ public class Schedule implements Iterable<Timeslot> {
 				timeslot.addLectureClass(course, group);
 			}
 			
+			group.addOccupiedTimeslot(weekDay * 25 + timeslotNo, practicalClass); // Tell the group that it occupies this timeslot
+			course.addOccupiedTimeslot(weekDay * 25 + timeslotNo);
+			
 			if (timeslotNo != 10 && timeslotNo != 11) {
 				group.addOccupiedPeriod(weekDay * 2 + (timeslotNo <= 10 ? 0 : 1)); // Tell the group that it occupies this period
 			}
@@ -16,6 +16,7 @@ public class Student {
 	private List<StudentPreference> preferences;
 	private Set<Course> enrolledCourses; // List of the mandatory courses this student enrolled in
 	private List<Boolean> wantedPeriods; // True if student selected period of index N in one of their preferences, false otherwise 
+	private int wantedPeriodMask; // Same as above, with bit N standing for period N
 	private Map<Course, Set<Group>> wantedCourseGroups; // List of the course-group pairs this student selected over all their preferences
 	
 	private Map<Course, Map<Group, IloIntVar>> courseGroupAssignments; // Course code -> (group code -> (boolean variable indicating assignment))
@@ -85,9 +86,14 @@ public class Student {
 	public void setWantedPeriodsTrue(Set<Integer> periods) {
 		for (int period : periods) {
 			wantedPeriods.set(period, true);
+			wantedPeriodMask |= 1 << period;
 		}
 	}
 	
+	public int getWantedPeriodMask() {
+		return wantedPeriodMask;
+	}
+	
 	public boolean getWantedCourseGroup(Course course, Group group) {
 		try {
 			return wantedCourseGroups.get(course).contains(group);
@@ -97,6 +103,12 @@ public class Student {
 		}
 	}
 	
+	public Set<Group> getWantedCourseGroups(Course course) {
+		Set<Group> wantedGroups = wantedCourseGroups.get(course);
+		
+		return (wantedGroups != null) ? wantedGroups : new HashSet<>();
+	}
+	
 	public Map<Course, Map<Group, IloIntVar>> getCourseGroupAssignments() {
 		return courseGroupAssignments;
 	}
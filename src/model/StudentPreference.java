@@ -10,11 +10,13 @@ public class StudentPreference {
 	private int size;
 	private Map<Course, Group> courseGroupPairs;
 	private IloIntVar wasFulfilled; // Boolean variable indicating if this preference was fulfilled in its entirety
+	private boolean valid; // False if one of its pairs had unknown codes, so the preference as read isn't the one the student made
 	
 	public StudentPreference(int order) {
 		this.order = order;
 		this.size = 0;
 		this.courseGroupPairs = new HashMap<>();
+		this.valid = true;
 	}
 	
 	public int getOrder() {
@@ -38,6 +40,14 @@ public class StudentPreference {
 		size += 1;
 	}
 	
+	public boolean isValid() {
+		return valid;
+	}
+	
+	public void setValid(boolean valid) {
+		this.valid = valid;
+	}
+	
 	public IloIntVar getWasFulfilled() {
 		return wasFulfilled;
 	}
@@ -0,0 +1,254 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Read-only struct-of-arrays copy of the students, for cohorts too large to keep one Student (with its sets, maps and preference objects) per student.
+// Students, courses and groups are identified by int ids, codes and names share one string pool, and enrollments and preferences are kept in
+// compressed sparse row form: the entries of student s are [start[s], start[s + 1]) in the flat arrays. Students are sorted by code
+public class StudentStore {
+	private Course[] courses;
+	private Group[] groups;
+	private int[] groupCourses; // Course id of each group id (groups from different courses can share the same code)
+	
+	private int numStudents;
+	private String textPool; // Code and name of every student, one after the other
+	private int[] textStarts; // Student s's code is [textStarts[2s], textStarts[2s + 1]), their name [textStarts[2s + 1], textStarts[2s + 2])
+	private float[] avgGrades;
+	private short[] wantedPeriodMasks; // Bit N stands for period N (there are 12)
+	
+	private int[] enrollmentStarts;
+	private int[] enrolledCourses; // Course ids
+	
+	private int[] preferenceStarts;
+	private int[] preferenceOrders;
+	private int[] pairStarts; // Per preference, into pairGroups
+	private int[] pairGroups; // Group ids (the course is the group's course)
+	
+	public StudentStore(Collection<Course> courses, Collection<Student> students) {
+		Map<Course, Integer> courseIds = new IdentityHashMap<>();
+		Map<Group, Integer> groupIds = new IdentityHashMap<>();
+		List<Group> groupList = new ArrayList<>();
+		List<Integer> groupCourseList = new ArrayList<>();
+		
+		this.courses = courses.toArray(new Course[0]);
+		
+		for (int c = 0; c < this.courses.length; ++c) {
+			courseIds.put(this.courses[c], c);
+			
+			for (Group group : this.courses[c].getGroups().values()) {
+				groupIds.put(group, groupList.size());
+				groupList.add(group);
+				groupCourseList.add(c);
+			}
+		}
+		
+		this.groups = groupList.toArray(new Group[0]);
+		this.groupCourses = groupCourseList.stream().mapToInt(Integer::intValue).toArray();
+		
+		List<Student> sortedStudents = new ArrayList<>(students);
+		sortedStudents.sort(Comparator.comparing(Student::getCode));
+		
+		this.numStudents = sortedStudents.size();
+		this.textStarts = new int[2 * numStudents + 1];
+		this.avgGrades = new float[numStudents];
+		this.wantedPeriodMasks = new short[numStudents];
+		this.enrollmentStarts = new int[numStudents + 1];
+		this.preferenceStarts = new int[numStudents + 1];
+		
+		int numEnrollments = 0, numPreferences = 0, numPairs = 0;
+		
+		for (Student student : sortedStudents) {
+			numEnrollments += student.getEnrolledCourses().size();
+			numPreferences += student.getPreferences().size();
+			
+			for (StudentPreference preference : student.getPreferences()) {
+				numPairs += preference.getCourseGroupPairs().size();
+			}
+		}
+		
+		this.enrolledCourses = new int[numEnrollments];
+		this.preferenceOrders = new int[numPreferences];
+		this.pairStarts = new int[numPreferences + 1];
+		this.pairGroups = new int[numPairs];
+		
+		StringBuilder text = new StringBuilder();
+		int enrollment = 0, preferenceIndex = 0, pair = 0;
+		
+		for (int s = 0; s < numStudents; ++s) {
+			Student student = sortedStudents.get(s);
+			
+			text.append(student.getCode());
+			textStarts[2 * s + 1] = text.length();
+			text.append(student.getName());
+			textStarts[2 * s + 2] = text.length();
+			
+			avgGrades[s] = student.getAvgGrade();
+			wantedPeriodMasks[s] = (short) student.getWantedPeriodMask();
+			
+			for (Course course : student.getEnrolledCourses()) {
+				enrolledCourses[enrollment++] = courseIds.get(course);
+			}
+			
+			enrollmentStarts[s + 1] = enrollment;
+			
+			for (StudentPreference preference : student.getPreferences()) {
+				preferenceOrders[preferenceIndex] = preference.getOrder();
+				
+				for (Group group : preference.getCourseGroupPairs().values()) {
+					pairGroups[pair++] = groupIds.get(group);
+				}
+				
+				pairStarts[++preferenceIndex] = pair;
+			}
+			
+			preferenceStarts[s + 1] = preferenceIndex;
+		}
+		
+		this.textPool = text.toString();
+	}
+	
+	public int getNumStudents() {
+		return numStudents;
+	}
+	
+	// Id of the student with this code, or -1 if there's none
+	public int indexOf(String code) {
+		int low = 0, high = numStudents - 1;
+		
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			int comparison = getCode(middle).compareTo(code);
+			
+			if (comparison < 0) low = middle + 1;
+			else if (comparison > 0) high = middle - 1;
+			else return middle;
+		}
+		
+		return -1;
+	}
+	
+	public String getCode(int student) {
+		return textPool.substring(textStarts[2 * student], textStarts[2 * student + 1]);
+	}
+	
+	public String getName(int student) {
+		return textPool.substring(textStarts[2 * student + 1], textStarts[2 * student + 2]);
+	}
+	
+	public float getAvgGrade(int student) {
+		return avgGrades[student];
+	}
+	
+	public int getWantedPeriodMask(int student) {
+		return wantedPeriodMasks[student];
+	}
+	
+	public boolean getWantedPeriod(int student, int period) {
+		return (wantedPeriodMasks[student] & (1 << period)) != 0;
+	}
+	
+	public int getNumEnrolledCourses(int student) {
+		return enrollmentStarts[student + 1] - enrollmentStarts[student];
+	}
+	
+	public Course getEnrolledCourse(int student, int index) {
+		return courses[enrolledCourses[enrollmentStarts[student] + index]];
+	}
+	
+	public int getNumPreferences(int student) {
+		return preferenceStarts[student + 1] - preferenceStarts[student];
+	}
+	
+	public int getPreferenceOrder(int student, int index) {
+		return preferenceOrders[preferenceStarts[student] + index];
+	}
+	
+	public int getPreferenceSize(int student, int index) {
+		int preference = preferenceStarts[student] + index;
+		
+		return pairStarts[preference + 1] - pairStarts[preference];
+	}
+	
+	public Course getPreferenceCourse(int student, int index, int pair) {
+		return courses[groupCourses[pairGroups[pairStarts[preferenceStarts[student] + index] + pair]]];
+	}
+	
+	public Group getPreferenceGroup(int student, int index, int pair) {
+		return groups[pairGroups[pairStarts[preferenceStarts[student] + index] + pair]];
+	}
+	
+	// True if the course-group pair is in any of the student's preferences. Students only have a handful of pairs, so they're scanned
+	public boolean getWantedCourseGroup(int student, Course course, Group group) {
+		for (int pair = pairStarts[preferenceStarts[student]]; pair < pairStarts[preferenceStarts[student + 1]]; ++pair) {
+			if (groups[pairGroups[pair]] == group && courses[groupCourses[pairGroups[pair]]] == course) return true;
+		}
+		
+		return false;
+	}
+	
+	public Set<Group> getWantedCourseGroups(int student, Course course) {
+		Set<Group> wantedGroups = new HashSet<>();
+		
+		for (int pair = pairStarts[preferenceStarts[student]]; pair < pairStarts[preferenceStarts[student + 1]]; ++pair) {
+			if (courses[groupCourses[pairGroups[pair]]] == course) wantedGroups.add(groups[pairGroups[pair]]);
+		}
+		
+		return wantedGroups;
+	}
+	
+	// A regular Student with the same data, for code that needs one (e.g. the model builder, which keeps the solver variables in it)
+	public Student createStudent(int student) {
+		Student thisStudent = new Student(getCode(student), getName(student));
+		List<StudentPreference> preferences = new ArrayList<>();
+		Set<Integer> periods = new HashSet<>();
+		
+		thisStudent.setAvgGrade(avgGrades[student]);
+		
+		for (int period = 0; period < 12; ++period) {
+			if (getWantedPeriod(student, period)) periods.add(period);
+		}
+		
+		thisStudent.setWantedPeriodsTrue(periods);
+		
+		for (int index = 0; index < getNumEnrolledCourses(student); ++index) {
+			thisStudent.getEnrolledCourses().add(getEnrolledCourse(student, index));
+		}
+		
+		for (int index = 0; index < getNumPreferences(student); ++index) {
+			StudentPreference preference = new StudentPreference(getPreferenceOrder(student, index));
+			
+			for (int pair = 0; pair < getPreferenceSize(student, index); ++pair) {
+				preference.addCourseGroupPair(getPreferenceCourse(student, index, pair), getPreferenceGroup(student, index, pair));
+			}
+			
+			preferences.add(preference);
+		}
+		
+		thisStudent.setPreferences(preferences);
+		
+		return thisStudent;
+	}
+	
+	// Bytes held by the store's own arrays (the courses and groups are shared with the rest of the program), assuming 2 bytes per character and 16 per array header
+	public long getFootprint() {
+		long bytes = 16L * 12 + 4L * courses.length + 4L * groups.length + 4L * groupCourses.length;
+		
+		bytes += 2L * textPool.length() + 4L * textStarts.length + 4L * avgGrades.length + 2L * wantedPeriodMasks.length;
+		bytes += 4L * (enrollmentStarts.length + enrolledCourses.length + preferenceStarts.length + preferenceOrders.length + pairStarts.length + pairGroups.length);
+		
+		return bytes;
+	}
+	
+	@Override
+	public String toString() {
+		return numStudents + " students, " + enrolledCourses.length + " enrollments, " + preferenceOrders.length + " preferences, " + pairGroups.length
+				+ " course-group pairs (" + getFootprint() / 1024 + " KB)";
+	}
+}
@@ -0,0 +1,86 @@
+package model;
+
+import java.util.BitSet;
+import java.util.Map;
+
+public class StudentTimetable {
+	private Student student;
+	private Map<Course, Group> courseGroupPairs; // Course-group pairs this student is assigned to (courses left out aren't assigned)
+	private StudentPreference fulfilledPreference; // Preference matching this timetable in its entirety, or null if there's none
+	private double value; // Contribution of this timetable to the objective function
+	
+	public StudentTimetable(Student student, Map<Course, Group> courseGroupPairs) {
+		this.student = student;
+		this.courseGroupPairs = courseGroupPairs;
+		this.fulfilledPreference = null;
+		
+		if (!courseGroupPairs.isEmpty()) {
+			for (StudentPreference preference : student.getPreferences()) {
+				if (preference.getCourseGroupPairs().equals(courseGroupPairs)) {
+					this.fulfilledPreference = preference;
+					break;
+				}
+			}
+		}
+	}
+	
+	public Student getStudent() {
+		return student;
+	}
+	
+	public Map<Course, Group> getCourseGroupPairs() {
+		return courseGroupPairs;
+	}
+	
+	public int getNumAssignments() {
+		return courseGroupPairs.size();
+	}
+	
+	public boolean isComplete() {
+		return courseGroupPairs.size() == student.getEnrolledCourses().size();
+	}
+	
+	public StudentPreference getFulfilledPreference() {
+		return fulfilledPreference;
+	}
+	
+	public double getValue() {
+		return value;
+	}
+	
+	public void setValue(double value) {
+		this.value = value;
+	}
+	
+	public int calculateNumOccupiedTimeslots() {
+		BitSet occupiedTimeslots = new BitSet();
+		
+		for (Group group : courseGroupPairs.values()) {
+			occupiedTimeslots.or(group.getOccupiedTimeslots());
+		}
+		
+		return occupiedTimeslots.cardinality();
+	}
+	
+	public int calculateOccupiedPeriodMask() {
+		int occupiedPeriodMask = 0;
+		
+		for (Group group : courseGroupPairs.values()) {
+			occupiedPeriodMask |= group.getOccupiedPeriodMask();
+		}
+		
+		return occupiedPeriodMask;
+	}
+	
+	public int calculateNumAssignmentsToUnwantedGroups() {
+		int numAssignmentsToUnwantedGroups = 0;
+		
+		for (Map.Entry<Course, Group> courseGroupPair : courseGroupPairs.entrySet()) {
+			if (!student.getWantedCourseGroup(courseGroupPair.getKey(), courseGroupPair.getValue())) {
+				++numAssignmentsToUnwantedGroups;
+			}
+		}
+		
+		return numAssignmentsToUnwantedGroups;
+	}
+}
@@ -1,30 +1,62 @@
 package problem;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
 
+import ilog.concert.IloConstraint;
 import ilog.concert.IloException;
 import ilog.concert.IloIntVar;
+import ilog.concert.IloLPMatrix;
 import ilog.concert.IloLinearIntExpr;
 import ilog.concert.IloLinearIntExprIterator;
 import ilog.concert.IloLinearNumExpr;
+import ilog.concert.IloLinearNumExprIterator;
 import ilog.concert.IloNumExpr;
 import ilog.concert.IloNumVar;
+import ilog.concert.IloNumVarType;
+import ilog.concert.IloObjective;
+import ilog.concert.IloRange;
 import ilog.cplex.IloCplex;
+import io.CheckpointLog;
+import io.CourseCatalog;
 import io.InputDataReader;
+import io.ModelCache;
 import io.OutputDataWriter;
+import io.TelemetryWriter;
 import model.Course;
 import model.Group;
 import model.Schedule;
 import model.Student;
 import model.StudentPreference;
+import model.StudentTimetable;
 import model.Timeslot;
 
 public class AssignmentProblem {
 	public enum PreferenceWeightingMode {TIMES, EXPONENT};
+	public enum VariableNaming {FULL, NONE}; // NONE saves the memory of a name for every variable, names are then only built when they're needed
+	private static final double CONFLICT_REFINER_TIME_LIMIT = 60;
 	
 	private Map<String, Course> courses;
 	private Schedule schedule;
@@ -36,22 +68,70 @@ public class AssignmentProblem {
 	weightMinimizeAssignmentsToUnwantedGroups;
 	private IloCplex cplex;
 	private OutputDataWriter writer;
+	private String[] inputFilenames; // Kept so that portfolio members can read their own copy of the input data
+	private int semester;
+	private String procVersion;
+	private String outputPath;
+	private boolean breakSymmetries;
+	private boolean linearizedFormulation; // Big-M linear constraints instead of indicator constraints
+	private boolean clashCliques; // Maximal cliques of each student's clash graph instead of the per-timeslot practical class rows
+	private int numClashCliques, numClashCliqueStudents;
+	private boolean lazyClashRows; // The practical class clash rows (or cliques) are left out of the model and added by a callback when violated
+	private int preferenceLimit; // Preferences modelled per student (the rest can be added later by the top-K solve)
+	private Map<Student, StudentPreferenceRows> studentPreferenceRows; // Only kept by the top-K solve, which needs to extend them
+	private boolean scaledObjective; // Grade weights of PreferenceWeightingMode.EXPONENT in a narrow range (see GradeWeighting)
+	private GradeWeighting gradeWeighting;
+	private boolean numericsReport; // Objective coefficient spread and CPLEX's kappa statistics written after the solve
+	private Map<String, Integer> reservedSeats; // Seats of each group ("course#group") already taken by better grade tiers, null outside the grade-tier solve
+	private boolean groupMinimums; // The optional courses' hard group minimums (only the last grade tier has them)
+	private VariableNaming variableNaming;
+	private boolean flowFastPath; // Optional course assignments are first tried as a min-cost flow, without building the MIP
+	private Map<IloNumVar, String> variableNames; // Built on demand when variables aren't named
+	private boolean checkpointIncumbents, resumeFromCheckpoint;
+	private SolverSettings solverSettings;
+	private List<ProgressListener> progressListeners;
+	private double modelBuildTime, solveTime;
 	
 	private int targetNumOccupiedTimeslots;
 	private IloLinearNumExpr weightedSumAllAssignments, weightedSumAllCompleteStudents, weightedSumFulfilledPreferences, sumAllGroupUtilizationSlacks;
 	private IloLinearIntExpr sumAllOccupiedTimeslots, sumAllOccupiedPeriodsWithNoPreferenceAssigned, sumAllUnwantedOccupiedPeriods, sumAllAssignmentsToUnwantedGroups;
+	private IloNumExpr[] objectiveSums; // The 8 sums the objective is made of, in the same order as ProgressSample.COMPONENT_NAMES
+	private double[] objectiveOffsets, objectiveScales; // Each sum is normalized as offset + scale * sum
+	private IloObjective objective;
+	private String modelCacheDirectory; // Null if built models aren't cached
+	private CourseCatalog courseCatalog;
+	private Map<Group, IloRange> capacityRows; // Groups from different courses can share the same code, so they're keyed by identity
+	private Map<Group, IloRange> minimumRows; // The optional courses' hard group minimums, keyed like capacityRows
+	private List<String[]> inputProblems; // Rows the reader skipped because of unknown codes
+	private InputDiagnostics inputDiagnostics; // Null until the input is checked
+	private Map<String, Integer> solutionGroupUsage; // Students assigned to each group ("course#group") in the last solution
+	private List<String[]> solutionAssignments; // (student, course, group) of every assignment in the last solution
+	private Map<IloNumVar, ToDoubleFunction<Map<IloNumVar, Double>>> derivedVariables; // How every non-assignment variable's best value follows from the assignments, in creation order
 	
 	public AssignmentProblem(String coursesFilename, String groupsFilename, String scheduleFilename, String groupCompositesFilename, String preferencesFilename,
 			String gradesFilename, int semester, String procVersion, boolean isMandatoryAssignment, PreferenceWeightingMode preferenceWeightingMode,
 			float weightMaximizeSumAllAssignments, float weightMaximizeCompleteStudents, float weightMaximizeOccupiedTimeslots, float weightMaximizeFulfilledPreferences,
 			float weightMinimizeGroupUtilizationSlacks, float weightMinimizeOccupiedPeriodsWithNoPreferenceAssigned, float weightMinimizeUnwantedOccupiedPeriods,
 			float weightMinimizeAssignmentsToUnwantedGroups, String outputPath) throws IloException, IOException {
-		InputDataReader reader = new InputDataReader(coursesFilename, groupsFilename, scheduleFilename, groupCompositesFilename, preferencesFilename, gradesFilename, semester, procVersion);
+		this(new CourseCatalog(coursesFilename), groupsFilename, scheduleFilename, groupCompositesFilename, preferencesFilename, gradesFilename, semester, procVersion,
+				isMandatoryAssignment, preferenceWeightingMode, weightMaximizeSumAllAssignments, weightMaximizeCompleteStudents, weightMaximizeOccupiedTimeslots,
+				weightMaximizeFulfilledPreferences, weightMinimizeGroupUtilizationSlacks, weightMinimizeOccupiedPeriodsWithNoPreferenceAssigned,
+				weightMinimizeUnwantedOccupiedPeriods, weightMinimizeAssignmentsToUnwantedGroups, outputPath);
+	}
+	
+	// Problems built from the same catalog (e.g. the jobs of a batch) don't read uc.csv again
+	public AssignmentProblem(CourseCatalog courseCatalog, String groupsFilename, String scheduleFilename, String groupCompositesFilename, String preferencesFilename,
+			String gradesFilename, int semester, String procVersion, boolean isMandatoryAssignment, PreferenceWeightingMode preferenceWeightingMode,
+			float weightMaximizeSumAllAssignments, float weightMaximizeCompleteStudents, float weightMaximizeOccupiedTimeslots, float weightMaximizeFulfilledPreferences,
+			float weightMinimizeGroupUtilizationSlacks, float weightMinimizeOccupiedPeriodsWithNoPreferenceAssigned, float weightMinimizeUnwantedOccupiedPeriods,
+			float weightMinimizeAssignmentsToUnwantedGroups, String outputPath) throws IloException, IOException {
+		InputDataReader reader = new InputDataReader(courseCatalog, groupsFilename, scheduleFilename, groupCompositesFilename, preferencesFilename, gradesFilename, semester, procVersion);
 		reader.readData();
 		
 		this.courses = reader.getCourses();
 		this.schedule = reader.getSchedule();
 		this.students = reader.getStudents();
+		this.inputProblems = reader.getInputProblems();
 		this.isMandatoryAssignment = isMandatoryAssignment;
 		this.preferenceWeightingMode = preferenceWeightingMode;
 		this.weightMaximizeSumAllAssignments = weightMaximizeSumAllAssignments;
@@ -65,13 +145,1026 @@ public class AssignmentProblem {
 		this.cplex = new IloCplex();
 		this.writer = new OutputDataWriter(cplex, cplex.getParam(IloCplex.DoubleParam.EpRHS), courses, students, outputPath);
 		
+		this.courseCatalog = courseCatalog;
+		this.inputFilenames = new String[] {courseCatalog.getFilename(), groupsFilename, scheduleFilename, groupCompositesFilename, preferencesFilename, gradesFilename};
+		this.semester = semester;
+		this.procVersion = procVersion;
+		this.outputPath = outputPath;
+		
 		this.targetNumOccupiedTimeslots = 0;
+		this.derivedVariables = new LinkedHashMap<>();
+		this.capacityRows = new IdentityHashMap<>();
+		this.minimumRows = new IdentityHashMap<>();
+		this.breakSymmetries = false;
+		this.linearizedFormulation = false;
+		this.clashCliques = true;
+		this.lazyClashRows = false;
+		this.preferenceLimit = Integer.MAX_VALUE;
+		this.scaledObjective = false;
+		this.numericsReport = false;
+		this.reservedSeats = null;
+		this.groupMinimums = true;
+		this.variableNaming = VariableNaming.FULL;
+		this.flowFastPath = true;
+		this.checkpointIncumbents = true;
+		this.resumeFromCheckpoint = false;
+		this.solverSettings = new SolverSettings();
+		this.progressListeners = new ArrayList<>();
+	}
+	
+	// Listeners are notified of the solve's progress, besides it being written to progresso.csv and progresso.jsonl
+	public void addProgressListener(ProgressListener listener) {
+		progressListeners.add(listener);
+	}
+	
+	// Built models are saved to (and loaded from) this directory, so later runs on the same inputs don't have to build them again
+	public void setModelCacheDirectory(String modelCacheDirectory) {
+		this.modelCacheDirectory = modelCacheDirectory;
+	}
+	
+	public void setSolverSettings(SolverSettings solverSettings) {
+		this.solverSettings = solverSettings;
+	}
+	
+	public void setBreakSymmetries(boolean breakSymmetries) {
+		this.breakSymmetries = breakSymmetries;
+	}
+	
+	public void setLinearizedFormulation(boolean linearizedFormulation) {
+		this.linearizedFormulation = linearizedFormulation;
+	}
+	
+	public void setClashCliques(boolean clashCliques) {
+		this.clashCliques = clashCliques;
+	}
+	
+	public void setLazyClashRows(boolean lazyClashRows) {
+		this.lazyClashRows = lazyClashRows;
+	}
+	
+	public void setScaledObjective(boolean scaledObjective) {
+		this.scaledObjective = scaledObjective;
+	}
+	
+	public void setNumericsReport(boolean numericsReport) {
+		this.numericsReport = numericsReport;
+	}
+	
+	public void setVariableNaming(VariableNaming variableNaming) {
+		this.variableNaming = variableNaming;
+	}
+	
+	public void setFlowFastPath(boolean flowFastPath) {
+		this.flowFastPath = flowFastPath;
+	}
+	
+	public void setCheckpointIncumbents(boolean checkpointIncumbents) {
+		this.checkpointIncumbents = checkpointIncumbents;
+	}
+	
+	// Loads the best incumbent of the previous run's checkpoint log as a MIP start
+	public void setResumeFromCheckpoint(boolean resumeFromCheckpoint) {
+		this.resumeFromCheckpoint = resumeFromCheckpoint;
 	}
 	
 	public void run() throws IloException, IOException {
 		writer.checkGroupCapacities();
-		defineManualAssignmentProblem();
+		
+		boolean consistent = diagnoseInput();
+		
+		// Unknown codes are all the refiner couldn't point at in the group rows, so then there's no model to build
+		if (!consistent && !inputDiagnostics.hasGroupErrors()) {
+			System.out.println("Input is inconsistent, see " + outputPath + "diagnóstico.csv.");
+			cplex.end();
+			return;
+		}
+		
+		if (consistent && !isMandatoryAssignment && flowFastPath) {
+			MinCostFlowSolver flowSolver = new MinCostFlowSolver(courses, students, createTimetableEvaluator(), solverSettings.getMipGap());
+			Map<Student, StudentTimetable> solution = flowSolver.solve();
+			
+			if (solution != null) {
+				writer.writeOutputData(solution);
+				recordGroupUsage(solution);
+				cplex.end();
+				return;
+			}
+		}
+		
+		long startTime = System.currentTimeMillis();
+		ModelCache modelCache = (modelCacheDirectory != null) ? new ModelCache(modelCacheDirectory, inputFilenames, buildModelStructureKey()) : null;
+		SymmetryAnalyzer symmetryAnalyzer = null;
+		
+		if (modelCache != null && modelCache.exists()) {
+			importModel(modelCache);
+			System.out.println("Model imported from " + modelCache.getModelFilename() + ".");
+		}
+		else {
+			defineManualAssignmentProblem();
+			
+			if (breakSymmetries && consistent) {
+				symmetryAnalyzer = new SymmetryAnalyzer(courses, students);
+				symmetryAnalyzer.analyze();
+				symmetryAnalyzer.addSymmetryBreakingConstraints(cplex);
+			}
+			
+			if (modelCache != null) exportModel(modelCache);
+		}
+		
+		modelBuildTime = (System.currentTimeMillis() - startTime) / 1000.;
+		System.out.println("Model built in " + modelBuildTime + " s (" + cplex.getNcols() + " variables, " + cplex.getNrows() + " linear constraints).");
+		
+		// Inconsistent input only gets the model built so the refiner can point at the group rows behind the capacity and minimum errors. A consistent
+		// model is only refined if the solve proves it infeasible
+		if (!consistent) {
+			refineConflict(CONFLICT_REFINER_TIME_LIMIT);
+			writer.writeDiagnosticsReport(inputDiagnostics.buildReport());
+			System.out.println("Input is inconsistent, see " + outputPath + "diagnóstico.csv.");
+			cplex.end();
+			return;
+		}
+		
 		solve();
+		
+		if (symmetryAnalyzer != null) {
+			writer.writeSymmetryReport(symmetryAnalyzer.buildReport(solveTime));
+		}
+	}
+	
+	// Only builds the model, without solving it (used to measure the model's size and memory)
+	public void buildModel() throws IloException {
+		long startTime = System.currentTimeMillis();
+		
+		defineManualAssignmentProblem();
+		
+		modelBuildTime = (System.currentTimeMillis() - startTime) / 1000.;
+	}
+	
+	public double getModelBuildTime() {
+		return modelBuildTime;
+	}
+	
+	public int getNumVariables() throws IloException {
+		return cplex.getNcols();
+	}
+	
+	public int getNumConstraints() throws IloException {
+		return cplex.getNrows();
+	}
+	
+	public double getSolveTime() {
+		return solveTime;
+	}
+	
+	public void end() {
+		cplex.end();
+	}
+	
+	// Solves the Lagrangian relaxation of the group capacity and balance constraints instead of the full MIP, giving an upper bound (if every student's
+	// pricing finished) and a repaired feasible solution
+	public void runLagrangianRelaxation(int maxIterations, double timeLimit) throws IloException, IOException {
+		writer.checkGroupCapacities();
+		
+		TimetableEvaluator evaluator = createTimetableEvaluator();
+		LagrangianSolver solver = new LagrangianSolver(courses, students, evaluator, 10000);
+		
+		Map<Student, StudentTimetable> solution = solver.solve(maxIterations, timeLimit);
+		writer.writeOutputData(solution);
+		
+		cplex.end();
+	}
+	
+	// Student-proposing deferred acceptance over the preferences instead of the MIP: a fast baseline, written in the same format as the CPLEX solution
+	public void runDeferredAcceptance() throws IloException, IOException {
+		writer.checkGroupCapacities();
+		
+		TimetableEvaluator evaluator = createTimetableEvaluator();
+		DeferredAcceptanceSolver solver = new DeferredAcceptanceSolver(courses, students, evaluator);
+		
+		Map<Student, StudentTimetable> solution = solver.solve();
+		writer.writeOutputData(solution);
+		writer.writeDeferredAcceptanceReport(solver.buildReport(evaluator.evaluateSolution(solution)));
+		recordGroupUsage(solution);
+		
+		cplex.end();
+	}
+	
+	// Solves the timetable-per-column formulation by column generation, then an integer solve over the generated columns
+	public void runColumnGeneration(int maxIterations, double timeLimit) throws IloException, IOException {
+		writer.checkGroupCapacities();
+		
+		ColumnGenerationSolver solver = new ColumnGenerationSolver(cplex, courses, students, createTimetableEvaluator(), 200000);
+		
+		Map<Student, StudentTimetable> solution = solver.solve(maxIterations, timeLimit);
+		
+		if (solution != null) writer.writeOutputData(solution);
+		
+		cplex.end();
+	}
+	
+	// Optimizes the objective components (indices into ProgressSample.COMPONENT_NAMES, each one normalized as in the weighted sum) one after the other,
+	// instead of their weighted sum. After each stage, the component is kept within its relative tolerance of the value it reached, and the stage's
+	// solution is the next stage's MIP start. The settings' time limit is shared by all stages, each getting an even share of what's left
+	public void runLexicographic(int[] objectiveOrder, double[] tolerances) throws IloException, IOException {
+		writer.checkGroupCapacities();
+		
+		long startTime = System.currentTimeMillis();
+		
+		defineManualAssignmentProblem();
+		
+		modelBuildTime = (System.currentTimeMillis() - startTime) / 1000.;
+		System.out.println("Model built in " + modelBuildTime + " s (" + cplex.getNcols() + " variables, " + cplex.getNrows() + " linear constraints).");
+		
+		solverSettings.apply(cplex);
+		useLazyClashCallback();
+		
+		List<IloIntVar> assignmentVars = new ArrayList<>();
+		List<String[]> variableKeys = new ArrayList<>();
+		collectAssignmentVariables(assignmentVars, variableKeys);
+		
+		IloIntVar[] vars = assignmentVars.toArray(new IloIntVar[0]);
+		List<String[]> bestAssignments = null;
+		String output = "ETAPA;OBJETIVO;TOLERANCIA;VALOR;LIMITE;ESTADO;TEMPO";
+		
+		long solveStartTime = System.currentTimeMillis();
+		
+		for (int stage = 0; stage < objectiveOrder.length; ++stage) {
+			int component = objectiveOrder[stage];
+			IloNumExpr componentExpr = cplex.sum(objectiveOffsets[component], cplex.prod(objectiveScales[component], objectiveSums[component]));
+			double remainingTime = solverSettings.getTimeLimit() - (System.currentTimeMillis() - solveStartTime) / 1000.;
+			
+			if (remainingTime <= 0) {
+				System.out.println("Lexicographic solve: no time left for stage " + (stage + 1) + ".");
+				break;
+			}
+			
+			objective.setExpr(componentExpr);
+			cplex.setParam(IloCplex.DoubleParam.TiLim, remainingTime / (objectiveOrder.length - stage));
+			
+			long stageStartTime = System.currentTimeMillis();
+			boolean solved = cplex.solve();
+			double stageTime = (System.currentTimeMillis() - stageStartTime) / 1000.;
+			
+			output += "\r\n" + (stage + 1) + ";" + ProgressSample.COMPONENT_NAMES[component] + ";" + tolerances[stage] + ";" + (solved ? cplex.getObjValue() : "")
+					+ ";" + (solved ? cplex.getBestObjValue() : "") + ";" + cplex.getStatus() + ";" + stageTime;
+			
+			if (!solved) {
+				System.out.println("Lexicographic solve: stage " + (stage + 1) + " (" + ProgressSample.COMPONENT_NAMES[component] + ") failed after " + stageTime + " s.");
+				break;
+			}
+			
+			double value = cplex.getObjValue();
+			double[] values = cplex.getValues(vars);
+			
+			System.out.println("Lexicographic solve: stage " + (stage + 1) + " (" + ProgressSample.COMPONENT_NAMES[component] + ") reached " + value + " in " + stageTime + " s.");
+			
+			bestAssignments = new ArrayList<>();
+			
+			for (int i = 0; i < values.length; ++i) {
+				if (values[i] > .5) bestAssignments.add(variableKeys.get(i));
+			}
+			
+			cplex.addGe(componentExpr, value - tolerances[stage] * Math.abs(value)); // CONSTRAINT: later stages can't make this component worse than its tolerance allows
+			cplex.addMIPStart(vars, values, IloCplex.MIPStartEffort.SolveFixed);
+		}
+		
+		solveTime = (System.currentTimeMillis() - solveStartTime) / 1000.;
+		output += "\r\n" + "Total;;;;;;" + solveTime;
+		
+		writer.writeLexicographicReport(output);
+		
+		if (bestAssignments != null) {
+			writer.writeOutputData(toTimetables(bestAssignments));
+		}
+		else {
+			System.out.println("Failed to solve problem.");
+		}
+		
+		cplex.end();
+	}
+	
+	// What-if analysis of the group capacities, run after solving. The linearized model (with indicator constraints there are no duals) has every integer
+	// variable fixed at its value in the last solution, and the LP that's left gives each capacity row's dual and each group's best reduced cost over the
+	// students not in it, i.e. the value of the solution's neighbourhood rather than of the root LP. Only the utilization slacks are left free, so that LP
+	// is highly degenerate and its duals are one of many optimal ones, which the report says. Scenarios change capacities, which a fixed model can't
+	// react to, so they're evaluated in the LP relaxation instead, spread over 'threads' workers that each import a clone of it instead of reading the input again
+	public void runCapacityAnalysis(List<CapacityScenario> scenarios, int threads) throws IloException, IOException, InterruptedException {
+		long startTime = System.currentTimeMillis();
+		AssignmentProblem analysis = copy();
+		analysis.linearizedFormulation = true;
+		analysis.defineManualAssignmentProblem();
+		analysis.cplex.setOut(null);
+		
+		List<String[]> assignments = solutionAssignments;
+		
+		if (assignments == null) { // Nothing was solved before, so the analysis solves the MIP itself
+			solverSettings.apply(analysis.cplex);
+			
+			if (!analysis.cplex.solve()) {
+				System.out.println("Failed to solve problem for the capacity analysis (" + analysis.cplex.getStatus() + ").");
+				analysis.cplex.end();
+				return;
+			}
+			
+			assignments = analysis.readAssignments();
+		}
+		
+		List<IloIntVar> assignmentVars = new ArrayList<>();
+		List<String[]> variableKeys = new ArrayList<>();
+		analysis.collectAssignmentVariables(assignmentVars, variableKeys);
+		
+		IloNumVar[] allVariables = analysis.getAllVariables();
+		Set<IloNumVar> integerVariables = Collections.newSetFromMap(new IdentityHashMap<>());
+		
+		for (IloNumVar var : allVariables) {
+			if (var.getType() != IloNumVarType.Float) integerVariables.add(var);
+		}
+		
+		analysis.cplex.add(analysis.cplex.conversion(allVariables, IloNumVarType.Float));
+		
+		File relaxationFile = scenarios.isEmpty() ? null : analysis.exportCapacityRelaxation();
+		
+		analysis.fixAssignments(assignmentVars, variableKeys, assignments, integerVariables);
+		
+		if (!analysis.cplex.solve()) {
+			System.out.println("Failed to solve the fixed LP for the capacity analysis (" + analysis.cplex.getStatus() + ").");
+			analysis.cplex.end();
+			if (relaxationFile != null) relaxationFile.delete();
+			return;
+		}
+		
+		// Best reduced cost of each group over the students the solution didn't put in it
+		double[] reducedCosts = analysis.cplex.getReducedCosts(assignmentVars.toArray(new IloIntVar[0]));
+		double[] assignmentValues = analysis.cplex.getValues(assignmentVars.toArray(new IloIntVar[0]));
+		Map<String, Double> groupReducedCosts = new HashMap<>();
+		
+		for (int i = 0; i < reducedCosts.length; ++i) {
+			if (assignmentValues[i] < .5) groupReducedCosts.merge(variableKeys.get(i)[1] + "#" + variableKeys.get(i)[2], reducedCosts[i], Math::max);
+		}
+		
+		List<Object[]> groupDuals = new ArrayList<>(); // (course, group, dual, slack)
+		
+		for (Course course : analysis.courses.values()) {
+			for (Group group : course.getGroups().values()) {
+				IloRange capacityRow = analysis.capacityRows.get(group);
+				
+				if (capacityRow != null) {
+					groupDuals.add(new Object[] {course, group, analysis.cplex.getDual(capacityRow), analysis.cplex.getSlack(capacityRow)});
+				}
+			}
+		}
+		
+		analysis.cplex.end();
+		
+		groupDuals.sort(Comparator.comparing(groupDual -> -(Double) groupDual[2]));
+		
+		String output = "UC;TURMA;CAPACIDADE;COLOCADOS;FOLGA;VALOR_MARGINAL;CUSTO_REDUZIDO_MAX";
+		
+		for (Object[] groupDual : groupDuals) {
+			Course course = (Course) groupDual[0];
+			Group group = (Group) groupDual[1];
+			Integer assigned = (solutionGroupUsage != null) ? solutionGroupUsage.get(course.getCode() + "#" + group.getCode()) : null;
+			Double reducedCost = groupReducedCosts.get(course.getCode() + "#" + group.getCode());
+			
+			output += "\r\n" + course.getCode() + ";" + group.getCode() + ";" + group.getCapacity() + ";" + (assigned != null ? assigned : "") + ";" + groupDual[3] + ";" + groupDual[2]
+					+ ";" + (reducedCost != null ? reducedCost : "");
+		}
+		
+		output += "\r\n" + "\r\n" + "Valores do LP com as variáveis inteiras fixas na última solução (só as folgas de utilização ficam livres). Esse LP é muito"
+				+ " degenerado: os duais e custos reduzidos são uma das muitas soluções duais ótimas, por isso são apenas indicativos.";
+		
+		writer.writeCapacityDuals(output);
+		
+		Map<CapacityScenario, Double> scenarioValues = new ConcurrentHashMap<>();
+		List<Double> relaxationValues = Collections.synchronizedList(new ArrayList<>()); // Every worker's LP relaxation value with the original capacities
+		
+		if (!scenarios.isEmpty()) {
+			Queue<CapacityScenario> pendingScenarios = new ConcurrentLinkedQueue<>(scenarios);
+			int numWorkers = Math.max(1, Math.min(threads, scenarios.size()));
+			ExecutorService executor = Executors.newFixedThreadPool(numWorkers);
+			List<Future<Void>> results = new ArrayList<>();
+			
+			for (int i = 0; i < numWorkers; ++i) {
+				results.add(executor.submit(() -> {
+					IloCplex worker = new IloCplex();
+					
+					try {
+						worker.importModel(relaxationFile.getPath());
+						worker.setOut(null);
+						worker.setParam(IloCplex.IntParam.Threads, 1);
+						
+						Map<String, IloRange> workerCapacityRows = new HashMap<>();
+						Iterator<?> matrices = worker.LPMatrixIterator();
+						
+						while (matrices.hasNext()) {
+							for (IloRange range : ((IloLPMatrix) matrices.next()).getRanges()) {
+								if (range.getName() != null) workerCapacityRows.put(range.getName(), range);
+							}
+						}
+						
+						if (!worker.solve()) return null;
+						
+						relaxationValues.add(worker.getObjValue());
+						
+						CapacityScenario scenario;
+						
+						while ((scenario = pendingScenarios.poll()) != null) {
+							scenarioValues.put(scenario, solveScenario(worker, workerCapacityRows, scenario));
+						}
+					} finally {
+						worker.end();
+					}
+					
+					return null;
+				}));
+			}
+			
+			executor.shutdown();
+			
+			for (Future<Void> result : results) {
+				try {
+					result.get();
+				} catch (ExecutionException e) {
+					System.out.println("Capacity scenario worker failed:");
+					e.getCause().printStackTrace();
+				}
+			}
+			
+			relaxationFile.delete();
+		}
+		
+		double baseValue = relaxationValues.isEmpty() ? Double.NaN : relaxationValues.get(0);
+		output = "CENARIO;VALOR_LP;GANHO";
+		
+		for (CapacityScenario scenario : scenarios) {
+			Double value = scenarioValues.get(scenario);
+			
+			if (value == null || Double.isNaN(value)) output += "\r\n" + scenario.getName() + ";inviável;";
+			else output += "\r\n" + scenario.getName() + ";" + value + ";" + (value - baseValue);
+		}
+		
+		writer.writeCapacityScenarios(output);
+		
+		System.out.println("Capacity analysis: " + groupDuals.size() + " groups and " + scenarios.size() + " scenarios in " + (System.currentTimeMillis() - startTime) / 1000. + " s.");
+	}
+	
+	// Writes the model (already relaxed) to a temporary file for the scenario workers, with the capacity rows named so they can be found again after importing
+	private File exportCapacityRelaxation() throws IloException, IOException {
+		for (Course course : courses.values()) {
+			for (Group group : course.getGroups().values()) {
+				IloRange capacityRow = capacityRows.get(group);
+				if (capacityRow != null) capacityRow.setName(getCapacityRowName(course.getCode(), group.getCode()));
+			}
+		}
+		
+		File relaxationFile = File.createTempFile("capacity", ".sav");
+		cplex.exportModel(relaxationFile.getPath());
+		
+		return relaxationFile;
+	}
+	
+	// Sets the bounds of every integer variable to its value in the solution with these assignments (the derived ones at their best feasible value), as
+	// CPLEX's fixed MILP does. The continuous group utilization slacks stay free. Types are read before the relaxation's conversion, hence 'integerVariables'
+	private void fixAssignments(List<IloIntVar> assignmentVars, List<String[]> variableKeys, List<String[]> assignments, Set<IloNumVar> integerVariables)
+			throws IloException {
+		Set<String> assignedKeys = new HashSet<>();
+		
+		for (String[] assignment : assignments) {
+			assignedKeys.add(String.join("#", assignment));
+		}
+		
+		double[] assignmentValues = new double[assignmentVars.size()];
+		
+		for (int i = 0; i < assignmentValues.length; ++i) {
+			assignmentValues[i] = assignedKeys.contains(String.join("#", variableKeys.get(i))) ? 1 : 0;
+		}
+		
+		IloNumVar[] allVariables = getAllVariables();
+		double[] allValues = completeSolution(assignmentVars.toArray(new IloIntVar[0]), assignmentValues);
+		
+		for (int i = 0; i < allVariables.length; ++i) {
+			if (!integerVariables.contains(allVariables[i])) continue;
+			
+			allVariables[i].setLB(allValues[i]);
+			allVariables[i].setUB(allValues[i]);
+		}
+	}
+	
+	// (student, course, group) of every assignment in the current solution
+	private List<String[]> readAssignments() throws IloException {
+		List<IloIntVar> assignmentVars = new ArrayList<>();
+		List<String[]> variableKeys = new ArrayList<>();
+		collectAssignmentVariables(assignmentVars, variableKeys);
+		
+		double[] values = cplex.getValues(assignmentVars.toArray(new IloIntVar[0]));
+		List<String[]> assignments = new ArrayList<>();
+		
+		for (int i = 0; i < values.length; ++i) {
+			if (values[i] > .5) assignments.add(variableKeys.get(i));
+		}
+		
+		return assignments;
+	}
+	
+	private static String getCapacityRowName(String courseCode, String groupCode) {
+		return "(Capacity of " + courseCode + " " + groupCode + ")";
+	}
+	
+	// Re-solves the relaxation with the scenario's capacities, then puts the original ones back. Groups the scenario doesn't know are ignored
+	private static double solveScenario(IloCplex cplex, Map<String, IloRange> capacityRows, CapacityScenario scenario) throws IloException {
+		List<IloRange> changedRows = new ArrayList<>();
+		List<Double> originalBounds = new ArrayList<>();
+		
+		for (int i = 0; i < scenario.getNumChanges(); ++i) {
+			String[] groupCodes = scenario.getGroupCodes(i);
+			IloRange capacityRow = capacityRows.get(getCapacityRowName(groupCodes[0], groupCodes[1]));
+			
+			if (capacityRow == null) {
+				System.out.println("Capacity scenario " + scenario.getName() + ": group " + groupCodes[0] + " " + groupCodes[1] + " has no capacity constraint.");
+				continue;
+			}
+			
+			changedRows.add(capacityRow);
+			originalBounds.add(capacityRow.getUB());
+			capacityRow.setUB(Math.max(0, capacityRow.getUB() + scenario.getSeatChange(i)));
+		}
+		
+		try {
+			return cplex.solve() ? cplex.getObjValue() : Double.NaN;
+		} finally {
+			for (int i = 0; i < changedRows.size(); ++i) {
+				changedRows.get(i).setUB(originalBounds.get(i));
+			}
+		}
+	}
+	
+	// Models only each student's first 'numPreferences' preferences. After every solve, each student who didn't get any preference gets their next
+	// 'numPreferences' added (at least up to the first deeper preference the last solution's capacities could still give them), and the problem is
+	// solved again, starting from the last solution. It stops once no student can be extended that way, or when the time limit is over
+	public void runTopKPreferences(int numPreferences) throws IloException, IOException {
+		writer.checkGroupCapacities();
+		
+		long startTime = System.currentTimeMillis();
+		
+		preferenceLimit = numPreferences;
+		studentPreferenceRows = new HashMap<>();
+		defineManualAssignmentProblem();
+		
+		modelBuildTime = (System.currentTimeMillis() - startTime) / 1000.;
+		System.out.println("Model built in " + modelBuildTime + " s (" + cplex.getNcols() + " variables, " + cplex.getNrows() + " linear constraints).");
+		
+		solverSettings.apply(cplex);
+		useLazyClashCallback();
+		
+		List<IloIntVar> assignmentVars = new ArrayList<>();
+		List<String[]> variableKeys = new ArrayList<>();
+		collectAssignmentVariables(assignmentVars, variableKeys);
+		
+		IloIntVar[] vars = assignmentVars.toArray(new IloIntVar[0]);
+		List<String[]> bestAssignments = null;
+		int numModelledPreferences = 0, numPreferencesTotal = 0, numExtendedStudents = 0;
+		String output = "RONDA;PREFERENCIAS MODELADAS;PREFERENCIAS TOTAL;ALUNOS ESTENDIDOS;VALOR;LIMITE;ESTADO;TEMPO";
+		
+		for (Map.Entry<Student, StudentPreferenceRows> preferenceRows : studentPreferenceRows.entrySet()) {
+			numModelledPreferences += preferenceRows.getValue().getNumModelledPreferences();
+			numPreferencesTotal += preferenceRows.getKey().getPreferences().size();
+		}
+		
+		long solveStartTime = System.currentTimeMillis();
+		
+		for (int round = 1; ; ++round) {
+			double remainingTime = solverSettings.getTimeLimit() - (System.currentTimeMillis() - solveStartTime) / 1000.;
+			
+			if (remainingTime <= 0) {
+				System.out.println("Top-K preferences: no time left for round " + round + ".");
+				break;
+			}
+			
+			cplex.setParam(IloCplex.DoubleParam.TiLim, remainingTime);
+			
+			long roundStartTime = System.currentTimeMillis();
+			boolean solved = cplex.solve();
+			double roundTime = (System.currentTimeMillis() - roundStartTime) / 1000.;
+			
+			output += "\r\n" + round + ";" + numModelledPreferences + ";" + numPreferencesTotal + ";" + numExtendedStudents + ";" + (solved ? cplex.getObjValue() : "")
+					+ ";" + (solved ? cplex.getBestObjValue() : "") + ";" + cplex.getStatus() + ";" + roundTime;
+			
+			if (!solved) {
+				System.out.println("Top-K preferences: round " + round + " failed after " + roundTime + " s.");
+				break;
+			}
+			
+			double[] values = cplex.getValues(vars);
+			
+			bestAssignments = new ArrayList<>();
+			
+			for (int i = 0; i < values.length; ++i) {
+				if (values[i] > .5) bestAssignments.add(variableKeys.get(i));
+			}
+			
+			System.out.println("Top-K preferences: round " + round + " reached " + cplex.getObjValue() + " in " + roundTime + " s with " + numModelledPreferences + " of "
+					+ numPreferencesTotal + " preferences.");
+			
+			numExtendedStudents = 0;
+			
+			Map<Student, StudentTimetable> timetables = toTimetables(bestAssignments);
+			Map<Group, Integer> numAssignedStudents = new IdentityHashMap<>();
+			Map<Group, Float> minAssignedGrades = new IdentityHashMap<>();
+			
+			for (StudentTimetable timetable : timetables.values()) {
+				for (Group group : timetable.getCourseGroupPairs().values()) {
+					numAssignedStudents.merge(group, 1, Integer::sum);
+					minAssignedGrades.merge(group, timetable.getStudent().getAvgGrade(), Math::min);
+				}
+			}
+			
+			for (StudentTimetable timetable : timetables.values()) {
+				Student student = timetable.getStudent();
+				int studentModelledPreferences = studentPreferenceRows.get(student).getNumModelledPreferences();
+				
+				// A student who got a preference, modelled or not, keeps their timetable either way (a deeper one only adds its credit once modelled)
+				if (timetable.getFulfilledPreference() != null) continue;
+				
+				// Only worth extending up to a deeper preference that could be given to the student without the solver moving anyone with a better grade
+				int compatiblePreference = findCompatiblePreference(timetable, studentModelledPreferences, numAssignedStudents, minAssignedGrades);
+				
+				if (compatiblePreference < 0) continue;
+				
+				int numAddedPreferences = extendStudentPreferences(student, Math.max(numPreferences, compatiblePreference - studentModelledPreferences + 1));
+				
+				if (numAddedPreferences > 0) {
+					numModelledPreferences += numAddedPreferences;
+					++numExtendedStudents;
+				}
+			}
+			
+			if (numExtendedStudents == 0) break;
+			
+			// The fulfilled preferences sum has new terms, so the objective has to be built again
+			cplex.remove(objective);
+			defineObjective();
+			cplex.addMIPStart(vars, values, IloCplex.MIPStartEffort.SolveFixed);
+		}
+		
+		solveTime = (System.currentTimeMillis() - solveStartTime) / 1000.;
+		output += "\r\n" + "Total;;;;;;;" + solveTime;
+		
+		writer.writeTopKPreferencesReport(output);
+		
+		if (bestAssignments != null) {
+			writer.writeOutputData(toTimetables(bestAssignments));
+		}
+		else {
+			System.out.println("Failed to solve problem.");
+		}
+		
+		cplex.end();
+	}
+	
+	// Splits the students into 'numTiers' tiers of about the same size by grade (students with the same grade are kept in the same tier) and solves one tier
+	// at a time, best grades first, each on a model of its own students only. A tier's assignments are final: their seats are taken out of the groups'
+	// capacities for the tiers after it. The settings' time limit is shared by all tiers, each getting an even share of what's left. The combined solution
+	// is evaluated on the whole cohort and, if 'compareMonolithic', compared with the full model solved with the same time limit
+	public void runGradeTiers(int numTiers, boolean compareMonolithic) throws IloException, IOException {
+		writer.checkGroupCapacities();
+		
+		List<Student> sortedStudents = new ArrayList<>(students.values());
+		sortedStudents.sort(Comparator.comparing(Student::getAvgGrade).reversed().thenComparing(Student::getCode));
+		
+		List<List<Student>> tiers = new ArrayList<>();
+		int tierStart = 0;
+		
+		for (int tier = 0; tier < numTiers && tierStart < sortedStudents.size(); ++tier) {
+			int tierEnd = Math.max(tierStart + 1, (int) ((long) sortedStudents.size() * (tier + 1) / numTiers));
+			
+			while (tierEnd < sortedStudents.size() && sortedStudents.get(tierEnd).getAvgGrade() == sortedStudents.get(tierEnd - 1).getAvgGrade()) ++tierEnd;
+			
+			tiers.add(sortedStudents.subList(tierStart, tierEnd));
+			tierStart = tierEnd;
+		}
+		
+		Map<String, Integer> tierReservedSeats = new HashMap<>();
+		List<String[]> allAssignments = new ArrayList<>();
+		String output = "NIVEL;ALUNOS;MEDIA MIN;MEDIA MAX;VARIAVEIS;RESTRICOES;VALOR;LIMITE;ESTADO;TEMPO CONSTRUCAO;TEMPO RESOLUCAO";
+		
+		long startTime = System.currentTimeMillis();
+		
+		for (int tier = 0; tier < tiers.size(); ++tier) {
+			List<Student> tierStudents = tiers.get(tier);
+			Set<String> tierStudentCodes = new HashSet<>();
+			
+			for (Student student : tierStudents) {
+				tierStudentCodes.add(student.getCode());
+			}
+			
+			long tierStartTime = System.currentTimeMillis();
+			AssignmentProblem tierProblem = copy();
+			
+			tierProblem.students.values().removeIf(student -> !tierStudentCodes.contains(student.getCode()));
+			tierProblem.reservedSeats = tierReservedSeats;
+			tierProblem.groupMinimums = (tier == tiers.size() - 1);
+			
+			try {
+				tierProblem.defineManualAssignmentProblem();
+				
+				double tierBuildTime = (System.currentTimeMillis() - tierStartTime) / 1000.;
+				double remainingTime = solverSettings.getTimeLimit() - (System.currentTimeMillis() - startTime) / 1000.;
+				
+				solverSettings.apply(tierProblem.cplex);
+				tierProblem.useLazyClashCallback();
+				tierProblem.cplex.setParam(IloCplex.DoubleParam.TiLim, Math.max(1, remainingTime / (tiers.size() - tier)));
+				
+				List<IloIntVar> assignmentVars = new ArrayList<>();
+				List<String[]> variableKeys = new ArrayList<>();
+				tierProblem.collectAssignmentVariables(assignmentVars, variableKeys);
+				
+				long tierSolveStartTime = System.currentTimeMillis();
+				boolean solved = tierProblem.cplex.solve();
+				double tierSolveTime = (System.currentTimeMillis() - tierSolveStartTime) / 1000.;
+				
+				output += "\r\n" + (tier + 1) + ";" + tierStudents.size() + ";" + tierStudents.get(tierStudents.size() - 1).getAvgGrade() + ";" + tierStudents.get(0).getAvgGrade()
+						+ ";" + tierProblem.cplex.getNcols() + ";" + tierProblem.cplex.getNrows() + ";" + (solved ? tierProblem.cplex.getObjValue() : "")
+						+ ";" + (solved ? tierProblem.cplex.getBestObjValue() : "") + ";" + tierProblem.cplex.getStatus() + ";" + tierBuildTime + ";" + tierSolveTime;
+				
+				if (!solved) { // Its students are left unassigned, and its seats free for the next tiers
+					System.out.println("Grade tiers: tier " + (tier + 1) + " (" + tierStudents.size() + " students) failed after " + tierSolveTime + " s.");
+					continue;
+				}
+				
+				double[] values = tierProblem.cplex.getValues(assignmentVars.toArray(new IloIntVar[0]));
+				
+				for (int i = 0; i < values.length; ++i) {
+					if (values[i] < .5) continue;
+					
+					String[] assignment = variableKeys.get(i);
+					allAssignments.add(assignment);
+					tierReservedSeats.merge(assignment[1] + "#" + assignment[2], 1, Integer::sum);
+				}
+				
+				System.out.println("Grade tiers: tier " + (tier + 1) + " (" + tierStudents.size() + " students, grades " + tierStudents.get(tierStudents.size() - 1).getAvgGrade()
+						+ " to " + tierStudents.get(0).getAvgGrade() + ") reached " + tierProblem.cplex.getObjValue() + " in " + tierBuildTime + " + " + tierSolveTime + " s.");
+			} finally {
+				tierProblem.cplex.end();
+			}
+		}
+		
+		solveTime = (System.currentTimeMillis() - startTime) / 1000.;
+		
+		Map<Student, StudentTimetable> solution = toTimetables(allAssignments);
+		double tiersValue = createTimetableEvaluator().evaluateSolution(solution); // Same objective as the full model's
+		
+		output += "\r\n" + "Total;" + students.size() + ";;;;;" + tiersValue + ";;;;" + solveTime;
+		
+		writer.writeOutputData(solution);
+		recordGroupUsage(solution);
+		
+		if (compareMonolithic) {
+			long monolithicStartTime = System.currentTimeMillis();
+			
+			defineManualAssignmentProblem();
+			
+			double monolithicBuildTime = (System.currentTimeMillis() - monolithicStartTime) / 1000.;
+			
+			solverSettings.apply(cplex);
+			useLazyClashCallback();
+			
+			long monolithicSolveStartTime = System.currentTimeMillis();
+			boolean solved = cplex.solve();
+			double monolithicSolveTime = (System.currentTimeMillis() - monolithicSolveStartTime) / 1000.;
+			
+			output += "\r\n" + "Monolítico;" + students.size() + ";;;" + cplex.getNcols() + ";" + cplex.getNrows() + ";" + (solved ? cplex.getObjValue() : "")
+					+ ";" + (solved ? cplex.getBestObjValue() : "") + ";" + cplex.getStatus() + ";" + monolithicBuildTime + ";" + monolithicSolveTime;
+			
+			if (solved) {
+				// Against the best monolithic solution and against its bound, which is also a bound on any solution the tiers could find
+				output += "\r\n" + "Perda;;;;;;" + (cplex.getObjValue() - tiersValue) / Math.abs(cplex.getObjValue()) + ";"
+						+ (cplex.getBestObjValue() - tiersValue) / Math.abs(cplex.getBestObjValue()) + ";;;";
+				
+				System.out.println("Grade tiers: " + tiersValue + " in " + solveTime + " s, monolithic solve " + cplex.getObjValue() + " (bound " + cplex.getBestObjValue()
+						+ ") in " + monolithicSolveTime + " s.");
+			}
+			else {
+				System.out.println("Grade tiers: " + tiersValue + " in " + solveTime + " s, monolithic solve failed after " + monolithicSolveTime + " s.");
+			}
+		}
+		else {
+			System.out.println("Grade tiers: " + tiersValue + " in " + solveTime + " s.");
+		}
+		
+		writer.writeGradeTiersReport(output);
+		
+		cplex.end();
+	}
+	
+	// Builds the model as the LP relaxation of the linearized formulation and solves it on one thread. NaN if it isn't solved
+	public double solveRelaxation() throws IloException {
+		linearizedFormulation = true;
+		
+		defineManualAssignmentProblem();
+		
+		cplex.add(cplex.conversion(getAllVariables(), IloNumVarType.Float));
+		cplex.setOut(null);
+		cplex.setParam(IloCplex.IntParam.Threads, 1);
+		
+		return cplex.solve() ? cplex.getObjValue() : Double.NaN;
+	}
+	
+	// Runs differently configured CPLEX solves and the Lagrangian heuristic at the same time, each on its own copy of the model,
+	// until the best shared solution is within the settings' gap of the best shared bound or the settings' time limit has passed
+	public void runPortfolio() throws IloException, IOException, InterruptedException {
+		writer.checkGroupCapacities();
+		
+		SolverPortfolio portfolio = new SolverPortfolio(solverSettings.getMipGap(), solverSettings.getTimeLimit());
+		IncumbentPool pool = portfolio.getPool();
+		
+		// Name, linearized formulation, random seed, MIP emphasis
+		Object[][] configurations = {
+				{"indicator", false, 0, IloCplex.MIPEmphasis.Balanced},
+				{"linearized", true, 1, IloCplex.MIPEmphasis.Balanced},
+				{"indicator-feasibility", false, 2, IloCplex.MIPEmphasis.Feasibility},
+				{"linearized-bestbound", true, 3, IloCplex.MIPEmphasis.BestBound}
+		};
+		
+		int totalThreads = (solverSettings.getThreads() > 0) ? solverSettings.getThreads() : Runtime.getRuntime().availableProcessors();
+		int threadsPerMember = Math.max(1, (totalThreads - 1) / configurations.length); // One core is left for the Lagrangian heuristic
+		
+		for (Object[] configuration : configurations) {
+			AssignmentProblem member = copy();
+			member.setLinearizedFormulation((Boolean) configuration[1]);
+			
+			portfolio.addMember((String) configuration[0], () -> {
+				member.solvePortfolioMember(pool, (String) configuration[0], (Integer) configuration[2], (Integer) configuration[3], threadsPerMember);
+				return null;
+			});
+		}
+		
+		AssignmentProblem lagrangianMember = copy();
+		
+		portfolio.addMember("lagrangian", () -> {
+			lagrangianMember.solveLagrangianPortfolioMember(pool);
+			return null;
+		});
+		
+		portfolio.run();
+		
+		if (pool.getBestAssignments() != null) {
+			writer.writeOutputData(toTimetables(pool.getBestAssignments()));
+		}
+		else {
+			System.out.println("Failed to solve problem.");
+		}
+		
+		cplex.end();
+	}
+	
+	// Reads its own copy of the input data, with the same model configuration and solver settings (the grade weighting is rebuilt with the model)
+	private AssignmentProblem copy() throws IloException, IOException {
+		AssignmentProblem copy = new AssignmentProblem(courseCatalog, inputFilenames[1], inputFilenames[2], inputFilenames[3], inputFilenames[4], inputFilenames[5],
+				semester, procVersion, isMandatoryAssignment, preferenceWeightingMode, weightMaximizeSumAllAssignments, weightMaximizeCompleteStudents,
+				weightMaximizeOccupiedTimeslots, weightMaximizeFulfilledPreferences, weightMinimizeGroupUtilizationSlacks, weightMinimizeOccupiedPeriodsWithNoPreferenceAssigned,
+				weightMinimizeUnwantedOccupiedPeriods, weightMinimizeAssignmentsToUnwantedGroups, outputPath);
+		
+		copy.breakSymmetries = breakSymmetries;
+		copy.linearizedFormulation = linearizedFormulation;
+		copy.clashCliques = clashCliques;
+		copy.lazyClashRows = lazyClashRows;
+		copy.scaledObjective = scaledObjective;
+		copy.variableNaming = variableNaming;
+		copy.groupMinimums = groupMinimums;
+		copy.solverSettings = solverSettings;
+		
+		return copy;
+	}
+	
+	private void solvePortfolioMember(IncumbentPool pool, String name, int randomSeed, int mipEmphasis, int threads) throws IloException {
+		defineManualAssignmentProblem();
+		
+		List<IloIntVar> assignmentVars = new ArrayList<>();
+		List<String[]> variableKeys = new ArrayList<>();
+		collectAssignmentVariables(assignmentVars, variableKeys);
+		
+		PortfolioMember member = new PortfolioMember(name, pool, this, assignmentVars, variableKeys);
+		member.use(cplex);
+		
+		cplex.setOut(null);
+		solverSettings.apply(cplex);
+		cplex.setParam(IloCplex.IntParam.RandomSeed, randomSeed);
+		cplex.setParam(IloCplex.IntParam.MIPEmphasis, mipEmphasis);
+		cplex.setParam(IloCplex.IntParam.Threads, threads);
+		cplex.setParam(IloCplex.DoubleParam.TiLim, Math.max(1, pool.getRemainingTime()));
+		
+		if (cplex.solve()) {
+			pool.offer(cplex.getObjValue(), member.toAssignments(cplex.getValues(member.getAssignmentVars())), name);
+			pool.updateBound(cplex.getBestObjValue());
+		}
+		
+		System.out.println("Portfolio member " + name + " stopped: " + cplex.getStatus() + " after " + pool.getElapsedTime() + " s.");
+		
+		cplex.end();
+	}
+	
+	private void solveLagrangianPortfolioMember(IncumbentPool pool) {
+		TimetableEvaluator evaluator = createTimetableEvaluator();
+		LagrangianSolver solver = new LagrangianSolver(courses, students, evaluator, 10000);
+		
+		Map<Student, StudentTimetable> solution = solver.solve(500, Math.min(solverSettings.getHeuristicTimeLimit(), pool.getRemainingTime()));
+		
+		// Its upper bound is only shared if it's a bound, i.e. some iteration priced every student's timetables completely
+		if (solver.getUpperBound() < Double.POSITIVE_INFINITY) pool.updateBound(solver.getUpperBound());
+		
+		// Without a finite lower bound no repair met every group's hard minimum, and the solution it keeps isn't feasible
+		if (solver.getLowerBound() == Double.NEGATIVE_INFINITY) {
+			System.out.println("Portfolio member lagrangian found no feasible solution.");
+			cplex.end();
+			return;
+		}
+		
+		List<String[]> assignments = new ArrayList<>();
+		
+		for (StudentTimetable timetable : solution.values()) {
+			for (Map.Entry<Course, Group> courseGroupPair : timetable.getCourseGroupPairs().entrySet()) {
+				assignments.add(new String[] {timetable.getStudent().getCode(), courseGroupPair.getKey().getCode(), courseGroupPair.getValue().getCode()});
+			}
+		}
+		
+		pool.offer(solver.getLowerBound(), assignments, "lagrangian");
+		
+		cplex.end();
+	}
+	
+	private Map<Student, StudentTimetable> toTimetables(List<String[]> assignments) {
+		Map<Student, Map<Course, Group>> courseGroupPairs = new HashMap<>();
+		
+		for (Student student : students.values()) {
+			courseGroupPairs.put(student, new HashMap<>());
+		}
+		
+		for (String[] assignment : assignments) {
+			Course course = courses.get(assignment[1]);
+			courseGroupPairs.get(students.get(assignment[0])).put(course, course.getGroups().get(assignment[2]));
+		}
+		
+		Map<Student, StudentTimetable> timetables = new HashMap<>();
+		
+		for (Map.Entry<Student, Map<Course, Group>> studentPairs : courseGroupPairs.entrySet()) {
+			timetables.put(studentPairs.getKey(), new StudentTimetable(studentPairs.getKey(), studentPairs.getValue()));
+		}
+		
+		return timetables;
+	}
+	
+	IloNumVar[] getAllVariables() {
+		List<IloNumVar> allVariables = new ArrayList<>();
+		
+		for (Student student : students.values()) {
+			for (Map<Group, IloIntVar> groupAssignments : student.getCourseGroupAssignments().values()) {
+				allVariables.addAll(groupAssignments.values());
+			}
+		}
+		
+		allVariables.addAll(derivedVariables.keySet());
+		
+		return allVariables.toArray(new IloNumVar[0]);
+	}
+	
+	// Values for getAllVariables() given the values of the assignment variables, with every other variable at its best feasible value
+	double[] completeSolution(IloIntVar[] assignmentVars, double[] assignmentValues) {
+		Map<IloNumVar, Double> values = new HashMap<>();
+		
+		for (int i = 0; i < assignmentVars.length; ++i) {
+			values.put(assignmentVars[i], assignmentValues[i]);
+		}
+		
+		for (Map.Entry<IloNumVar, ToDoubleFunction<Map<IloNumVar, Double>>> derivedVariable : derivedVariables.entrySet()) {
+			values.put(derivedVariable.getKey(), derivedVariable.getValue().applyAsDouble(values));
+		}
+		
+		IloNumVar[] allVariables = getAllVariables();
+		double[] allValues = new double[allVariables.length];
+		
+		for (int i = 0; i < allVariables.length; ++i) {
+			allValues[i] = values.getOrDefault(allVariables[i], 0.);
+		}
+		
+		return allValues;
+	}
+	
+	private static double evaluate(IloLinearIntExpr expr, Map<IloNumVar, Double> values) {
+		double value = 0;
+		IloLinearIntExprIterator iterator = expr.linearIterator();
+		
+		while (iterator.hasNext()) {
+			IloIntVar var = iterator.nextIntVar();
+			value += iterator.getValue() * values.getOrDefault(var, 0.);
+		}
+		
+		return value;
+	}
+	
+	private TimetableEvaluator createTimetableEvaluator() {
+		return new TimetableEvaluator(courses, students, isMandatoryAssignment, preferenceWeightingMode, scaledObjective, weightMaximizeSumAllAssignments, weightMaximizeCompleteStudents,
+				weightMaximizeOccupiedTimeslots, weightMaximizeFulfilledPreferences, weightMinimizeGroupUtilizationSlacks, weightMinimizeOccupiedPeriodsWithNoPreferenceAssigned,
+				weightMinimizeUnwantedOccupiedPeriods, weightMinimizeAssignmentsToUnwantedGroups);
 	}
 	
 	private void defineManualAssignmentProblem() throws IloException {
@@ -83,12 +1176,16 @@ public class AssignmentProblem {
 		sumAllOccupiedPeriodsWithNoPreferenceAssigned = cplex.linearIntExpr(); // Sum of all periods occupied individually by all students who weren't assigned to one of their preferences
 		sumAllUnwantedOccupiedPeriods = cplex.linearIntExpr(); // Sum of all periods occupied individually by students who didn't choose them in one of their preferences
 		sumAllAssignmentsToUnwantedGroups = cplex.linearIntExpr(); // Sum of all assignments of students to course-group pairs they didn't include in one of their preferences
+		gradeWeighting = new GradeWeighting(students.values(), scaledObjective);
 		
 		float sumEnrollmentsTimesAvgGrade = 0; // Summation of each student's number of course enrollments multiplied by their grade
 		float sumAvgGrades = 0; // Sum of every student's grade
-		float sumAvgPow = 0; // Sum of 2^(every student's grade) * 10
+		float sumAvgPow = 0; // Sum of every student's grade weight (2^grade, or its scaled version) * 10
 		int sumEnrollments = 0;
 		
+		numClashCliques = 0;
+		numClashCliqueStudents = 0;
+		
 		for (Student student : students.values()) {
 			processStudent(student);
 			
@@ -98,68 +1195,303 @@ public class AssignmentProblem {
 			sumEnrollmentsTimesAvgGrade += studentEnrollments * studentAvgGrade;
 			sumAvgGrades += studentAvgGrade;
 			
-			if (preferenceWeightingMode == PreferenceWeightingMode.EXPONENT) {
-				sumAvgPow += Math.pow(2, student.getAvgGrade()) * 10;
+			if (preferenceWeightingMode == PreferenceWeightingMode.EXPONENT) {
+				sumAvgPow += gradeWeighting.weigh(student.getAvgGrade()) * 10;
+			}
+			
+			sumEnrollments += studentEnrollments;
+		}
+		
+		float sumTargetNumStudentsAssigned = 0;
+		
+		for (Course course : courses.values()) {
+			if (isMandatoryAssignment) {
+				sumTargetNumStudentsAssigned += processCourseMandatory(course);
+			}
+			else if (!course.getMandatory()) {
+				processCourseOptional(course);
+			}
+		}
+		
+		float sumPreferenceWeights = (preferenceWeightingMode == PreferenceWeightingMode.EXPONENT) ? sumAvgPow : sumAvgGrades * 10; // Normalizer of weightedSumFulfilledPreferences
+		
+		objectiveSums = new IloNumExpr[] {weightedSumAllAssignments, weightedSumAllCompleteStudents, sumAllOccupiedTimeslots, weightedSumFulfilledPreferences,
+				sumAllGroupUtilizationSlacks, sumAllOccupiedPeriodsWithNoPreferenceAssigned, sumAllUnwantedOccupiedPeriods, sumAllAssignmentsToUnwantedGroups};
+		
+		// Sums that can't be normalized (because their maximum is 0) become the constant 1
+		objectiveOffsets = new double[] {
+				(sumEnrollmentsTimesAvgGrade != 0) ? 0 : 1,
+				(sumAvgGrades != 0) ? 0 : 1,
+				(targetNumOccupiedTimeslots != 0) ? 0 : 1,
+				(sumPreferenceWeights != 0) ? 0 : 1,
+				1, 1, 1, 1};
+		objectiveScales = new double[] {
+				(sumEnrollmentsTimesAvgGrade != 0) ? 1. / sumEnrollmentsTimesAvgGrade : 0,
+				(sumAvgGrades != 0) ? 1. / sumAvgGrades : 0,
+				(targetNumOccupiedTimeslots != 0) ? 1. / targetNumOccupiedTimeslots : 0,
+				(sumPreferenceWeights != 0) ? 1. / sumPreferenceWeights : 0,
+				(sumTargetNumStudentsAssigned != 0) ? -1. / sumTargetNumStudentsAssigned : 0,
+				-1. / (students.size() * 12),
+				-1. / (students.size() * 12),
+				-1. / sumEnrollments};
+		
+		defineObjective();
+		
+		if (clashCliques && !lazyClashRows) {
+			System.out.println("Clash cliques: " + numClashCliques + " rows for " + numClashCliqueStudents + " of " + students.size() + " students (instead of their per-timeslot practical class rows).");
+		}
+		
+		// TODO: DEBUG
+		System.out.println("sumEnrollmentsTimesAvgGrade = " + sumEnrollmentsTimesAvgGrade);
+		System.out.println("sumAvgGrades = " + sumAvgGrades);
+		System.out.println("targetNumOccupiedTimeslots = " + targetNumOccupiedTimeslots);
+		if (preferenceWeightingMode == PreferenceWeightingMode.EXPONENT) {
+			System.out.println("sumAvgPow = " + sumAvgPow);
+		}
+		else if (preferenceWeightingMode == PreferenceWeightingMode.TIMES) {
+			System.out.println("sumAvgGrades * 10 = " + sumAvgGrades * 10);
+		}
+		System.out.println("students.size() * 12 = " + students.size() * 12);
+		System.out.println("students.size() * 12 = " + students.size() * 12);
+		System.out.println("sumEnrollments = " + sumEnrollments);
+		System.out.println();
+	}
+	
+	private void defineObjective() throws IloException {
+		float[] weights = {weightMaximizeSumAllAssignments, weightMaximizeCompleteStudents, weightMaximizeOccupiedTimeslots, weightMaximizeFulfilledPreferences,
+				weightMinimizeGroupUtilizationSlacks, weightMinimizeOccupiedPeriodsWithNoPreferenceAssigned, weightMinimizeUnwantedOccupiedPeriods,
+				weightMinimizeAssignmentsToUnwantedGroups};
+		IloNumExpr[] objectiveComponents = new IloNumExpr[objectiveSums.length];
+		
+		for (int i = 0; i < objectiveSums.length; ++i) {
+			objectiveComponents[i] = cplex.sum(objectiveOffsets[i], cplex.prod(objectiveScales[i], objectiveSums[i]));
+		}
+		
+		if (isMandatoryAssignment) {
+			IloNumExpr[] weightedComponents = new IloNumExpr[objectiveSums.length];
+			
+			for (int i = 0; i < objectiveSums.length; ++i) {
+				weightedComponents[i] = cplex.prod(weights[i], objectiveComponents[i]);
+			}
+			
+			objective = cplex.addMaximize(cplex.sum(weightedComponents));
+		}
+		else {
+			objective = cplex.addMaximize(objectiveComponents[3]); // objMaximizeFulfilledPreferences
+		}
+	}
+	
+	// Everything besides the input files and the weights that changes the model's structure
+	private String buildModelStructureKey() {
+		return semester + "|" + procVersion + "|" + isMandatoryAssignment + "|" + preferenceWeightingMode + "|" + linearizedFormulation + "|" + breakSymmetries + "|" + clashCliques + "|" + lazyClashRows + "|" + scaledObjective;
+	}
+	
+	private void exportModel(ModelCache modelCache) throws IloException, IOException {
+		IloNumVar[] allVariables = getAllVariables();
+		
+		for (int i = 0; i < allVariables.length; ++i) {
+			if (allVariables[i].getName() == null) { // Every variable needs a name to be found again after importing
+				String name = getVariableName(allVariables[i]);
+				allVariables[i].setName(name != null ? name : "(Auxiliary " + i + ")");
+			}
+		}
+		
+		Map<IloNumVar, double[]> coefficientsByVariable = collectObjectiveCoefficients(allVariables);
+		Map<String, double[]> coefficients = new LinkedHashMap<>();
+		
+		for (IloNumVar var : allVariables) {
+			double[] variableCoefficients = coefficientsByVariable.get(var);
+			
+			for (double coefficient : variableCoefficients) {
+				if (coefficient != 0) {
+					coefficients.put(var.getName(), variableCoefficients);
+					break;
+				}
+			}
+		}
+		
+		cplex.exportModel(modelCache.getModelFilename());
+		modelCache.writeIndex(objectiveOffsets, objectiveScales, coefficients);
+	}
+	
+	// Every variable's coefficient in each of the objective sums (before they're normalized)
+	private Map<IloNumVar, double[]> collectObjectiveCoefficients(IloNumVar[] allVariables) throws IloException {
+		Map<IloNumVar, double[]> coefficientsByVariable = new HashMap<>();
+		
+		for (IloNumVar var : allVariables) {
+			coefficientsByVariable.put(var, new double[objectiveSums.length]);
+		}
+		
+		for (int i = 0; i < objectiveSums.length; ++i) {
+			if (objectiveSums[i] instanceof IloLinearIntExpr) {
+				IloLinearIntExprIterator iterator = ((IloLinearIntExpr) objectiveSums[i]).linearIterator();
+				
+				while (iterator.hasNext()) {
+					IloIntVar var = iterator.nextIntVar();
+					coefficientsByVariable.get(var)[i] += iterator.getValue();
+				}
+			}
+			else {
+				IloLinearNumExprIterator iterator = ((IloLinearNumExpr) objectiveSums[i]).linearIterator();
+				
+				while (iterator.hasNext()) {
+					IloNumVar var = iterator.nextNumVar();
+					coefficientsByVariable.get(var)[i] += iterator.getValue();
+				}
+			}
+		}
+		
+		return coefficientsByVariable;
+	}
+	
+	// Smallest and largest nonzero objective coefficient (as CPLEX sees them: normalized and weighted) over all variables and within each sum, CPLEX's kappa
+	// statistics of the LP bases it met and the solve time
+	private String buildNumericsReport() throws IloException {
+		float[] weights = {weightMaximizeSumAllAssignments, weightMaximizeCompleteStudents, weightMaximizeOccupiedTimeslots, weightMaximizeFulfilledPreferences,
+				weightMinimizeGroupUtilizationSlacks, weightMinimizeOccupiedPeriodsWithNoPreferenceAssigned, weightMinimizeUnwantedOccupiedPeriods,
+				weightMinimizeAssignmentsToUnwantedGroups};
+		double[] minCoefficients = new double[objectiveSums.length + 1], maxCoefficients = new double[objectiveSums.length + 1]; // The last one is the whole objective
+		
+		Arrays.fill(minCoefficients, Double.POSITIVE_INFINITY);
+		
+		for (double[] variableCoefficients : collectObjectiveCoefficients(getAllVariables()).values()) {
+			double objectiveCoefficient = 0;
+			
+			for (int i = 0; i < objectiveSums.length; ++i) {
+				double weight = isMandatoryAssignment ? weights[i] : (i == 3 ? 1 : 0); // The optional courses' objective is only the fulfilled preferences sum
+				double coefficient = weight * objectiveScales[i] * variableCoefficients[i];
+				
+				objectiveCoefficient += coefficient;
+				
+				if (coefficient == 0) continue;
+				
+				minCoefficients[i] = Math.min(minCoefficients[i], Math.abs(coefficient));
+				maxCoefficients[i] = Math.max(maxCoefficients[i], Math.abs(coefficient));
 			}
 			
-			sumEnrollments += studentEnrollments;
+			if (objectiveCoefficient == 0) continue;
+			
+			minCoefficients[objectiveSums.length] = Math.min(minCoefficients[objectiveSums.length], Math.abs(objectiveCoefficient));
+			maxCoefficients[objectiveSums.length] = Math.max(maxCoefficients[objectiveSums.length], Math.abs(objectiveCoefficient));
 		}
 		
-		float sumTargetNumStudentsAssigned = 0;
+		String output = "Objetivo escalado: " + (scaledObjective ? "sim" : "não");
+		output += "\r\n" + "\r\n" + "COMPONENTE;MINIMO;MAXIMO;AMPLITUDE";
 		
-		for (Course course : courses.values()) {
-			if (isMandatoryAssignment) {
-				sumTargetNumStudentsAssigned += processCourseMandatory(course);
-			}
-			else if (!course.getMandatory()) {
-				processCourseOptional(course);
-			}
+		for (int i = 0; i <= objectiveSums.length; ++i) {
+			if (minCoefficients[i] > maxCoefficients[i]) continue; // Not in the objective
+			
+			output += "\r\n" + (i < objectiveSums.length ? ProgressSample.COMPONENT_NAMES[i] : "total") + ";" + minCoefficients[i] + ";" + maxCoefficients[i]
+					+ ";" + maxCoefficients[i] / minCoefficients[i];
 		}
 		
-		IloNumExpr objMaximizeSumAllAssignments = (sumEnrollmentsTimesAvgGrade != 0) ? cplex.prod(1. / sumEnrollmentsTimesAvgGrade, weightedSumAllAssignments) : cplex.constant(1);
-		IloNumExpr objMaximizeCompleteStudents = (sumAvgGrades != 0) ? cplex.prod(1. / sumAvgGrades, weightedSumAllCompleteStudents) : cplex.constant(1);
-		IloNumExpr objMaximizeOccupiedTimeslots = (targetNumOccupiedTimeslots != 0) ? cplex.prod(1. / targetNumOccupiedTimeslots, sumAllOccupiedTimeslots) : cplex.constant(1);
-		IloNumExpr objMaximizeFulfilledPreferences = null;
-		if (preferenceWeightingMode == PreferenceWeightingMode.EXPONENT) {
-			objMaximizeFulfilledPreferences = (sumAvgPow != 0) ? cplex.prod(1. / sumAvgPow, weightedSumFulfilledPreferences) : cplex.constant(1);
-		}
-		else if (preferenceWeightingMode == PreferenceWeightingMode.TIMES) {
-			objMaximizeFulfilledPreferences = (sumAvgGrades != 0) ? cplex.prod(1. / (sumAvgGrades * 10), weightedSumFulfilledPreferences) : cplex.constant(1);
+		output += "\r\n" + "\r\n" + "Kappa máximo: " + cplex.getQuality(IloCplex.QualityType.KappaMax).getValue();
+		output += "\r\n" + "Bases estáveis: " + cplex.getQuality(IloCplex.QualityType.KappaStable).getValue() * 100 + "%";
+		output += "\r\n" + "Bases suspeitas: " + cplex.getQuality(IloCplex.QualityType.KappaSuspicious).getValue() * 100 + "%";
+		output += "\r\n" + "Bases instáveis: " + cplex.getQuality(IloCplex.QualityType.KappaUnstable).getValue() * 100 + "%";
+		output += "\r\n" + "Bases mal condicionadas: " + cplex.getQuality(IloCplex.QualityType.KappaIllposed).getValue() * 100 + "%";
+		output += "\r\n" + "Nível de atenção: " + cplex.getQuality(IloCplex.QualityType.KappaAttention).getValue();
+		
+		output += "\r\n" + "\r\n" + "Tempo de resolução: " + solveTime + " s";
+		
+		return output;
+	}
+	
+	// Loads a cached model and rebuilds only the objective, with this problem's weights
+	private void importModel(ModelCache modelCache) throws IloException, IOException {
+		cplex.importModel(modelCache.getModelFilename());
+		
+		Map<String, IloNumVar> variablesByName = new HashMap<>();
+		Iterator<?> matrices = cplex.LPMatrixIterator();
+		
+		while (matrices.hasNext()) {
+			for (IloNumVar var : ((IloLPMatrix) matrices.next()).getNumVars()) {
+				variablesByName.put(var.getName(), var);
+			}
 		}
-		IloNumExpr objMinimizeGroupUtilizationSlacks = (sumTargetNumStudentsAssigned != 0) ? cplex.sum(1, cplex.prod(-1. / sumTargetNumStudentsAssigned, sumAllGroupUtilizationSlacks)) : cplex.constant(1);
-		IloNumExpr objMinimizeOccupiedPeriodsWithNoPreferenceAssigned = cplex.sum(1, cplex.prod(-1. / (students.size() * 12), sumAllOccupiedPeriodsWithNoPreferenceAssigned));
-		IloNumExpr objMinimizeUnwantedOccupiedPeriods = cplex.sum(1, cplex.prod(-1. / (students.size() * 12), sumAllUnwantedOccupiedPeriods));
-		IloNumExpr objMinimizeAssignmentsToUnwantedGroups = cplex.sum(1, cplex.prod(-1. / sumEnrollments, sumAllAssignmentsToUnwantedGroups));
 		
-		if (isMandatoryAssignment) {
-			cplex.addMaximize(cplex.sum(
-					cplex.prod(weightMaximizeSumAllAssignments, objMaximizeSumAllAssignments),
-					cplex.prod(weightMaximizeCompleteStudents, objMaximizeCompleteStudents),
-					cplex.prod(weightMaximizeOccupiedTimeslots, objMaximizeOccupiedTimeslots),
-					cplex.prod(weightMaximizeFulfilledPreferences, objMaximizeFulfilledPreferences),
-					cplex.prod(weightMinimizeGroupUtilizationSlacks, objMinimizeGroupUtilizationSlacks),
-					cplex.prod(weightMinimizeOccupiedPeriodsWithNoPreferenceAssigned, objMinimizeOccupiedPeriodsWithNoPreferenceAssigned),
-					cplex.prod(weightMinimizeUnwantedOccupiedPeriods, objMinimizeUnwantedOccupiedPeriods),
-					cplex.prod(weightMinimizeAssignmentsToUnwantedGroups, objMinimizeAssignmentsToUnwantedGroups)));
+		// Reattach the variables the rest of the program reads the solution from
+		for (Student student : students.values()) {
+			for (Course course : student.getEnrolledCourses()) {
+				Map<Group, IloIntVar> groupAssignments = new HashMap<>();
+				
+				for (Group group : course.getGroups().values()) {
+					groupAssignments.put(group, (IloIntVar) variablesByName.get(getAssignmentVariableName(student, course, group)));
+				}
+				
+				student.getCourseGroupAssignments().put(course, groupAssignments);
+			}
+			
+			student.setHasCompleteAssignment((IloIntVar) variablesByName.get(getCompleteAssignmentVariableName(student)));
+			
+			for (StudentPreference preference : student.getPreferences()) {
+				preference.setWasFulfilled((IloIntVar) variablesByName.get(getFulfilledPreferenceVariableName(student, preference)));
+			}
 		}
-		else {
-			cplex.addMaximize(objMaximizeFulfilledPreferences);
+		
+		objectiveOffsets = new double[ProgressSample.COMPONENT_NAMES.length];
+		objectiveScales = new double[ProgressSample.COMPONENT_NAMES.length];
+		Map<String, double[]> coefficients = modelCache.readIndex(objectiveOffsets, objectiveScales);
+		
+		IloLinearNumExpr[] importedObjectiveSums = new IloLinearNumExpr[objectiveOffsets.length];
+		
+		for (int i = 0; i < importedObjectiveSums.length; ++i) {
+			importedObjectiveSums[i] = cplex.linearNumExpr();
 		}
 		
-		// TODO: DEBUG
-		System.out.println("sumEnrollmentsTimesAvgGrade = " + sumEnrollmentsTimesAvgGrade);
-		System.out.println("sumAvgGrades = " + sumAvgGrades);
-		System.out.println("targetNumOccupiedTimeslots = " + targetNumOccupiedTimeslots);
-		if (preferenceWeightingMode == PreferenceWeightingMode.EXPONENT) {
-			System.out.println("sumAvgPow = " + sumAvgPow);
+		for (Map.Entry<String, double[]> variableCoefficients : coefficients.entrySet()) {
+			IloNumVar var = variablesByName.get(variableCoefficients.getKey());
+			
+			for (int i = 0; i < importedObjectiveSums.length; ++i) {
+				if (variableCoefficients.getValue()[i] != 0) importedObjectiveSums[i].addTerm(variableCoefficients.getValue()[i], var);
+			}
 		}
-		else if (preferenceWeightingMode == PreferenceWeightingMode.TIMES) {
-			System.out.println("sumAvgGrades * 10 = " + sumAvgGrades * 10);
+		
+		objectiveSums = importedObjectiveSums;
+		
+		cplex.remove(cplex.getObjective());
+		defineObjective();
+	}
+	
+	// Only builds (and stores) the name of a variable when it's needed, if variables aren't named. Auxiliary variables have no name
+	String getVariableName(IloNumVar var) {
+		if (var.getName() != null) return var.getName();
+		
+		if (variableNames == null) {
+			variableNames = new IdentityHashMap<>();
+			
+			for (Student student : students.values()) {
+				for (Map.Entry<Course, Map<Group, IloIntVar>> courseAssignments : student.getCourseGroupAssignments().entrySet()) {
+					for (Map.Entry<Group, IloIntVar> groupAssignment : courseAssignments.getValue().entrySet()) {
+						variableNames.put(groupAssignment.getValue(), getAssignmentVariableName(student, courseAssignments.getKey(), groupAssignment.getKey()));
+					}
+				}
+				
+				if (student.getHasCompleteAssignment() != null) variableNames.put(student.getHasCompleteAssignment(), getCompleteAssignmentVariableName(student));
+				
+				for (StudentPreference preference : student.getPreferences()) {
+					if (preference.getWasFulfilled() != null) variableNames.put(preference.getWasFulfilled(), getFulfilledPreferenceVariableName(student, preference));
+				}
+			}
 		}
-		System.out.println("students.size() * 12 = " + students.size() * 12);
-		System.out.println("students.size() * 12 = " + students.size() * 12);
-		System.out.println("sumEnrollments = " + sumEnrollments);
-		System.out.println();
+		
+		return variableNames.get(var);
+	}
+	
+	private IloIntVar boolVar(Supplier<String> name) throws IloException {
+		return (variableNaming == VariableNaming.FULL) ? cplex.boolVar(name.get()) : cplex.boolVar();
+	}
+	
+	private static String getAssignmentVariableName(Student student, Course course, Group group) {
+		return "(" + student.getCode() + ": " + course.getCode() + "-" + group.getCode() + ")";
+	}
+	
+	private static String getCompleteAssignmentVariableName(Student student) {
+		return "(Complete assignment for " + student.getCode() + ")";
+	}
+	
+	private static String getFulfilledPreferenceVariableName(Student student, StudentPreference preference) {
+		return "(Complete preference order " + preference.getOrder() + " for " + student.getCode() + ")";
 	}
 	
 	private void processStudent(Student student) throws IloException {
@@ -172,75 +1504,155 @@ public class AssignmentProblem {
 			weightedSumAllAssignments.addTerm(avgGrade, studentAssignment);
 		}
 		
-		IloIntVar completeStudent = cplex.boolVar("(Complete assignment for " + student.getCode() + ")"); // VARIABLE: student was assigned to all of their courses?
-		cplex.add(cplex.ifThen(cplex.le(sumAllAssignmentsPerStudent, student.getEnrolledCourses().size() - 1), cplex.eq(completeStudent, 0))); // CONSTRAINT: if sum of all assignments < number of enrolled courses, then it's not a complete assignment
-		cplex.add(cplex.ifThen(cplex.eq(sumAllAssignmentsPerStudent, student.getEnrolledCourses().size()), cplex.eq(completeStudent, 1))); // CONSTRAINT: if sum of all assignments = number of enrolled courses, then it is a complete assignment
+		IloIntVar completeStudent = boolVar(() -> getCompleteAssignmentVariableName(student)); // VARIABLE: student was assigned to all of their courses?
+		int numEnrolledCourses = student.getEnrolledCourses().size();
+		
+		if (linearizedFormulation) {
+			cplex.addGe(sumAllAssignmentsPerStudent, cplex.prod(numEnrolledCourses, completeStudent)); // CONSTRAINT: complete assignment => sum of all assignments = number of enrolled courses
+			cplex.addGe(completeStudent, cplex.sum(sumAllAssignmentsPerStudent, -(numEnrolledCourses - 1))); // CONSTRAINT: sum of all assignments = number of enrolled courses => complete assignment
+		}
+		else {
+			cplex.add(cplex.ifThen(cplex.le(sumAllAssignmentsPerStudent, numEnrolledCourses - 1), cplex.eq(completeStudent, 0))); // CONSTRAINT: if sum of all assignments < number of enrolled courses, then it's not a complete assignment
+			cplex.add(cplex.ifThen(cplex.eq(sumAllAssignmentsPerStudent, numEnrolledCourses), cplex.eq(completeStudent, 1))); // CONSTRAINT: if sum of all assignments = number of enrolled courses, then it is a complete assignment
+		}
+		
+		derivedVariables.put(completeStudent, values -> evaluate(sumAllAssignmentsPerStudent, values) >= numEnrolledCourses ? 1 : 0);
 		
 		weightedSumAllCompleteStudents.addTerm(avgGrade, completeStudent);
 		student.setHasCompleteAssignment(completeStudent); // Set this student's complete status variable
 		
 		IloLinearIntExpr sumStudentFulfilledPreferences = cplex.linearIntExpr(); // Sum of all fulfilled preferences for this student
-		for (StudentPreference preference : student.getPreferences()) {
+		int numModelledPreferences = Math.min(preferenceLimit, student.getPreferences().size());
+		
+		for (StudentPreference preference : student.getPreferences().subList(0, numModelledPreferences)) {
 			IloIntVar fulfilledPreference = processStudentPreference(student, preference, sumAllAssignmentsPerStudent);
 			
 			sumStudentFulfilledPreferences.addTerm(1, fulfilledPreference);
 		}
 		
-		// Process the student's timeslots and occupied time periods
+		StudentPreferenceRows preferenceRows = null;
+		
+		if (studentPreferenceRows != null) {
+			preferenceRows = new StudentPreferenceRows(sumAllAssignmentsPerStudent, sumStudentFulfilledPreferences, numModelledPreferences);
+			studentPreferenceRows.put(student, preferenceRows);
+		}
+		
+		// Process the student's timeslots (only timeslots where one of their courses has classes can ever be occupied)
+		
+		boolean addPracticalClassRows = !lazyClashRows && (!clashCliques || !addClashCliques(student));
+		BitSet candidateTimeslots = new BitSet();
+		
+		for (Course course : student.getEnrolledCourses()) {
+			candidateTimeslots.or(course.getOccupiedTimeslots());
+		}
+		
+		for (int timeslotIndex = candidateTimeslots.nextSetBit(0); timeslotIndex >= 0; timeslotIndex = candidateTimeslots.nextSetBit(timeslotIndex + 1)) {
+			processStudentTimeslot(student, schedule.getTimeslot(timeslotIndex), addPracticalClassRows);
+		}
 		
-		int currentPeriod = -2;
-		IloLinearIntExpr currentSumOccupiedTimeslots = null;
+		// Process the student's occupied time periods, straight from the assignment variables of the groups with classes in each period
 		
-		Iterator<Timeslot> schItr = schedule.iterator();
-		while (schItr.hasNext()) {
-			Timeslot timeslot = schItr.next();
-			IloIntVar timeslotOccupied = processStudentTimeslot(student, timeslot);
+		for (int period = 0; period < 12; ++period) {
+			IloLinearIntExpr sumAssignmentsThisPeriod = cplex.linearIntExpr(); // Sum of all assignments to groups with classes in this period
+			boolean hasCandidateGroups = false;
 			
-			// Adding this timeslot to the calculation of this student's occupied periods...
+			for (Map.Entry<Course, Map<Group, IloIntVar>> courseAssignments : student.getCourseGroupAssignments().entrySet()) {
+				for (Map.Entry<Group, IloIntVar> groupAssignment : courseAssignments.getValue().entrySet()) {
+					if (groupAssignment.getKey().occupiesPeriod(period)) {
+						sumAssignmentsThisPeriod.addTerm(1, groupAssignment.getValue());
+						hasCandidateGroups = true;
+					}
+				}
+			}
 			
-			int timeslotPeriod = timeslot.getPeriod();
+			if (!hasCandidateGroups) continue; // This period can never be occupied
 			
-			if (timeslotPeriod == -1) continue; // Don't do anything with timeslots at 1:00-1:30pm and 1:30-2:00pm
+			IloIntVar occupiedPeriod = cplex.boolVar();
+			IloConstraint occupiedPeriodConstraint = addOccupiedPeriodConstraint(sumAssignmentsThisPeriod, occupiedPeriod, sumStudentFulfilledPreferences, numEnrolledCourses);
 			
-			if (timeslotPeriod != currentPeriod || !schItr.hasNext()) { // If this is a new period or the last one...
-				if (currentSumOccupiedTimeslots != null) { // If this is not the first period...
-					if (!schItr.hasNext()) { // If this is the last period...
-						currentSumOccupiedTimeslots.addTerm(1, timeslotOccupied);
-					}
-					
-					IloIntVar occupiedPeriod = cplex.boolVar();
-					
-					// CONSTRAINT: if the student was assigned to one of their preferences
-					// or the sum of all occupied timeslots in this period = 0,
-					// then the period isn't occupied
-					/*cplex.add(cplex.ifThen(cplex.or(
-							cplex.ge(sumStudentFulfilledPreferences, 1),
-							cplex.eq(currentSumOccupiedTimeslots, 0)),
-							cplex.eq(occupiedPeriod, 0)));*/
-					
-					// CONSTRAINT: if the student wasn't assigned to any of their preferences
-					// and the sum of all occupied timeslots in this period >= 1,
-					// then the period is occupied
-					cplex.add(cplex.ifThen(cplex.and(
-							cplex.eq(sumStudentFulfilledPreferences, 0),
-							cplex.ge(currentSumOccupiedTimeslots, 1)),
-							cplex.eq(occupiedPeriod, 1)));
-					
-					sumAllOccupiedPeriodsWithNoPreferenceAssigned.addTerm(1, occupiedPeriod);
-					
-					if (!student.getWantedPeriod(currentPeriod)) { // If the student didn't choose this period in one of their preferences, add it to the sum of unwanted periods
-						sumAllUnwantedOccupiedPeriods.addTerm(1, occupiedPeriod);
-					}
-				}
-				
-				currentPeriod = timeslotPeriod;
-				currentSumOccupiedTimeslots = cplex.linearIntExpr();
+			if (preferenceRows != null) preferenceRows.addPeriod(sumAssignmentsThisPeriod, occupiedPeriod, occupiedPeriodConstraint);
+			
+			derivedVariables.put(occupiedPeriod, values -> evaluate(sumStudentFulfilledPreferences, values) == 0 && evaluate(sumAssignmentsThisPeriod, values) >= 1 ? 1 : 0);
+			
+			sumAllOccupiedPeriodsWithNoPreferenceAssigned.addTerm(1, occupiedPeriod);
+			
+			if (!student.getWantedPeriod(period)) { // If the student didn't choose this period in one of their preferences, add it to the sum of unwanted periods
+				sumAllUnwantedOccupiedPeriods.addTerm(1, occupiedPeriod);
 			}
+		}
+	}
+	
+	private IloConstraint addOccupiedPeriodConstraint(IloLinearIntExpr sumAssignmentsThisPeriod, IloIntVar occupiedPeriod, IloLinearIntExpr sumStudentFulfilledPreferences,
+			int numEnrolledCourses) throws IloException {
+		// CONSTRAINT: if the student wasn't assigned to any of their preferences
+		// and they were assigned to at least one group with classes in this period,
+		// then the period is occupied
+		if (linearizedFormulation) {
+			// At most 1 group per course, so the number of enrolled courses bounds the sum of assignments in this period
+			return cplex.addLe(sumAssignmentsThisPeriod, cplex.prod(numEnrolledCourses, cplex.sum(occupiedPeriod, sumStudentFulfilledPreferences)));
+		}
+		else {
+			return cplex.add(cplex.ifThen(cplex.and(
+					cplex.eq(sumStudentFulfilledPreferences, 0),
+					cplex.ge(sumAssignmentsThisPeriod, 1)),
+					cplex.eq(occupiedPeriod, 1)));
+		}
+	}
+	
+	// Index of the first preference from 'firstPreference' onwards that has no practical class clash and whose groups each have a free seat, already
+	// have the student, or have a student with a lower grade than theirs, or -1 if there's none
+	private int findCompatiblePreference(StudentTimetable timetable, int firstPreference, Map<Group, Integer> numAssignedStudents,
+			Map<Group, Float> minAssignedGrades) throws IloException {
+		Student student = timetable.getStudent();
+		List<StudentPreference> preferences = student.getPreferences();
+		
+		for (int p = firstPreference; p < preferences.size(); ++p) {
+			Map<Course, Group> courseGroupPairs = preferences.get(p).getCourseGroupPairs();
+			boolean compatible = !TimetableEnumerator.hasPracticalClash(courseGroupPairs.values());
 			
-			if (schItr.hasNext()) { // If this isn't the last period...
-				currentSumOccupiedTimeslots.addTerm(1, timeslotOccupied);
+			for (Map.Entry<Course, Group> courseGroupPair : courseGroupPairs.entrySet()) {
+				if (!compatible) break;
+				
+				Group group = courseGroupPair.getValue();
+				IloRange capacityRow = capacityRows.get(group);
+				
+				if (capacityRow == null || timetable.getCourseGroupPairs().get(courseGroupPair.getKey()) == group) continue;
+				
+				compatible = numAssignedStudents.getOrDefault(group, 0) < capacityRow.getUB() || minAssignedGrades.getOrDefault(group, Float.POSITIVE_INFINITY) < student.getAvgGrade();
 			}
+			
+			if (compatible) return p;
+		}
+		
+		return -1;
+	}
+	
+	// Models up to 'numPreferences' more of the student's preferences. Their period rows have to include the new fulfilled preference variables, so they're replaced
+	private int extendStudentPreferences(Student student, int numPreferences) throws IloException {
+		StudentPreferenceRows preferenceRows = studentPreferenceRows.get(student);
+		int firstPreference = preferenceRows.getNumModelledPreferences();
+		int lastPreference = (int) Math.min((long) firstPreference + numPreferences, student.getPreferences().size());
+		
+		if (lastPreference <= firstPreference) return 0;
+		
+		for (int period = 0; period < preferenceRows.getNumPeriods(); ++period) {
+			cplex.remove(preferenceRows.getPeriodConstraint(period));
+		}
+		
+		for (StudentPreference preference : student.getPreferences().subList(firstPreference, lastPreference)) {
+			IloIntVar fulfilledPreference = processStudentPreference(student, preference, preferenceRows.getSumAllAssignments());
+			
+			preferenceRows.getSumFulfilledPreferences().addTerm(1, fulfilledPreference);
 		}
+		
+		for (int period = 0; period < preferenceRows.getNumPeriods(); ++period) {
+			preferenceRows.setPeriodConstraint(period, addOccupiedPeriodConstraint(preferenceRows.getPeriodAssignments(period), preferenceRows.getOccupiedPeriod(period),
+					preferenceRows.getSumFulfilledPreferences(), student.getEnrolledCourses().size()));
+		}
+		
+		preferenceRows.setNumModelledPreferences(lastPreference);
+		
+		return lastPreference - firstPreference;
 	}
 	
 	private IloLinearIntExpr processAssignmentsPerStudent(Student student) throws IloException {
@@ -275,8 +1687,15 @@ public class AssignmentProblem {
 		}
 		
 		// Variable 'assignedToUnwantedGroup' is 1 if the student was assigned to an unwanted group, 0 otherwise
-		cplex.add(cplex.ifThen(cplex.ge(assignmentsToUnwantedGroups, 1), cplex.eq(assignedToUnwantedGroup, 1)));
-		cplex.add(cplex.ifThen(cplex.eq(assignmentsToUnwantedGroups, 0), cplex.eq(assignedToUnwantedGroup, 0)));
+		if (linearizedFormulation) {
+			cplex.addEq(assignedToUnwantedGroup, assignmentsToUnwantedGroups); // At most 1 group per course, so the sum is already 0 or 1
+		}
+		else {
+			cplex.add(cplex.ifThen(cplex.ge(assignmentsToUnwantedGroups, 1), cplex.eq(assignedToUnwantedGroup, 1)));
+			cplex.add(cplex.ifThen(cplex.eq(assignmentsToUnwantedGroups, 0), cplex.eq(assignedToUnwantedGroup, 0)));
+		}
+		
+		derivedVariables.put(assignedToUnwantedGroup, values -> evaluate(assignmentsToUnwantedGroups, values) >= 1 ? 1 : 0);
 		
 		sumAllAssignmentsToUnwantedGroups.addTerm(1, assignedToUnwantedGroup);
 		
@@ -288,7 +1707,7 @@ public class AssignmentProblem {
 	}
 	
 	private IloIntVar processAssignmentsPerStudentPerCoursePerGroup(Student student, Course course, Group group) throws IloException {
-		IloIntVar studentGroupAssignment = cplex.boolVar("(" + student.getCode() + ": " + course.getCode() + "-" + group.getCode() + ")"); // VARIABLE: student assigned to this course-group pair?
+		IloIntVar studentGroupAssignment = boolVar(() -> getAssignmentVariableName(student, course, group)); // VARIABLE: student assigned to this course-group pair?
 		
 		group.addTermToSumAllAssignedStudents(cplex, studentGroupAssignment);
 		
@@ -308,11 +1727,11 @@ public class AssignmentProblem {
 			sumIndividualGroupAssignments.addTerm(1, groupAssignment);
 		}
 		
-		IloIntVar fulfilledPreference = cplex.boolVar("(Complete preference order " + preferenceOrder + " for " + student.getCode() + ")");
+		IloIntVar fulfilledPreference = boolVar(() -> getFulfilledPreferenceVariableName(student, preference));
 		preference.setWasFulfilled(fulfilledPreference);
 		
 		if (preferenceWeightingMode == PreferenceWeightingMode.EXPONENT) {
-			weightedSumFulfilledPreferences.addTerm(Math.pow(2, student.getAvgGrade()) * (10 - (preferenceOrder - 1)), fulfilledPreference);
+			weightedSumFulfilledPreferences.addTerm(gradeWeighting.weigh(student.getAvgGrade()) * (10 - (preferenceOrder - 1)), fulfilledPreference);
 		}
 		else if (preferenceWeightingMode == PreferenceWeightingMode.TIMES) {
 			weightedSumFulfilledPreferences.addTerm(student.getAvgGrade() * (10 - (preferenceOrder - 1)), fulfilledPreference);
@@ -321,10 +1740,23 @@ public class AssignmentProblem {
 		// CONSTRAINT: if sum of all assignments in this preference < number of course-group pairs in it
 		// or sum of all assignments in this preference < sum of the student's total assignments,
 		// then it's not completely fulfilled
-		cplex.add(cplex.ifThen(cplex.or(
-				cplex.le(sumIndividualGroupAssignments, preferenceSize - 1),
-				cplex.le(sumIndividualGroupAssignments, cplex.sum(sumAllAssignmentsPerStudent, -1))),
-				cplex.eq(fulfilledPreference, 0)));
+		if (linearizedFormulation) {
+			int numEnrolledCourses = student.getEnrolledCourses().size(); // Bounds how many assignments can be outside of the preference
+			
+			cplex.addGe(sumIndividualGroupAssignments, cplex.prod(preferenceSize, fulfilledPreference));
+			cplex.addLe(cplex.sum(cplex.diff(sumAllAssignmentsPerStudent, sumIndividualGroupAssignments), cplex.prod(numEnrolledCourses, fulfilledPreference)), numEnrolledCourses);
+		}
+		else {
+			cplex.add(cplex.ifThen(cplex.or(
+					cplex.le(sumIndividualGroupAssignments, preferenceSize - 1),
+					cplex.le(sumIndividualGroupAssignments, cplex.sum(sumAllAssignmentsPerStudent, -1))),
+					cplex.eq(fulfilledPreference, 0)));
+		}
+		
+		derivedVariables.put(fulfilledPreference, values -> {
+			double sumPreferenceAssignments = evaluate(sumIndividualGroupAssignments, values);
+			return sumPreferenceAssignments == preferenceSize && sumPreferenceAssignments == evaluate(sumAllAssignmentsPerStudent, values) ? 1 : 0;
+		});
 		
 		/*// CONSTRAINT: if sum of all assignments in this preference = number of course-group pairs in it
 		// and sum of all assignments in this preference = sum of the student's total assignments,
@@ -337,10 +1769,34 @@ public class AssignmentProblem {
 		return fulfilledPreference;
 	}
 	
-	private IloIntVar processStudentTimeslot(Student student, Timeslot timeslot) throws IloException {
+	// CONSTRAINT: at most 1 of the groups in each maximal clique of the student's clash graph. False if there are too many cliques to add
+	private boolean addClashCliques(Student student) throws IloException {
+		ClashCliqueFinder cliqueFinder = new ClashCliqueFinder(student);
+		List<int[]> cliques = cliqueFinder.findCliques();
+		
+		if (cliques == null) return false;
+		
+		for (int[] clique : cliques) {
+			IloLinearIntExpr sumCliqueAssignments = cplex.linearIntExpr();
+			
+			for (int vertex : clique) {
+				sumCliqueAssignments.addTerm(1, student.getCourseGroupAssignments().get(cliqueFinder.getCourse(vertex)).get(cliqueFinder.getGroup(vertex)));
+			}
+			
+			cplex.addLe(sumCliqueAssignments, 1);
+		}
+		
+		numClashCliques += cliques.size();
+		++numClashCliqueStudents;
+		
+		return true;
+	}
+	
+	private void processStudentTimeslot(Student student, Timeslot timeslot, boolean addPracticalClassRow) throws IloException {
 		IloIntVar timeslotOccupied = cplex.boolVar(); // VARIABLE: student has this timeslot occupied?
 		IloLinearIntExpr sumAllPracticalClasses = cplex.linearIntExpr(); // Sum of all practical classes for this student in this timeslot
 		IloLinearIntExpr sumAllClasses = cplex.linearIntExpr(); // Sum of all classes for this student in this timeslot
+		int numCandidateClasses = 0; // Upper bound of 'sumAllClasses'
 		
 		sumAllOccupiedTimeslots.addTerm(1, timeslotOccupied);
 		
@@ -351,11 +1807,14 @@ public class AssignmentProblem {
 				for (Group group : practicalClass.getValue()) {
 					IloIntVar assignmentVariable = student.getCourseGroupAssignments().get(course).get(group);
 					sumAllPracticalClasses.addTerm(1, assignmentVariable);
+					++numCandidateClasses;
 				}
 			}
 		}
 		
-		cplex.addLe(sumAllPracticalClasses, 1); // CONSTRAINT: a student can have at most 1 concurrent practical class
+		if (addPracticalClassRow) {
+			cplex.addLe(sumAllPracticalClasses, 1); // CONSTRAINT: a student can have at most 1 concurrent practical class
+		}
 		sumAllClasses.add(sumAllPracticalClasses);
 		
 		for (Map.Entry<Course, Set<Group>> lectureClass : timeslot.getLectureClasses().entrySet()) {
@@ -365,14 +1824,21 @@ public class AssignmentProblem {
 				for (Group group : lectureClass.getValue()) {
 					IloIntVar assignmentVariable = student.getCourseGroupAssignments().get(course).get(group);
 					sumAllClasses.addTerm(1, assignmentVariable);
+					++numCandidateClasses;
 				}
 			}
 		}
 		
-		cplex.add(cplex.ifThen(cplex.eq(sumAllClasses, 0), cplex.eq(timeslotOccupied, 0))); // CONSTRAINT: if sum of all classes in this timeslot = 0, the timeslot isn't occupied
-		cplex.add(cplex.ifThen(cplex.not(cplex.eq(sumAllClasses, 0)), cplex.eq(timeslotOccupied, 1))); // CONSTRAINT: if sum of all classes in this timeslot != 0, the timeslot is occupied
+		if (linearizedFormulation) {
+			cplex.addLe(timeslotOccupied, sumAllClasses); // CONSTRAINT: if sum of all classes in this timeslot = 0, the timeslot isn't occupied
+			cplex.addLe(sumAllClasses, cplex.prod(numCandidateClasses, timeslotOccupied)); // CONSTRAINT: if sum of all classes in this timeslot != 0, the timeslot is occupied
+		}
+		else {
+			cplex.add(cplex.ifThen(cplex.eq(sumAllClasses, 0), cplex.eq(timeslotOccupied, 0))); // CONSTRAINT: if sum of all classes in this timeslot = 0, the timeslot isn't occupied
+			cplex.add(cplex.ifThen(cplex.not(cplex.eq(sumAllClasses, 0)), cplex.eq(timeslotOccupied, 1))); // CONSTRAINT: if sum of all classes in this timeslot != 0, the timeslot is occupied
+		}
 		
-		return timeslotOccupied;
+		derivedVariables.put(timeslotOccupied, values -> evaluate(sumAllClasses, values) >= 1 ? 1 : 0);
 	}
 	
 	private float processCourseMandatory(Course course) throws IloException {
@@ -394,16 +1860,19 @@ public class AssignmentProblem {
 		
 		if (sumAllAssignedStudents == null) return 0; // Some courses might not have enrolled students
 		
+		int groupReservedSeats = getReservedSeats(course, group);
+		
 		if (!isMandatoryAssignment || course.getMandatory()) {
-			cplex.addLe(sumAllAssignedStudents, groupCapacity); // CONSTRAINT: sum of all assigned students <= group's capacity
+			capacityRows.put(group, cplex.addLe(sumAllAssignedStudents, groupCapacity - groupReservedSeats)); // CONSTRAINT: sum of all assigned students <= group's capacity
 		}
 		// Else (if we're assigning mandatory courses but this course is optional), don't add a constraint for the group capacity, since we know for sure everyone fits
 		
 		float groupMinUtilization = group.getMinUtilization();
-		float targetNumStudentsAssigned = groupMinUtilization * groupCapacity / sumGroupCapacitiesThisCourse * numStudentsEnrolledThisCourse;
+		float targetNumStudentsAssigned = Math.max(0, groupMinUtilization * groupCapacity / sumGroupCapacitiesThisCourse * numStudentsEnrolledThisCourse - groupReservedSeats);
 		
 		IloNumVar groupUtilizationSlack = cplex.numVar(0, targetNumStudentsAssigned);
 		sumAllGroupUtilizationSlacks.addTerm(1, groupUtilizationSlack);
+		derivedVariables.put(groupUtilizationSlack, values -> Math.max(0, targetNumStudentsAssigned - evaluate(sumAllAssignedStudents, values)));
 		
 		// SOFT CONSTRAINT: try to balance students assigned to groups according to each group's target minimum utilization of the total group capacities for the same course
 		cplex.addGe(cplex.sum(sumAllAssignedStudents, groupUtilizationSlack), targetNumStudentsAssigned);
@@ -426,39 +1895,291 @@ public class AssignmentProblem {
 		
 		if (sumAllAssignedStudents == null) return; // Some courses might not have enrolled students
 		
-		cplex.addLe(sumAllAssignedStudents, groupCapacity); // CONSTRAINT: sum of all assigned students <= group's capacity
+		int groupReservedSeats = getReservedSeats(course, group);
+		
+		capacityRows.put(group, cplex.addLe(sumAllAssignedStudents, groupCapacity - groupReservedSeats)); // CONSTRAINT: sum of all assigned students <= group's capacity
 		
 		float groupMinUtilization = .1f;
 		
-		cplex.addGe(sumAllAssignedStudents, groupMinUtilization * groupCapacity);
+		if (groupMinimums) {
+			minimumRows.put(group, cplex.addGe(sumAllAssignedStudents, groupMinUtilization * groupCapacity - groupReservedSeats));
+		}
+	}
+	
+	private int getReservedSeats(Course course, Group group) {
+		return (reservedSeats != null) ? reservedSeats.getOrDefault(course.getCode() + "#" + group.getCode(), 0) : 0;
+	}
+	
+	private void recordGroupUsage(Map<Student, StudentTimetable> timetables) {
+		solutionGroupUsage = new HashMap<>();
+		solutionAssignments = new ArrayList<>();
+		
+		for (StudentTimetable timetable : timetables.values()) {
+			for (Map.Entry<Course, Group> courseGroupPair : timetable.getCourseGroupPairs().entrySet()) {
+				solutionGroupUsage.merge(courseGroupPair.getKey().getCode() + "#" + courseGroupPair.getValue().getCode(), 1, Integer::sum);
+				solutionAssignments.add(new String[] {timetable.getStudent().getCode(), courseGroupPair.getKey().getCode(), courseGroupPair.getValue().getCode()});
+			}
+		}
+	}
+	
+	// Null if the clash rows are in the model. Presolve's dual reductions could remove solutions the missing rows would have allowed, so only
+	// primal reductions are kept
+	private LazyClashCallback useLazyClashCallback() throws IloException {
+		if (!lazyClashRows) return null;
+		
+		LazyClashCallback lazyClashCallback = new LazyClashCallback(cplex, students.values());
+		
+		cplex.setParam(IloCplex.IntParam.Reduce, 1);
+		cplex.use(lazyClashCallback);
+		
+		return lazyClashCallback;
 	}
 	
 	private void solve() throws IOException, IloException {
-		cplex.setParam(IloCplex.DoubleParam.TiLim, 300 /*1500*/); // Set timeout in seconds
+		solverSettings.apply(cplex);
+		LazyClashCallback lazyClashCallback = useLazyClashCallback();
+		
+		TelemetryWriter telemetryWriter = new TelemetryWriter(outputPath);
+		List<ProgressListener> listeners = new ArrayList<>(progressListeners);
+		listeners.add(telemetryWriter);
+		
+		ProgressCallback progressCallback = new ProgressCallback(objectiveSums, listeners, 1);
+		CheckpointLog checkpointLog = checkpointIncumbents ? startCheckpointLog(progressCallback) : null;
+		
+		cplex.use(progressCallback);
+		
+		if (numericsReport) cplex.setParam(IloCplex.IntParam.MIPKappaStats, 1); // Kappa of a sample of the LP subproblems
 		
 		// Solve the problem
-		if (cplex.solve()) {
+		long startTime = System.currentTimeMillis();
+		boolean solved;
+		
+		try {
+			solved = cplex.solve();
+		} finally {
+			if (checkpointLog != null) checkpointLog.close();
+			telemetryWriter.close();
+		}
+		
+		solveTime = (System.currentTimeMillis() - startTime) / 1000.;
+		
+		if (lazyClashCallback != null) {
+			System.out.println("Lazy clash rows: " + lazyClashCallback.getNumAddedRows() + " added during the solve.");
+		}
+		
+		if (solved) {
 			System.out.println();
-			System.out.println("Solution found by CPLEX is " + cplex.getStatus() + ".");
+			System.out.println("Solution found by CPLEX is " + cplex.getStatus() + " (" + solveTime + " s).");
 			
 			// TODO: DEBUG
 			System.out.println();
-			System.out.println("weightedSumAllAssignments = " + cplex.getValue(weightedSumAllAssignments));
-			System.out.println("weightedSumAllCompleteStudents = " + cplex.getValue(weightedSumAllCompleteStudents));
-			System.out.println("sumAllOccupiedTimeslots = " + cplex.getValue(sumAllOccupiedTimeslots));
-			System.out.println("weightedSumFulfilledPreferences = " + cplex.getValue(weightedSumFulfilledPreferences));
-			System.out.println("sumAllGroupUtilizationSlacks = " + cplex.getValue(sumAllGroupUtilizationSlacks));
-			System.out.println("sumAllOccupiedPeriodsWithNoPreferenceAssigned = " + cplex.getValue(sumAllOccupiedPeriodsWithNoPreferenceAssigned));
-			System.out.println("sumAllUnwantedOccupiedPeriods = " + cplex.getValue(sumAllUnwantedOccupiedPeriods));
-			System.out.println("sumAllAssignmentsToUnwantedGroups = " + cplex.getValue(sumAllAssignmentsToUnwantedGroups));
+			for (int i = 0; i < objectiveSums.length; ++i) {
+				System.out.println(ProgressSample.COMPONENT_NAMES[i] + " = " + cplex.getValue(objectiveSums[i]));
+			}
 			
 			writer.writeOutputData();
+			
+			solutionAssignments = readAssignments();
+			solutionGroupUsage = new HashMap<>();
+			
+			for (Course course : courses.values()) {
+				for (Group group : course.getGroups().values()) {
+					if (group.getSumAllAssignedStudents() != null) {
+						solutionGroupUsage.put(course.getCode() + "#" + group.getCode(), (int) Math.round(cplex.getValue(group.getSumAllAssignedStudents())));
+					}
+				}
+			}
 		}
 		else {
-			System.out.println("Failed to solve problem.");
+			System.out.println("Failed to solve problem (" + cplex.getStatus() + ").");
 		}
 		
+		// The refiner replaces the solve's status and statistics, so they're read first
+		IloCplex.Status status = cplex.getStatus();
+		String runMetrics = buildRunMetrics(solved);
+		String numerics = numericsReport ? buildNumericsReport() : null;
+		
+		// Only a proven infeasibility is worth refining: after the time limit the refiner would only repeat the search that ran out of time
+		if (!solved && inputDiagnostics != null && (status == IloCplex.Status.Infeasible || status == IloCplex.Status.InfeasibleOrUnbounded)) {
+			refineConflict(CONFLICT_REFINER_TIME_LIMIT);
+			writer.writeDiagnosticsReport(inputDiagnostics.buildReport());
+		}
+		
+		writer.writeRunMetrics(runMetrics);
+		
+		if (numerics != null) writer.writeNumericsReport(numerics);
+		
 		// Free CPLEX resources
 		cplex.end();
 	}
+	
+	// Checks the input before the model is built and writes what was found. False if the model can't be feasible
+	private boolean diagnoseInput() throws IOException {
+		inputDiagnostics = new InputDiagnostics(courses, students, createTimetableEvaluator(), inputProblems);
+		
+		boolean consistent = inputDiagnostics.check();
+		writer.writeDiagnosticsReport(inputDiagnostics.buildReport());
+		
+		return consistent;
+	}
+	
+	// Runs the conflict refiner over the group capacity and minimum rows (the rest of the model is taken as it is), with a time limit of its own, and adds
+	// the groups in the conflict it finds to the diagnostics. True if the conflict has proven members (a refiner stopped by its time limit may only have
+	// possible ones, which aren't recorded). Imported models don't know these rows, so there's nothing to refine then
+	private boolean refineConflict(double timeLimit) throws IloException {
+		List<IloRange> groupRows = new ArrayList<>();
+		List<Group> rowGroups = new ArrayList<>();
+		List<String> rowDescriptions = new ArrayList<>();
+		Map<Group, Course> groupCourses = new IdentityHashMap<>();
+		
+		for (Course course : courses.values()) {
+			for (Group group : course.getGroups().values()) {
+				groupCourses.put(group, course);
+				
+				if (capacityRows.containsKey(group)) {
+					groupRows.add(capacityRows.get(group));
+					rowGroups.add(group);
+					rowDescriptions.add("capacidade (" + capacityRows.get(group).getUB() + ")");
+				}
+				
+				if (minimumRows.containsKey(group)) {
+					groupRows.add(minimumRows.get(group));
+					rowGroups.add(group);
+					rowDescriptions.add("mínimo (" + minimumRows.get(group).getLB() + ")");
+				}
+			}
+		}
+		
+		if (groupRows.isEmpty()) return false;
+		
+		IloConstraint[] constraints = groupRows.toArray(new IloConstraint[0]);
+		double[] preferences = new double[constraints.length];
+		Arrays.fill(preferences, 1);
+		
+		long startTime = System.currentTimeMillis();
+		cplex.setParam(IloCplex.DoubleParam.TiLim, timeLimit);
+		
+		if (!cplex.refineConflict(constraints, preferences)) {
+			System.out.println("Conflict refiner found no conflict among the group rows (" + (System.currentTimeMillis() - startTime) / 1000. + " s).");
+			return false;
+		}
+		
+		IloCplex.ConflictStatus[] statuses = cplex.getConflict(constraints);
+		int numConflictRows = 0;
+		
+		if (!Arrays.asList(statuses).contains(IloCplex.ConflictStatus.Member)) {
+			System.out.println("Conflict refiner found no proven conflict among the group rows (" + (System.currentTimeMillis() - startTime) / 1000. + " s).");
+			return false;
+		}
+		
+		for (int i = 0; i < constraints.length; ++i) {
+			if (statuses[i] == IloCplex.ConflictStatus.Member || statuses[i] == IloCplex.ConflictStatus.PossibleMember) {
+				inputDiagnostics.addConflict(groupCourses.get(rowGroups.get(i)), rowGroups.get(i), rowDescriptions.get(i)
+						+ (statuses[i] == IloCplex.ConflictStatus.PossibleMember ? " (possível)" : ""));
+				++numConflictRows;
+			}
+		}
+		
+		System.out.println("Conflict refiner: " + numConflictRows + " group rows in conflict (" + (System.currentTimeMillis() - startTime) / 1000. + " s).");
+		
+		return true;
+	}
+	
+	private String buildRunMetrics(boolean solved) throws IloException {
+		String output = solverSettings.buildReport();
+		
+		output += "\r\n" + "\r\n" + "Variáveis: " + cplex.getNcols();
+		output += "\r\n" + "Restrições: " + cplex.getNrows();
+		output += "\r\n" + "Tempo de construção do modelo: " + modelBuildTime + " s";
+		output += "\r\n" + "Tempo de resolução: " + solveTime + " s";
+		output += "\r\n" + "Estado: " + cplex.getStatus();
+		output += "\r\n" + "Nós explorados: " + cplex.getNnodes64();
+		
+		if (solved) {
+			output += "\r\n" + "Valor objetivo: " + cplex.getObjValue();
+			output += "\r\n" + "Melhor limite: " + cplex.getBestObjValue();
+			output += "\r\n" + "Gap relativo: " + cplex.getMIPRelativeGap();
+		}
+		
+		return output;
+	}
+	
+	// Every assignment variable in a fixed order (by student, course and group code), along with its (student, course, group) code triple
+	private void collectAssignmentVariables(List<IloIntVar> assignmentVars, List<String[]> variableKeys) {
+		List<Student> sortedStudents = new ArrayList<>(students.values());
+		sortedStudents.sort(Comparator.comparing(Student::getCode));
+		
+		for (Student student : sortedStudents) {
+			List<Map.Entry<Course, Map<Group, IloIntVar>>> courseAssignments = new ArrayList<>(student.getCourseGroupAssignments().entrySet());
+			courseAssignments.sort(Comparator.comparing(courseAssignment -> courseAssignment.getKey().getCode()));
+			
+			for (Map.Entry<Course, Map<Group, IloIntVar>> courseAssignment : courseAssignments) {
+				List<Map.Entry<Group, IloIntVar>> groupAssignments = new ArrayList<>(courseAssignment.getValue().entrySet());
+				groupAssignments.sort(Comparator.comparing(groupAssignment -> groupAssignment.getKey().getCode()));
+				
+				for (Map.Entry<Group, IloIntVar> groupAssignment : groupAssignments) {
+					assignmentVars.add(groupAssignment.getValue());
+					variableKeys.add(new String[] {student.getCode(), courseAssignment.getKey().getCode(), groupAssignment.getKey().getCode()});
+				}
+			}
+		}
+	}
+	
+	// Every improving incumbent found during the solve is logged to the output directory, so a long solve that gets interrupted can be resumed
+	private CheckpointLog startCheckpointLog(ProgressCallback progressCallback) throws IloException, IOException {
+		String checkpointFilename = outputPath + "checkpoint.bin";
+		List<IloIntVar> assignmentVars = new ArrayList<>();
+		List<String[]> variableKeys = new ArrayList<>();
+		Map<String, Integer> variableIndices = new HashMap<>();
+		
+		collectAssignmentVariables(assignmentVars, variableKeys);
+		
+		for (int i = 0; i < variableKeys.size(); ++i) {
+			variableIndices.put(String.join("#", variableKeys.get(i)), i);
+		}
+		
+		IloIntVar[] vars = assignmentVars.toArray(new IloIntVar[0]);
+		int[] resumedVariables = null;
+		
+		// The previous log must be read before the new one replaces it
+		if (resumeFromCheckpoint) {
+			List<String[]> bestSolution = CheckpointLog.readBestSolution(checkpointFilename);
+			
+			if (bestSolution == null) {
+				System.out.println("No checkpoint to resume from in " + checkpointFilename + ".");
+			}
+			else {
+				double[] values = new double[vars.length];
+				List<Integer> assignedVariables = new ArrayList<>();
+				int numUnknownAssignments = 0;
+				
+				for (String[] variableKey : bestSolution) {
+					Integer index = variableIndices.get(String.join("#", variableKey));
+					
+					if (index == null) {
+						++numUnknownAssignments; // The input data changed since the checkpoint was written
+						continue;
+					}
+					
+					values[index] = 1;
+					assignedVariables.add(index);
+				}
+				
+				// Only the assignment variables are given, CPLEX derives everything else from them
+				cplex.addMIPStart(vars, values, IloCplex.MIPStartEffort.SolveFixed);
+				resumedVariables = assignedVariables.stream().mapToInt(Integer::intValue).toArray();
+				
+				System.out.println("Resuming from checkpoint with " + assignedVariables.size() + " assignments (" + numUnknownAssignments + " no longer in the model).");
+			}
+		}
+		
+		CheckpointLog checkpointLog = new CheckpointLog(checkpointFilename, variableKeys);
+		
+		// Keep the resumed solution in the new log until CPLEX finds a better one (its objective isn't known until CPLEX evaluates it)
+		if (resumedVariables != null) checkpointLog.append(-Double.MAX_VALUE, resumedVariables);
+		
+		progressCallback.setCheckpointLog(vars, checkpointLog);
+		
+		return checkpointLog;
+	}
 }
@@ -0,0 +1,48 @@
+package problem;
+
+// One (semester, process version, mode) run of a batch
+public class BatchJob {
+	private int semester;
+	private String procVersion;
+	private boolean isMandatoryAssignment;
+	private AssignmentProblem.PreferenceWeightingMode preferenceWeightingMode;
+	private float[] weights; // In the same order as AssignmentProblem's constructor
+	
+	public BatchJob(int semester, String procVersion, boolean isMandatoryAssignment, AssignmentProblem.PreferenceWeightingMode preferenceWeightingMode,
+			float weightMaximizeSumAllAssignments, float weightMaximizeCompleteStudents, float weightMaximizeOccupiedTimeslots, float weightMaximizeFulfilledPreferences,
+			float weightMinimizeGroupUtilizationSlacks, float weightMinimizeOccupiedPeriodsWithNoPreferenceAssigned, float weightMinimizeUnwantedOccupiedPeriods,
+			float weightMinimizeAssignmentsToUnwantedGroups) {
+		this.semester = semester;
+		this.procVersion = procVersion;
+		this.isMandatoryAssignment = isMandatoryAssignment;
+		this.preferenceWeightingMode = preferenceWeightingMode;
+		this.weights = new float[] {weightMaximizeSumAllAssignments, weightMaximizeCompleteStudents, weightMaximizeOccupiedTimeslots, weightMaximizeFulfilledPreferences,
+				weightMinimizeGroupUtilizationSlacks, weightMinimizeOccupiedPeriodsWithNoPreferenceAssigned, weightMinimizeUnwantedOccupiedPeriods,
+				weightMinimizeAssignmentsToUnwantedGroups};
+	}
+	
+	public int getSemester() {
+		return semester;
+	}
+	
+	public String getProcVersion() {
+		return procVersion;
+	}
+	
+	public boolean getMandatoryAssignment() {
+		return isMandatoryAssignment;
+	}
+	
+	public AssignmentProblem.PreferenceWeightingMode getPreferenceWeightingMode() {
+		return preferenceWeightingMode;
+	}
+	
+	public float[] getWeights() {
+		return weights;
+	}
+	
+	// Also the name of the job's output directory (e.g. "s2v4")
+	public String getName() {
+		return "s" + semester + "v" + procVersion + (isMandatoryAssignment ? "" : "_opcional");
+	}
+}
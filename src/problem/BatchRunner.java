@@ -0,0 +1,103 @@
+package problem;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import io.BatchSummaryWriter;
+import io.CourseCatalog;
+
+// Runs a list of jobs that share the same course catalog, several at once. At most 'licenceTokens' jobs (each one an IloCplex instance) run at the same time
+// and the CPU budget is split evenly between them. Each job writes to its own directory and resumo.csv collects every job's statistics
+public class BatchRunner {
+	private CourseCatalog courseCatalog;
+	private String inputPath, outputPath;
+	private int licenceTokens;
+	private int cpuThreads; // 0 for every core
+	private SolverSettings solverSettings;
+	private List<BatchJob> jobs;
+	
+	public BatchRunner(CourseCatalog courseCatalog, String inputPath, String outputPath, int licenceTokens, int cpuThreads, SolverSettings solverSettings) {
+		this.courseCatalog = courseCatalog;
+		this.inputPath = inputPath;
+		this.outputPath = outputPath;
+		this.licenceTokens = licenceTokens;
+		this.cpuThreads = cpuThreads;
+		this.solverSettings = solverSettings;
+		this.jobs = new ArrayList<>();
+	}
+	
+	public void addJob(BatchJob job) {
+		jobs.add(job);
+	}
+	
+	public void run() throws IOException, InterruptedException {
+		if (jobs.isEmpty()) return;
+		
+		int concurrentJobs = Math.max(1, Math.min(licenceTokens, jobs.size()));
+		int totalThreads = (cpuThreads > 0) ? cpuThreads : Runtime.getRuntime().availableProcessors();
+		int threadsPerJob = Math.max(1, totalThreads / concurrentJobs);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(concurrentJobs);
+		List<Future<Double>> results = new ArrayList<>();
+		
+		for (BatchJob job : jobs) {
+			results.add(executor.submit(() -> runJob(job, threadsPerJob)));
+		}
+		
+		executor.shutdown();
+		
+		Map<BatchJob, Map<String, String>> statistics = new LinkedHashMap<>();
+		Map<BatchJob, Double> runTimes = new LinkedHashMap<>();
+		
+		for (int i = 0; i < jobs.size(); ++i) {
+			BatchJob job = jobs.get(i);
+			
+			try {
+				runTimes.put(job, results.get(i).get());
+				statistics.put(job, BatchSummaryWriter.readStatistics(getJobOutputPath(job) + "estatísticas.txt"));
+			} catch (ExecutionException e) {
+				System.out.println("Batch job " + job.getName() + " failed:");
+				e.getCause().printStackTrace();
+				statistics.put(job, null);
+			}
+		}
+		
+		BatchSummaryWriter.writeSummary(outputPath + "resumo.csv", statistics, runTimes);
+		
+		System.out.println("Batch of " + jobs.size() + " jobs finished (" + concurrentJobs + " at a time, " + threadsPerJob + " threads each).");
+	}
+	
+	// Returns the job's run time in seconds
+	private double runJob(BatchJob job, int threads) throws Exception {
+		long startTime = System.currentTimeMillis();
+		String jobInputPath = inputPath + "s" + job.getSemester() + File.separator;
+		String jobOutputPath = getJobOutputPath(job);
+		float[] weights = job.getWeights();
+		
+		new File(jobOutputPath).mkdirs();
+		
+		AssignmentProblem problem = new AssignmentProblem(courseCatalog, jobInputPath + "turmas.csv", jobInputPath + "horário.csv", jobInputPath + "compostos.csv",
+				jobInputPath + "escolhas.csv", jobInputPath + "médias.csv", job.getSemester(), job.getProcVersion(), job.getMandatoryAssignment(),
+				job.getPreferenceWeightingMode(), weights[0], weights[1], weights[2], weights[3], weights[4], weights[5], weights[6], weights[7], jobOutputPath);
+		
+		SolverSettings jobSolverSettings = solverSettings.copy();
+		jobSolverSettings.setThreads(threads);
+		
+		problem.setSolverSettings(jobSolverSettings);
+		problem.run();
+		
+		return (System.currentTimeMillis() - startTime) / 1000.;
+	}
+	
+	private String getJobOutputPath(BatchJob job) {
+		return outputPath + job.getName() + File.separator;
+	}
+}
@@ -0,0 +1,38 @@
+package problem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// A set of group capacity changes to evaluate together (e.g. opening 5 seats in one group and closing 5 in another)
+public class CapacityScenario {
+	private String name;
+	private List<String[]> groupCodes; // (course code, group code) pairs
+	private List<Integer> seatChanges;
+	
+	public CapacityScenario(String name) {
+		this.name = name;
+		this.groupCodes = new ArrayList<>();
+		this.seatChanges = new ArrayList<>();
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public void addChange(String courseCode, String groupCode, int seats) {
+		groupCodes.add(new String[] {courseCode, groupCode});
+		seatChanges.add(seats);
+	}
+	
+	public int getNumChanges() {
+		return groupCodes.size();
+	}
+	
+	public String[] getGroupCodes(int change) {
+		return groupCodes.get(change);
+	}
+	
+	public int getSeatChange(int change) {
+		return seatChanges.get(change);
+	}
+}
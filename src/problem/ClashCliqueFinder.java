@@ -0,0 +1,124 @@
+package problem;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import model.Course;
+import model.Group;
+import model.Student;
+
+// Clash graph of a student's candidate groups: two groups are adjacent if they belong to the same course (at most one of them can be assigned) or if
+// their practical classes share a timeslot. Every clique gives "at most 1 of these groups", and the maximal ones dominate both the per-timeslot
+// "at most 1 concurrent practical class" rows (each is a clique) and each other, so they can replace them. Only groups with practical classes can clash
+public class ClashCliqueFinder {
+	private static final int MAX_CLIQUES = 1000; // Per student. Past this, the per-timeslot rows are kept instead
+	
+	private List<Course> vertexCourses;
+	private List<Group> vertexGroups;
+	private BitSet[] neighbours;
+	private List<int[]> cliques;
+	
+	public ClashCliqueFinder(Student student) {
+		this.vertexCourses = new ArrayList<>();
+		this.vertexGroups = new ArrayList<>();
+		
+		for (Course course : student.getEnrolledCourses()) {
+			for (Group group : course.getGroups().values()) {
+				if (group.getOccupiedPracticalTimeslots().isEmpty()) continue;
+				
+				vertexCourses.add(course);
+				vertexGroups.add(group);
+			}
+		}
+		
+		this.neighbours = new BitSet[vertexGroups.size()];
+		
+		for (int i = 0; i < neighbours.length; ++i) {
+			neighbours[i] = new BitSet();
+		}
+		
+		for (int i = 0; i < neighbours.length; ++i) {
+			for (int j = i + 1; j < neighbours.length; ++j) {
+				if (vertexCourses.get(i) == vertexCourses.get(j) || vertexGroups.get(i).getOccupiedPracticalTimeslots().intersects(vertexGroups.get(j).getOccupiedPracticalTimeslots())) {
+					neighbours[i].set(j);
+					neighbours[j].set(i);
+				}
+			}
+		}
+	}
+	
+	public Course getCourse(int vertex) {
+		return vertexCourses.get(vertex);
+	}
+	
+	public Group getGroup(int vertex) {
+		return vertexGroups.get(vertex);
+	}
+	
+	// Maximal cliques with groups from at least two courses (the others are already "at most 1 group per course"), or null if there are too many
+	public List<int[]> findCliques() {
+		cliques = new ArrayList<>();
+		
+		BitSet candidates = new BitSet();
+		candidates.set(0, vertexGroups.size());
+		
+		if (!extendClique(new BitSet(), candidates, new BitSet())) return null;
+		
+		return cliques;
+	}
+	
+	// Bron-Kerbosch with pivoting. False once there are more than MAX_CLIQUES cliques
+	private boolean extendClique(BitSet clique, BitSet candidates, BitSet excluded) {
+		if (candidates.isEmpty()) {
+			if (excluded.isEmpty()) {
+				int[] members = clique.stream().toArray();
+				
+				for (int member : members) {
+					if (vertexCourses.get(member) != vertexCourses.get(members[0])) {
+						cliques.add(members);
+						break;
+					}
+				}
+			}
+			
+			return cliques.size() <= MAX_CLIQUES;
+		}
+		
+		// Pivot with the most neighbours among the candidates, so only the candidates that aren't its neighbours have to be branched on
+		int pivot = -1, pivotDegree = -1;
+		BitSet pivotOptions = (BitSet) candidates.clone();
+		pivotOptions.or(excluded);
+		
+		for (int vertex = pivotOptions.nextSetBit(0); vertex >= 0; vertex = pivotOptions.nextSetBit(vertex + 1)) {
+			BitSet common = (BitSet) neighbours[vertex].clone();
+			common.and(candidates);
+			
+			if (common.cardinality() > pivotDegree) {
+				pivot = vertex;
+				pivotDegree = common.cardinality();
+			}
+		}
+		
+		BitSet branches = (BitSet) candidates.clone();
+		branches.andNot(neighbours[pivot]);
+		
+		for (int vertex = branches.nextSetBit(0); vertex >= 0; vertex = branches.nextSetBit(vertex + 1)) {
+			BitSet newClique = (BitSet) clique.clone();
+			newClique.set(vertex);
+			
+			BitSet newCandidates = (BitSet) candidates.clone();
+			newCandidates.and(neighbours[vertex]);
+			
+			BitSet newExcluded = (BitSet) excluded.clone();
+			newExcluded.and(neighbours[vertex]);
+			
+			if (!extendClique(newClique, newCandidates, newExcluded)) return false;
+			
+			candidates.clear(vertex);
+			excluded.set(vertex);
+		}
+		
+		return true;
+	}
+}
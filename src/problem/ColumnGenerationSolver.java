@@ -0,0 +1,254 @@
+package problem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import ilog.concert.IloColumn;
+import ilog.concert.IloException;
+import ilog.concert.IloNumVar;
+import ilog.concert.IloNumVarType;
+import ilog.concert.IloObjective;
+import ilog.concert.IloRange;
+import ilog.cplex.IloCplex;
+import model.Course;
+import model.Group;
+import model.Student;
+import model.StudentTimetable;
+
+// Alternative formulation where each column is a complete student timetable. The master problem only keeps one "choose 1 timetable" row per student
+// plus the group capacity and balance rows; every other rule (clashes, occupied periods, fulfilled preferences...) is already priced into each column's value
+public class ColumnGenerationSolver {
+	private static final double ARTIFICIAL_PENALTY = 1000; // Per missing student, far above the whole normalized objective
+	
+	private IloCplex cplex;
+	private TimetableEvaluator evaluator;
+	private TimetableEnumerator enumerator;
+	private List<Student> students;
+	private List<Course> courses;
+	
+	private IloObjective objective;
+	private Map<Student, IloRange> studentRows;
+	private Map<Group, IloRange> capacityRows, lowerBoundRows; // Groups from different courses can share the same code, so they're keyed by identity
+	private List<IloNumVar> columnVars;
+	private List<StudentTimetable> columnTimetables;
+	private List<IloNumVar> artificialVars; // Cover the hard group minimums until the generated columns do, so the first master LPs are feasible
+	private double relaxationBound;
+	private boolean relaxationSolved; // Pricing proved that no column has a positive reduced value, so the master's LP value is the relaxation's bound
+	private int numMasterRows;
+	
+	public ColumnGenerationSolver(IloCplex cplex, Map<String, Course> courses, Map<String, Student> students, TimetableEvaluator evaluator, int maxPricingNodes) {
+		this.cplex = cplex;
+		this.evaluator = evaluator;
+		this.enumerator = new TimetableEnumerator(maxPricingNodes);
+		this.students = new ArrayList<>(students.values());
+		this.courses = new ArrayList<>(courses.values());
+		this.studentRows = new HashMap<>();
+		this.capacityRows = new IdentityHashMap<>();
+		this.lowerBoundRows = new IdentityHashMap<>();
+		this.columnVars = new ArrayList<>();
+		this.columnTimetables = new ArrayList<>();
+		this.artificialVars = new ArrayList<>();
+		
+		this.students.sort(Comparator.comparing(Student::getCode));
+	}
+	
+	// Only a bound on the full LP relaxation if isRelaxationSolved()
+	public double getRelaxationBound() {
+		return relaxationBound;
+	}
+	
+	public boolean isRelaxationSolved() {
+		return relaxationSolved;
+	}
+	
+	public Map<Student, StudentTimetable> solve(int maxIterations, double timeLimit) throws IloException {
+		long startTime = System.currentTimeMillis();
+		
+		defineMasterProblem();
+		numMasterRows = cplex.getNrows();
+		
+		int iteration;
+		
+		for (iteration = 0; iteration < maxIterations; ++iteration) {
+			if ((System.currentTimeMillis() - startTime) / 1000. > timeLimit) break;
+			
+			if (!cplex.solve()) {
+				System.out.println("Failed to solve the column generation master problem.");
+				return null;
+			}
+			
+			relaxationBound = cplex.getObjValue() + evaluator.getConstant();
+			
+			Map<Group, Double> groupPrices = readGroupPrices();
+			Map<Student, Double> studentPrices = new HashMap<>();
+			
+			for (Student student : students) {
+				studentPrices.put(student, cplex.getDual(studentRows.get(student)));
+			}
+			
+			// Pricing is independent for each student, so every student's best new column is searched for in parallel
+			List<TimetableEnumerator.PricingResult> pricingResults = students.parallelStream()
+					.map(student -> enumerator.findBestTimetable(student, evaluator, group -> groupPrices.getOrDefault(group, 0.), studentPrices.get(student) + 1e-6))
+					.collect(Collectors.toList());
+			List<StudentTimetable> newColumns = pricingResults.stream()
+					.map(TimetableEnumerator.PricingResult::getTimetable)
+					.filter(timetable -> timetable != null)
+					.collect(Collectors.toList());
+			
+			boolean pricingTruncated = pricingResults.stream().anyMatch(result -> !result.isComplete());
+			
+			if (newColumns.isEmpty()) {
+				// No column with a positive reduced value was found, which only proves the LP relaxation is solved if no student's search hit the node budget
+				relaxationSolved = !pricingTruncated;
+				break;
+			}
+			
+			for (StudentTimetable timetable : newColumns) {
+				addColumn(timetable);
+			}
+		}
+		
+		System.out.println("Column generation: " + iteration + " iterations, " + columnVars.size() + " columns, " + numMasterRows + " master rows in "
+				+ (System.currentTimeMillis() - startTime) / 1000. + " s.");
+		
+		if (relaxationSolved && getArtificialSum() > 1e-6) {
+			System.out.println("LP relaxation can't meet every group's minimum, so the problem is infeasible.");
+			return null;
+		}
+		else if (relaxationSolved) {
+			System.out.println("LP relaxation bound = " + relaxationBound);
+		}
+		else if (iteration == maxIterations || (System.currentTimeMillis() - startTime) / 1000. > timeLimit) {
+			System.out.println("Restricted master LP value = " + relaxationBound + " (not a bound: stopped at the iteration or time limit before pricing converged)");
+		}
+		else {
+			System.out.println("Restricted master LP value = " + relaxationBound + " (not a bound: the pricing of some students hit the node budget)");
+		}
+		
+		return solveRestrictedMaster(Math.max(1, timeLimit - (System.currentTimeMillis() - startTime) / 1000.));
+	}
+	
+	private void defineMasterProblem() throws IloException {
+		objective = cplex.addMaximize();
+		
+		for (Student student : students) {
+			studentRows.put(student, cplex.addRange(1, 1, "(Timetable for " + student.getCode() + ")")); // CONSTRAINT: every student gets exactly 1 timetable (possibly empty)
+		}
+		
+		double slackCoefficient = evaluator.getGroupUtilizationSlackCoefficient();
+		
+		for (Course course : courses) {
+			for (Group group : course.getGroups().values()) {
+				if (evaluator.hasCapacityConstraint(course)) {
+					capacityRows.put(group, cplex.addRange(0, group.getCapacity())); // CONSTRAINT: sum of all assigned students <= group's capacity
+				}
+				
+				float minNumStudentsAssigned = evaluator.getMinNumStudentsAssigned(course, group);
+				float targetNumStudentsAssigned = evaluator.getTargetNumStudentsAssigned(group);
+				
+				if (minNumStudentsAssigned > 0) {
+					IloRange lowerBoundRow = cplex.addRange(minNumStudentsAssigned, Double.MAX_VALUE);
+					lowerBoundRows.put(group, lowerBoundRow);
+					
+					// The initial columns may not reach the minimum, so a penalized artificial column makes up the difference (a big-M phase I)
+					artificialVars.add(cplex.numVar(cplex.column(objective, -ARTIFICIAL_PENALTY).and(cplex.column(lowerBoundRow, 1)), 0, minNumStudentsAssigned));
+				}
+				else if (targetNumStudentsAssigned > 0) {
+					// SOFT CONSTRAINT: sum of all assigned students + slack >= group's target number of students
+					IloRange lowerBoundRow = cplex.addRange(targetNumStudentsAssigned, Double.MAX_VALUE);
+					lowerBoundRows.put(group, lowerBoundRow);
+					
+					cplex.numVar(cplex.column(objective, slackCoefficient).and(cplex.column(lowerBoundRow, 1)), 0, targetNumStudentsAssigned);
+				}
+			}
+		}
+		
+		// Initial columns: the empty timetable and every clash-free preference of each student (a node budget of 1 skips everything else)
+		TimetableEnumerator initialEnumerator = new TimetableEnumerator(1);
+		
+		for (Student student : students) {
+			for (StudentTimetable timetable : initialEnumerator.enumerateWantedTimetables(student)) {
+				addColumn(timetable);
+			}
+		}
+	}
+	
+	private void addColumn(StudentTimetable timetable) throws IloException {
+		IloColumn column = cplex.column(objective, evaluator.evaluate(timetable)).and(cplex.column(studentRows.get(timetable.getStudent()), 1));
+		
+		for (Group group : timetable.getCourseGroupPairs().values()) {
+			IloRange capacityRow = capacityRows.get(group);
+			IloRange lowerBoundRow = lowerBoundRows.get(group);
+			
+			if (capacityRow != null) column = column.and(cplex.column(capacityRow, 1));
+			if (lowerBoundRow != null) column = column.and(cplex.column(lowerBoundRow, 1));
+		}
+		
+		columnVars.add(cplex.numVar(column, 0, 1));
+		columnTimetables.add(timetable);
+	}
+	
+	// Students still missing from the hard group minimums in the current master solution
+	private double getArtificialSum() throws IloException {
+		return artificialVars.isEmpty() ? 0 : Arrays.stream(cplex.getValues(artificialVars.toArray(new IloNumVar[0]))).sum();
+	}
+	
+	private Map<Group, Double> readGroupPrices() throws IloException {
+		Map<Group, Double> groupPrices = new IdentityHashMap<>();
+		
+		for (Map.Entry<Group, IloRange> capacityRow : capacityRows.entrySet()) {
+			groupPrices.merge(capacityRow.getKey(), cplex.getDual(capacityRow.getValue()), Double::sum);
+		}
+		
+		for (Map.Entry<Group, IloRange> lowerBoundRow : lowerBoundRows.entrySet()) {
+			groupPrices.merge(lowerBoundRow.getKey(), cplex.getDual(lowerBoundRow.getValue()), Double::sum);
+		}
+		
+		return groupPrices;
+	}
+	
+	// Integer solve over the generated columns only, which gives a good (not necessarily optimal) timetable for every student
+	private Map<Student, StudentTimetable> solveRestrictedMaster(double timeLimit) throws IloException {
+		IloNumVar[] vars = columnVars.toArray(new IloNumVar[0]);
+		cplex.add(cplex.conversion(vars, IloNumVarType.Bool));
+		cplex.setParam(IloCplex.DoubleParam.TiLim, timeLimit);
+		
+		if (!cplex.solve()) {
+			System.out.println("Failed to solve the column generation restricted master problem.");
+			return null;
+		}
+		
+		// Artificial columns still in use mean the generated columns can't meet some group's minimum, so the solution isn't feasible
+		if (getArtificialSum() > cplex.getParam(IloCplex.DoubleParam.EpInt)) {
+			System.out.println("Restricted master solution can't meet every group's minimum with the generated columns.");
+			return null;
+		}
+		
+		double objValue = cplex.getObjValue() + evaluator.getConstant();
+		
+		System.out.println("Restricted master solution is " + cplex.getStatus() + ": " + objValue);
+		
+		if (relaxationSolved) {
+			System.out.println("Gap to LP relaxation bound = " + (relaxationBound - objValue) / Math.abs(relaxationBound) * 100 + "%");
+		}
+		
+		double[] values = cplex.getValues(vars);
+		double tolerance = cplex.getParam(IloCplex.DoubleParam.EpInt);
+		Map<Student, StudentTimetable> solution = new HashMap<>();
+		
+		for (int i = 0; i < vars.length; ++i) {
+			if (Math.abs(values[i] - 1) < tolerance) {
+				StudentTimetable timetable = columnTimetables.get(i);
+				solution.put(timetable.getStudent(), timetable);
+			}
+		}
+		
+		return solution;
+	}
+}
@@ -0,0 +1,375 @@
+package problem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import model.Course;
+import model.Group;
+import model.Student;
+import model.StudentPreference;
+import model.StudentTimetable;
+
+// Student-proposing deferred acceptance over whole preferences: every free student proposes their next clash-free preference, which is only accepted if
+// every one of its groups takes them, and groups prefer students by grade (then by code). A student who is accepted may push the group's lowest priority
+// student out, who loses their whole preference (freeing their seats in its other groups) and proposes again. Students left without a preference are then
+// given, best grades first, a clash-free group for each of their courses, their wanted groups first. Hard group minimums aren't enforced (only reported)
+public class DeferredAcceptanceSolver {
+	private TimetableEvaluator evaluator;
+	private List<Student> students; // In priority order
+	private List<Group> groups;
+	private List<Course> groupCourses;
+	private Map<Group, Integer> groupIndices; // Groups from different courses can share the same code, so they're indexed by identity
+	private int[] groupCapacities; // -1 if the group has no capacity constraint
+	
+	// Student s's clash-free preferences are bundles bundleStarts[s] to bundleStarts[s + 1] - 1, bundle b's groups are bundleGroups[groupStarts[b]] to bundleGroups[groupStarts[b + 1] - 1]
+	private int[] bundleStarts, groupStarts, bundleGroups;
+	private StudentPreference[] bundlePreferences;
+	
+	private int[] nextBundle, matchedBundle; // Per student (-1 if they don't hold a bundle)
+	private int[][] groupHolders; // Per group with a capacity, a max-heap of the students holding a seat, so the lowest priority one is on top
+	private int[] numHolders, numStudentsAssigned;
+	private int[] freeStudents; // Circular queue (a student is in it at most once)
+	private int freeStudentsHead, numFreeStudents;
+	
+	private long numProposals;
+	private int numMatchedStudents, numFilledStudents, numBlockingStudents, numGroupsBelowMinimum;
+	private double matchingTime, solveTime; // The deferred acceptance alone, and with the preparation and the students filled in
+	
+	public DeferredAcceptanceSolver(Map<String, Course> courses, Map<String, Student> students, TimetableEvaluator evaluator) {
+		this.evaluator = evaluator;
+		this.students = new ArrayList<>(students.values());
+		this.groups = new ArrayList<>();
+		this.groupCourses = new ArrayList<>();
+		this.groupIndices = new IdentityHashMap<>();
+		
+		this.students.sort(Comparator.comparing(Student::getAvgGrade).reversed().thenComparing(Student::getCode));
+		
+		for (Course course : courses.values()) {
+			for (Group group : course.getGroups().values()) {
+				groupIndices.put(group, groups.size());
+				groups.add(group);
+				groupCourses.add(course);
+			}
+		}
+		
+		this.groupCapacities = new int[groups.size()];
+		
+		for (int g = 0; g < groups.size(); ++g) {
+			groupCapacities[g] = evaluator.hasCapacityConstraint(groupCourses.get(g)) ? groups.get(g).getCapacity() : -1;
+		}
+	}
+	
+	public Map<Student, StudentTimetable> solve() {
+		long startTime = System.nanoTime();
+		
+		buildBundles();
+		
+		nextBundle = new int[students.size()];
+		matchedBundle = new int[students.size()];
+		groupHolders = new int[groups.size()][];
+		numHolders = new int[groups.size()];
+		numStudentsAssigned = new int[groups.size()];
+		freeStudents = new int[Math.max(1, students.size())];
+		freeStudentsHead = 0;
+		numFreeStudents = 0;
+		numProposals = 0;
+		
+		for (int g = 0; g < groups.size(); ++g) {
+			if (groupCapacities[g] > 0) groupHolders[g] = new int[groupCapacities[g]];
+		}
+		
+		for (int s = 0; s < students.size(); ++s) {
+			nextBundle[s] = bundleStarts[s];
+			matchedBundle[s] = -1;
+			freeStudents[numFreeStudents++] = s;
+		}
+		
+		long matchingStartTime = System.nanoTime();
+		
+		while (numFreeStudents > 0) {
+			int s = freeStudents[freeStudentsHead];
+			freeStudentsHead = (freeStudentsHead + 1) % freeStudents.length;
+			--numFreeStudents;
+			
+			while (matchedBundle[s] < 0 && nextBundle[s] < bundleStarts[s + 1]) {
+				int b = nextBundle[s]++;
+				++numProposals;
+				
+				if (isAccepted(s, b)) accept(s, b);
+			}
+		}
+		
+		matchingTime = (System.nanoTime() - matchingStartTime) / 1e9;
+		numMatchedStudents = 0;
+		numBlockingStudents = 0;
+		
+		for (int s = 0; s < students.size(); ++s) {
+			if (matchedBundle[s] >= 0) ++numMatchedStudents;
+			if (hasJustifiedEnvy(s)) ++numBlockingStudents;
+		}
+		
+		Map<Student, StudentTimetable> solution = new HashMap<>();
+		numFilledStudents = 0;
+		
+		for (int s = 0; s < students.size(); ++s) {
+			Student student = students.get(s);
+			Map<Course, Group> courseGroupPairs = new HashMap<>();
+			
+			if (matchedBundle[s] >= 0) {
+				courseGroupPairs.putAll(bundlePreferences[matchedBundle[s]].getCourseGroupPairs());
+			}
+			else {
+				fillStudent(student, courseGroupPairs);
+				if (!courseGroupPairs.isEmpty()) ++numFilledStudents;
+			}
+			
+			solution.put(student, new StudentTimetable(student, courseGroupPairs));
+		}
+		
+		numGroupsBelowMinimum = 0;
+		
+		for (int g = 0; g < groups.size(); ++g) {
+			if (numStudentsAssigned[g] < evaluator.getMinNumStudentsAssigned(groupCourses.get(g), groups.get(g))) ++numGroupsBelowMinimum;
+		}
+		
+		solveTime = (System.nanoTime() - startTime) / 1e9;
+		
+		System.out.println("Deferred acceptance: " + numMatchedStudents + " of " + students.size() + " students got one of their preferences (" + numProposals + " proposals, "
+				+ numBlockingStudents + " blocking students) in " + matchingTime * 1000 + " ms, and " + numFilledStudents + " were filled in (" + solveTime * 1000 + " ms in total).");
+		
+		return solution;
+	}
+	
+	// Every student's preferences, in order, minus those with clashing practical classes (no timetable can fulfill them)
+	private void buildBundles() {
+		List<StudentPreference> preferences = new ArrayList<>();
+		int[] starts = new int[students.size() + 1], bundleGroupStarts = new int[16], groupList = new int[64];
+		int numGroups = 0;
+		BitSet practicalTimeslots = new BitSet();
+		
+		for (int s = 0; s < students.size(); ++s) {
+			starts[s] = preferences.size();
+			
+			for (StudentPreference preference : students.get(s).getPreferences()) {
+				int bundleStart = numGroups;
+				boolean clash = false;
+				
+				practicalTimeslots.clear();
+				
+				for (Group group : preference.getCourseGroupPairs().values()) {
+					if (group.getOccupiedPracticalTimeslots().intersects(practicalTimeslots)) { // A student can have at most 1 concurrent practical class
+						clash = true;
+						break;
+					}
+					
+					practicalTimeslots.or(group.getOccupiedPracticalTimeslots());
+					
+					if (numGroups == groupList.length) groupList = Arrays.copyOf(groupList, 2 * numGroups);
+					groupList[numGroups++] = groupIndices.get(group);
+				}
+				
+				if (clash || numGroups == bundleStart) {
+					numGroups = bundleStart;
+					continue;
+				}
+				
+				if (preferences.size() + 1 >= bundleGroupStarts.length) bundleGroupStarts = Arrays.copyOf(bundleGroupStarts, 2 * bundleGroupStarts.length);
+				
+				bundleGroupStarts[preferences.size()] = bundleStart;
+				preferences.add(preference);
+			}
+		}
+		
+		starts[students.size()] = preferences.size();
+		bundleGroupStarts[preferences.size()] = numGroups;
+		
+		bundleStarts = starts;
+		bundlePreferences = preferences.toArray(new StudentPreference[0]);
+		groupStarts = Arrays.copyOf(bundleGroupStarts, bundlePreferences.length + 1);
+		bundleGroups = Arrays.copyOf(groupList, numGroups);
+	}
+	
+	// True if every group of the bundle has a free seat or a holder with lower priority than the student
+	private boolean isAccepted(int s, int b) {
+		for (int i = groupStarts[b]; i < groupStarts[b + 1]; ++i) {
+			int g = bundleGroups[i];
+			
+			if (groupCapacities[g] < 0) continue;
+			if (groupCapacities[g] == 0) return false;
+			if (numHolders[g] == groupCapacities[g] && groupHolders[g][0] < s) return false;
+		}
+		
+		return true;
+	}
+	
+	private void accept(int s, int b) {
+		for (int i = groupStarts[b]; i < groupStarts[b + 1]; ++i) {
+			int g = bundleGroups[i];
+			
+			if (groupCapacities[g] >= 0) {
+				if (numHolders[g] == groupCapacities[g]) reject(groupHolders[g][0]); // Also frees the seats in the other groups of their bundle
+				
+				pushHolder(g, s);
+			}
+			
+			++numStudentsAssigned[g];
+		}
+		
+		matchedBundle[s] = b;
+	}
+	
+	// The student loses their bundle and goes back to the queue, to propose their next one
+	private void reject(int s) {
+		int b = matchedBundle[s];
+		
+		for (int i = groupStarts[b]; i < groupStarts[b + 1]; ++i) {
+			int g = bundleGroups[i];
+			
+			if (groupCapacities[g] >= 0) removeHolder(g, s);
+			
+			--numStudentsAssigned[g];
+		}
+		
+		matchedBundle[s] = -1;
+		freeStudents[(freeStudentsHead + numFreeStudents) % freeStudents.length] = s;
+		++numFreeStudents;
+	}
+	
+	private void pushHolder(int g, int s) {
+		int[] heap = groupHolders[g];
+		int i = numHolders[g]++;
+		
+		heap[i] = s;
+		siftUp(heap, i);
+	}
+	
+	private void removeHolder(int g, int s) {
+		int[] heap = groupHolders[g];
+		int i = 0;
+		
+		while (heap[i] != s) ++i;
+		
+		heap[i] = heap[--numHolders[g]];
+		
+		if (i < numHolders[g]) {
+			siftUp(heap, i);
+			siftDown(heap, i, numHolders[g]);
+		}
+	}
+	
+	private static void siftUp(int[] heap, int i) {
+		while (i > 0 && heap[(i - 1) / 2] < heap[i]) {
+			swap(heap, i, (i - 1) / 2);
+			i = (i - 1) / 2;
+		}
+	}
+	
+	private static void siftDown(int[] heap, int i, int size) {
+		while (2 * i + 1 < size) {
+			int child = 2 * i + 1;
+			if (child + 1 < size && heap[child + 1] > heap[child]) ++child;
+			
+			if (heap[i] >= heap[child]) break;
+			
+			swap(heap, i, child);
+			i = child;
+		}
+	}
+	
+	private static void swap(int[] heap, int i, int j) {
+		int temp = heap[i];
+		heap[i] = heap[j];
+		heap[j] = temp;
+	}
+	
+	// True if the student would rather have one of their earlier bundles, and every group of it has a free seat or a lower priority holder. Proposing
+	// whole bundles doesn't rule this out: a student can be turned down by a group that a later rejection leaves with room for them
+	private boolean hasJustifiedEnvy(int s) {
+		int end = (matchedBundle[s] >= 0) ? matchedBundle[s] : bundleStarts[s + 1];
+		
+		for (int b = bundleStarts[s]; b < end; ++b) {
+			boolean blocking = true;
+			
+			for (int i = groupStarts[b]; i < groupStarts[b + 1] && blocking; ++i) {
+				int g = bundleGroups[i];
+				
+				if (groupCapacities[g] < 0 || numHolders[g] < groupCapacities[g] || holdsSeat(s, g)) continue;
+				
+				blocking = groupCapacities[g] > 0 && groupHolders[g][0] > s;
+			}
+			
+			if (blocking) return true;
+		}
+		
+		return false;
+	}
+	
+	private boolean holdsSeat(int s, int g) {
+		int b = matchedBundle[s];
+		if (b < 0) return false;
+		
+		for (int i = groupStarts[b]; i < groupStarts[b + 1]; ++i) {
+			if (bundleGroups[i] == g) return true;
+		}
+		
+		return false;
+	}
+	
+	// A group with a free seat and no practical class clash for each of the student's courses: a wanted one if possible, then the emptiest
+	private void fillStudent(Student student, Map<Course, Group> courseGroupPairs) {
+		List<Course> enrolledCourses = new ArrayList<>(student.getEnrolledCourses());
+		enrolledCourses.sort(Comparator.comparing(Course::getCode));
+		
+		BitSet practicalTimeslots = new BitSet();
+		
+		for (Course course : enrolledCourses) {
+			Set<Group> wantedGroups = student.getWantedCourseGroups(course);
+			Group bestGroup = null;
+			boolean bestWanted = false;
+			int bestFreeSeats = 0;
+			
+			for (Group group : course.getGroups().values()) {
+				int g = groupIndices.get(group);
+				int freeSeats = (groupCapacities[g] >= 0) ? groupCapacities[g] - numStudentsAssigned[g] : Integer.MAX_VALUE;
+				boolean wanted = wantedGroups.contains(group);
+				
+				if (freeSeats <= 0 || group.getOccupiedPracticalTimeslots().intersects(practicalTimeslots)) continue;
+				
+				if (bestGroup == null || (wanted && !bestWanted) || (wanted == bestWanted && freeSeats > bestFreeSeats)) {
+					bestGroup = group;
+					bestWanted = wanted;
+					bestFreeSeats = freeSeats;
+				}
+			}
+			
+			if (bestGroup == null) continue;
+			
+			courseGroupPairs.put(course, bestGroup);
+			practicalTimeslots.or(bestGroup.getOccupiedPracticalTimeslots());
+			++numStudentsAssigned[groupIndices.get(bestGroup)];
+		}
+	}
+	
+	public String buildReport(double value) {
+		String output = "";
+		
+		output += "Estudantes: " + students.size();
+		output += "\r\n" + "Propostas: " + numProposals;
+		output += "\r\n" + "Estudantes colocados numa preferência: " + numMatchedStudents;
+		output += "\r\n" + "Estudantes colocados fora das preferências: " + numFilledStudents;
+		output += "\r\n" + "Estudantes com inveja justificada (pares bloqueantes): " + numBlockingStudents;
+		output += "\r\n" + "Turmas abaixo do mínimo: " + numGroupsBelowMinimum;
+		output += "\r\n" + "\r\n" + "Valor objetivo: " + value;
+		output += "\r\n" + "Tempo de emparelhamento: " + matchingTime + " s";
+		output += "\r\n" + "Tempo de resolução: " + solveTime + " s";
+		
+		return output;
+	}
+}
@@ -0,0 +1,34 @@
+package problem;
+
+import java.util.Collection;
+
+import model.Student;
+
+// Weight of a student's grade in PreferenceWeightingMode.EXPONENT: 2^grade, which spans several orders of magnitude. The scaled version is
+// shifted so the best grade weighs 1, which changes nothing once the fulfilled preferences sum is normalized, and compressed so the best and
+// worst grades are at most 2^MAX_EXPONENT_SPREAD apart, which keeps the students' order but not the ratios between their weights
+public class GradeWeighting {
+	public static final double MAX_EXPONENT_SPREAD = 4;
+	
+	private boolean scaled;
+	private double maxGrade;
+	private double exponentScale;
+	
+	public GradeWeighting(Collection<Student> students, boolean scaled) {
+		double minGrade = Double.POSITIVE_INFINITY;
+		
+		this.scaled = scaled;
+		this.maxGrade = Double.NEGATIVE_INFINITY;
+		
+		for (Student student : students) {
+			minGrade = Math.min(minGrade, student.getAvgGrade());
+			maxGrade = Math.max(maxGrade, student.getAvgGrade());
+		}
+		
+		this.exponentScale = (maxGrade - minGrade > MAX_EXPONENT_SPREAD) ? MAX_EXPONENT_SPREAD / (maxGrade - minGrade) : 1;
+	}
+	
+	public double weigh(float grade) {
+		return scaled ? Math.pow(2, exponentScale * (grade - maxGrade)) : Math.pow(2, grade);
+	}
+}
@@ -0,0 +1,93 @@
+package problem;
+
+import java.util.List;
+
+// Best solution and best bound shared by every member of a solver portfolio. Members build their own model objects, so solutions are kept as
+// (student, course, group) code triples that any member can map back to its own variables
+public class IncumbentPool {
+	private double targetGap;
+	private double timeLimit;
+	private long startTime;
+	
+	private double bestObjective;
+	private double bestBound;
+	private List<String[]> bestAssignments;
+	private String bestSource;
+	private int version; // Incremented on every improvement, so members can tell whether they've already seen the current incumbent
+	private volatile boolean stopped;
+	
+	public IncumbentPool(double targetGap, double timeLimit) {
+		this.targetGap = targetGap;
+		this.timeLimit = timeLimit;
+		this.startTime = System.currentTimeMillis();
+		this.bestObjective = Double.NEGATIVE_INFINITY;
+		this.bestBound = Double.POSITIVE_INFINITY;
+		this.version = 0;
+		this.stopped = false;
+	}
+	
+	// Returns true if the solution improves on the pool's incumbent (the objective is maximized)
+	public synchronized boolean offer(double objective, List<String[]> assignments, String source) {
+		if (objective <= bestObjective) return false;
+		
+		bestObjective = objective;
+		bestAssignments = assignments;
+		bestSource = source;
+		++version;
+		
+		System.out.println("[" + getElapsedTime() + " s] New shared incumbent from " + source + ": " + objective + " (gap " + getGap() * 100 + "%)");
+		
+		return true;
+	}
+	
+	// Any member's bound is valid for the whole problem, since every member solves the same problem
+	public synchronized void updateBound(double bound) {
+		if (bound < bestBound) bestBound = bound;
+	}
+	
+	public synchronized double getBestObjective() {
+		return bestObjective;
+	}
+	
+	public synchronized double getBestBound() {
+		return bestBound;
+	}
+	
+	public synchronized List<String[]> getBestAssignments() {
+		return bestAssignments;
+	}
+	
+	public synchronized String getBestSource() {
+		return bestSource;
+	}
+	
+	public synchronized int getVersion() {
+		return version;
+	}
+	
+	// Same relative gap as CPLEX's
+	public synchronized double getGap() {
+		if (bestObjective == Double.NEGATIVE_INFINITY || bestBound == Double.POSITIVE_INFINITY) return Double.POSITIVE_INFINITY;
+		
+		return Math.abs(bestBound - bestObjective) / (1e-10 + Math.abs(bestObjective));
+	}
+	
+	public double getElapsedTime() {
+		return (System.currentTimeMillis() - startTime) / 1000.;
+	}
+	
+	public double getRemainingTime() {
+		return Math.max(0, timeLimit - getElapsedTime());
+	}
+	
+	// Once the target gap or the time limit is reached, every member should stop
+	public boolean shouldStop() {
+		if (!stopped && (getGap() <= targetGap || getElapsedTime() >= timeLimit)) stopped = true;
+		
+		return stopped;
+	}
+	
+	public void stop() {
+		stopped = true;
+	}
+}
@@ -0,0 +1,104 @@
+package problem;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import model.Course;
+import model.Group;
+import model.Student;
+
+// Cheap necessary conditions for the model to be feasible, checked on the input data before anything is built, so inconsistent inputs fail in
+// seconds instead of after the time limit. Errors make the model infeasible (or the input unusable), warnings only cost solution quality.
+// The groups the conflict refiner finds (for group errors, or after the solve proves the model infeasible) are added to the same report
+public class InputDiagnostics {
+	private Map<String, Course> courses;
+	private Map<String, Student> students;
+	private TimetableEvaluator evaluator;
+	private List<String[]> readProblems; // (course, group, description) of the input rows the reader had to skip
+	private List<String[]> errors, warnings, conflicts; // (course, group, description)
+	
+	public InputDiagnostics(Map<String, Course> courses, Map<String, Student> students, TimetableEvaluator evaluator, List<String[]> readProblems) {
+		this.courses = courses;
+		this.students = students;
+		this.evaluator = evaluator;
+		this.readProblems = readProblems;
+		this.errors = new ArrayList<>();
+		this.warnings = new ArrayList<>();
+		this.conflicts = new ArrayList<>();
+	}
+	
+	// True if no error was found
+	public boolean check() {
+		errors.addAll(readProblems); // Rows with unknown codes were skipped, so the model wouldn't be the one the input describes
+		
+		List<Course> sortedCourses = new ArrayList<>(courses.values());
+		sortedCourses.sort(Comparator.comparing(Course::getCode));
+		
+		for (Course course : sortedCourses) {
+			List<Group> sortedGroups = new ArrayList<>(course.getGroups().values());
+			sortedGroups.sort(Comparator.comparing(Group::getCode));
+			
+			int numEnrollments = course.getNumEnrollments();
+			int sumCapacities = 0;
+			float sumMinAssigned = 0;
+			
+			for (Group group : sortedGroups) {
+				if (group.getCapacity() < 0) { // Capacity reductions (e.g. for the 1st year students) can take a group below 0
+					errors.add(new String[] {course.getCode(), group.getCode(), "capacidade negativa (" + group.getCapacity() + ")"});
+				}
+				
+				if (group.getOccupiedTimeslots().isEmpty() && numEnrollments > 0) {
+					warnings.add(new String[] {course.getCode(), group.getCode(), "turma sem aulas no horário"});
+				}
+				
+				sumCapacities += Math.max(0, group.getCapacity());
+				sumMinAssigned += Math.ceil(evaluator.getMinNumStudentsAssigned(course, group)); // Assigned students are integer
+			}
+			
+			if (numEnrollments == 0 || !evaluator.hasCapacityConstraint(course)) continue;
+			
+			if (sumCapacities < numEnrollments) {
+				warnings.add(new String[] {course.getCode(), "", "capacidade total (" + sumCapacities + ") abaixo dos inscritos (" + numEnrollments + ")"});
+			}
+			
+			// A student takes at most one group per course, so the course's enrollments have to cover the hard minimums of all of its groups
+			if (sumMinAssigned > numEnrollments) {
+				errors.add(new String[] {course.getCode(), "", "mínimos das turmas (" + (int) sumMinAssigned + ") acima dos inscritos (" + numEnrollments + ")"});
+			}
+		}
+		
+		System.out.println("Input diagnostics: " + errors.size() + " errors and " + warnings.size() + " warnings for " + courses.size() + " courses and "
+				+ students.size() + " students.");
+		
+		return errors.isEmpty();
+	}
+	
+	// Errors found in the groups themselves (capacities, minimums), besides the input rows the reader skipped
+	public boolean hasGroupErrors() {
+		return errors.size() > readProblems.size();
+	}
+	
+	public void addConflict(Course course, Group group, String description) {
+		conflicts.add(new String[] {course.getCode(), group.getCode(), description});
+	}
+	
+	public String buildReport() {
+		String output = "TIPO;UC;TURMA;DESCRICAO";
+		
+		for (String[] error : errors) {
+			output += "\r\n" + "ERRO;" + String.join(";", error);
+		}
+		
+		for (String[] conflict : conflicts) {
+			output += "\r\n" + "CONFLITO;" + String.join(";", conflict);
+		}
+		
+		for (String[] warning : warnings) {
+			output += "\r\n" + "AVISO;" + String.join(";", warning);
+		}
+		
+		return output;
+	}
+}
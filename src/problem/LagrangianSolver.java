@@ -0,0 +1,403 @@
+package problem;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import model.Course;
+import model.Group;
+import model.Student;
+import model.StudentTimetable;
+
+// Lagrangian relaxation of the group capacity and group balance constraints. With those rows dualized, the problem splits into one subproblem per student,
+// solved over the student's clash-free timetables built from the course-group pairs in their preferences, and then priced over every other clash-free
+// timetable (wanted groups or not), which joins the student's candidates if it's better. The dual value is only an upper bound on the model CPLEX solves
+// when that pricing searched every timetable of every student; if its node budget cut it short, the value is reported as not being a bound
+public class LagrangianSolver {
+	private static class Candidate {
+		private StudentTimetable timetable;
+		private int[] groupIndices;
+		private double value;
+	}
+	
+	private TimetableEvaluator evaluator;
+	private TimetableEnumerator enumerator;
+	private List<Student> students;
+	private List<Group> groups;
+	private Map<Group, Integer> groupIndices; // Groups from different courses can share the same code, so they're indexed by identity
+	private int[] groupCapacities; // -1 if the group has no capacity constraint
+	private float[] groupMinAssigned; // Hard lower bounds (optional courses)
+	private float[] groupTargets; // Soft lower bounds (group balance)
+	private List<List<Candidate>> studentCandidates;
+	
+	private double[] capacityMultipliers, lowerBoundMultipliers;
+	private double upperBound, lowerBound; // The upper bound stays infinite if no iteration's pricing was complete
+	private double bestLagrangianValue; // Best dual value, bound or not, which steers the step size
+	private boolean pricingComplete; // In the last solveSubproblems call
+	private Map<Student, StudentTimetable> bestSolution;
+	
+	public LagrangianSolver(Map<String, Course> courses, Map<String, Student> students, TimetableEvaluator evaluator, int maxTimetablesPerStudent) {
+		this.evaluator = evaluator;
+		this.enumerator = new TimetableEnumerator(maxTimetablesPerStudent);
+		this.students = new ArrayList<>(students.values());
+		this.groups = new ArrayList<>();
+		this.groupIndices = new IdentityHashMap<>();
+		
+		this.students.sort(Comparator.comparing(Student::getCode));
+		
+		for (Course course : courses.values()) {
+			for (Group group : course.getGroups().values()) {
+				groupIndices.put(group, groups.size());
+				groups.add(group);
+			}
+		}
+		
+		this.groupCapacities = new int[groups.size()];
+		this.groupMinAssigned = new float[groups.size()];
+		this.groupTargets = new float[groups.size()];
+		
+		for (Course course : courses.values()) {
+			for (Group group : course.getGroups().values()) {
+				int index = groupIndices.get(group);
+				
+				groupCapacities[index] = evaluator.hasCapacityConstraint(course) ? group.getCapacity() : -1;
+				groupMinAssigned[index] = evaluator.getMinNumStudentsAssigned(course, group);
+				groupTargets[index] = evaluator.getTargetNumStudentsAssigned(group);
+			}
+		}
+	}
+	
+	// Infinite if no iteration could prove a bound
+	public double getUpperBound() {
+		return upperBound;
+	}
+	
+	public double getLowerBound() {
+		return lowerBound;
+	}
+	
+	public Map<Student, StudentTimetable> solve(int maxIterations, double timeLimit) {
+		long startTime = System.currentTimeMillis();
+		
+		// Each student's subproblem candidates are independent from everyone else's, so they're enumerated in parallel
+		studentCandidates = students.parallelStream().map(this::buildCandidates).collect(Collectors.toList());
+		
+		System.out.println("Lagrangian relaxation: enumerated " + studentCandidates.stream().mapToInt(List::size).sum() + " timetables for " + students.size()
+				+ " students in " + (System.currentTimeMillis() - startTime) / 1000. + " s.");
+		
+		capacityMultipliers = new double[groups.size()];
+		lowerBoundMultipliers = new double[groups.size()];
+		upperBound = Double.POSITIVE_INFINITY;
+		lowerBound = Double.NEGATIVE_INFINITY;
+		bestLagrangianValue = Double.POSITIVE_INFINITY;
+		bestSolution = null;
+		
+		double stepScale = 2;
+		int iterationsWithoutImprovement = 0;
+		int iteration;
+		
+		for (iteration = 0; iteration < maxIterations; ++iteration) {
+			if ((System.currentTimeMillis() - startTime) / 1000. > timeLimit) break;
+			
+			int[] choices = solveSubproblems();
+			int[] numStudentsAssigned = countStudentsAssigned(choices);
+			
+			double lagrangianValue = calculateLagrangianValue(choices);
+			
+			if (pricingComplete && lagrangianValue < upperBound) {
+				upperBound = lagrangianValue;
+			}
+			
+			if (lagrangianValue < bestLagrangianValue - 1e-9) {
+				bestLagrangianValue = lagrangianValue;
+				iterationsWithoutImprovement = 0;
+			}
+			else if (++iterationsWithoutImprovement >= 20) {
+				stepScale /= 2;
+				iterationsWithoutImprovement = 0;
+			}
+			
+			if (iteration % 5 == 0) repair();
+			
+			// Subgradient of the dual function for every dualized row
+			double[] capacitySubgradients = new double[groups.size()];
+			double[] lowerBoundSubgradients = new double[groups.size()];
+			double sumSquaredSubgradients = 0;
+			
+			for (int g = 0; g < groups.size(); ++g) {
+				if (groupCapacities[g] >= 0) {
+					capacitySubgradients[g] = groupCapacities[g] - numStudentsAssigned[g];
+					if (capacityMultipliers[g] == 0 && capacitySubgradients[g] > 0) capacitySubgradients[g] = 0; // Projection onto multipliers >= 0
+				}
+				
+				if (groupMinAssigned[g] > 0) {
+					lowerBoundSubgradients[g] = numStudentsAssigned[g] - groupMinAssigned[g];
+				}
+				else if (groupTargets[g] > 0) {
+					double slack = (lowerBoundMultipliers[g] > -evaluator.getGroupUtilizationSlackCoefficient()) ? groupTargets[g] : 0;
+					lowerBoundSubgradients[g] = numStudentsAssigned[g] + slack - groupTargets[g];
+				}
+				
+				if (lowerBoundMultipliers[g] == 0 && lowerBoundSubgradients[g] > 0) lowerBoundSubgradients[g] = 0;
+				
+				sumSquaredSubgradients += capacitySubgradients[g] * capacitySubgradients[g] + lowerBoundSubgradients[g] * lowerBoundSubgradients[g];
+			}
+			
+			if (sumSquaredSubgradients == 0) break; // The relaxed solution satisfies every dualized row with complementary slackness, so it's optimal
+			
+			double gap = (lowerBound > Double.NEGATIVE_INFINITY) ? bestLagrangianValue - lowerBound : Math.abs(bestLagrangianValue) * .05;
+			if (gap < 1e-9) break;
+			
+			double step = stepScale * gap / sumSquaredSubgradients;
+			
+			for (int g = 0; g < groups.size(); ++g) {
+				capacityMultipliers[g] = Math.max(0, capacityMultipliers[g] - step * capacitySubgradients[g]);
+				lowerBoundMultipliers[g] = Math.max(0, lowerBoundMultipliers[g] - step * lowerBoundSubgradients[g]);
+			}
+		}
+		
+		repair();
+		
+		System.out.println("Lagrangian relaxation: " + iteration + " iterations in " + (System.currentTimeMillis() - startTime) / 1000. + " s.");
+		if (upperBound < Double.POSITIVE_INFINITY) {
+			System.out.println("Lagrangian upper bound = " + upperBound);
+			System.out.println("Best feasible solution = " + lowerBound);
+			System.out.println("Gap = " + (upperBound - lowerBound) / Math.abs(upperBound) * 100 + "%");
+		}
+		else {
+			System.out.println("Lagrangian value = " + bestLagrangianValue + " (not a bound: the pricing of some students' timetables was truncated)");
+			System.out.println("Best feasible solution = " + lowerBound);
+		}
+		
+		return bestSolution;
+	}
+	
+	private List<Candidate> buildCandidates(Student student) {
+		List<Candidate> candidates = new ArrayList<>();
+		
+		for (StudentTimetable timetable : enumerator.enumerateWantedTimetables(student)) {
+			Candidate candidate = new Candidate();
+			candidate.timetable = timetable;
+			candidate.value = evaluator.evaluate(timetable);
+			candidate.groupIndices = timetable.getCourseGroupPairs().values().stream().mapToInt(groupIndices::get).toArray();
+			
+			candidates.add(candidate);
+		}
+		
+		return candidates;
+	}
+	
+	private double calculateReducedValue(Candidate candidate) {
+		double reducedValue = candidate.value;
+		
+		for (int g : candidate.groupIndices) {
+			reducedValue += lowerBoundMultipliers[g] - capacityMultipliers[g];
+		}
+		
+		return reducedValue;
+	}
+	
+	// Each student's best candidate by reduced value, after pricing every timetable the candidates don't cover. Students only touch their own
+	// candidates, so they're solved in parallel
+	private int[] solveSubproblems() {
+		boolean[] studentPricingComplete = new boolean[students.size()];
+		
+		int[] choices = IntStream.range(0, students.size()).parallel().map(s -> {
+			List<Candidate> candidates = studentCandidates.get(s);
+			int bestCandidate = 0;
+			double bestReducedValue = Double.NEGATIVE_INFINITY;
+			
+			for (int c = 0; c < candidates.size(); ++c) {
+				double reducedValue = calculateReducedValue(candidates.get(c));
+				
+				if (reducedValue > bestReducedValue) {
+					bestReducedValue = reducedValue;
+					bestCandidate = c;
+				}
+			}
+			
+			TimetableEnumerator.PricingResult pricing = enumerator.findBestTimetable(students.get(s), evaluator, group -> {
+				int g = groupIndices.get(group);
+				return capacityMultipliers[g] - lowerBoundMultipliers[g];
+			}, bestReducedValue + 1e-9);
+			
+			studentPricingComplete[s] = pricing.isComplete();
+			
+			if (pricing.getTimetable() != null) {
+				Candidate candidate = new Candidate();
+				candidate.timetable = pricing.getTimetable();
+				candidate.value = evaluator.evaluate(candidate.timetable);
+				candidate.groupIndices = candidate.timetable.getCourseGroupPairs().values().stream().mapToInt(groupIndices::get).toArray();
+				
+				candidates.add(candidate);
+				bestCandidate = candidates.size() - 1;
+			}
+			
+			return bestCandidate;
+		}).toArray();
+		
+		pricingComplete = true;
+		
+		for (boolean complete : studentPricingComplete) {
+			pricingComplete &= complete;
+		}
+		
+		return choices;
+	}
+	
+	private int[] countStudentsAssigned(int[] choices) {
+		int[] numStudentsAssigned = new int[groups.size()];
+		
+		for (int s = 0; s < students.size(); ++s) {
+			for (int g : studentCandidates.get(s).get(choices[s]).groupIndices) {
+				++numStudentsAssigned[g];
+			}
+		}
+		
+		return numStudentsAssigned;
+	}
+	
+	private double calculateLagrangianValue(int[] choices) {
+		double value = evaluator.getConstant();
+		
+		for (int s = 0; s < students.size(); ++s) {
+			value += calculateReducedValue(studentCandidates.get(s).get(choices[s]));
+		}
+		
+		double slackCoefficient = evaluator.getGroupUtilizationSlackCoefficient();
+		
+		for (int g = 0; g < groups.size(); ++g) {
+			if (groupCapacities[g] >= 0) value += capacityMultipliers[g] * groupCapacities[g];
+			
+			if (groupMinAssigned[g] > 0) {
+				value -= lowerBoundMultipliers[g] * groupMinAssigned[g];
+			}
+			else if (groupTargets[g] > 0) {
+				value -= lowerBoundMultipliers[g] * groupTargets[g];
+				value += groupTargets[g] * Math.max(0, lowerBoundMultipliers[g] + slackCoefficient); // Best slack for the current multiplier
+			}
+		}
+		
+		return value;
+	}
+	
+	// Builds a feasible solution from the current multipliers: students are served by decreasing grade, each getting their best timetable
+	// (by reduced value) that still fits the remaining group capacities. Groups below their hard minimum are then filled by moving students over
+	private void repair() {
+		List<Integer> studentOrder = new ArrayList<>();
+		for (int s = 0; s < students.size(); ++s) studentOrder.add(s);
+		studentOrder.sort((s1, s2) -> Float.compare(students.get(s2).getAvgGrade(), students.get(s1).getAvgGrade()));
+		
+		int[] numStudentsAssigned = new int[groups.size()];
+		int[] choices = new int[students.size()];
+		
+		for (int s : studentOrder) {
+			List<Candidate> candidates = studentCandidates.get(s);
+			int bestCandidate = -1;
+			double bestReducedValue = Double.NEGATIVE_INFINITY;
+			
+			for (int c = 0; c < candidates.size(); ++c) {
+				Candidate candidate = candidates.get(c);
+				double reducedValue = calculateReducedValue(candidate);
+				
+				if (reducedValue > bestReducedValue && fits(candidate, numStudentsAssigned)) {
+					bestReducedValue = reducedValue;
+					bestCandidate = c;
+				}
+			}
+			
+			choices[s] = bestCandidate;
+			
+			if (bestCandidate >= 0) {
+				for (int g : candidates.get(bestCandidate).groupIndices) ++numStudentsAssigned[g];
+			}
+		}
+		
+		boolean feasible = fillGroupsBelowMinimum(studentOrder, choices, numStudentsAssigned);
+		
+		Map<Student, StudentTimetable> solution = new HashMap<>();
+		
+		for (int s = 0; s < students.size(); ++s) {
+			if (choices[s] >= 0) solution.put(students.get(s), studentCandidates.get(s).get(choices[s]).timetable);
+		}
+		
+		double value = evaluator.evaluateSolution(solution);
+		
+		if (feasible && value > lowerBound) {
+			lowerBound = value;
+			bestSolution = solution;
+		}
+		else if (bestSolution == null) {
+			bestSolution = solution; // Keep something to write out, even if a group's hard minimum couldn't be met
+		}
+	}
+	
+	private boolean fits(Candidate candidate, int[] numStudentsAssigned) {
+		for (int g : candidate.groupIndices) {
+			if (groupCapacities[g] >= 0 && numStudentsAssigned[g] + 1 > groupCapacities[g]) return false;
+		}
+		
+		return true;
+	}
+	
+	private boolean fillGroupsBelowMinimum(List<Integer> studentOrder, int[] choices, int[] numStudentsAssigned) {
+		boolean feasible = true;
+		
+		for (int g = 0; g < groups.size(); ++g) {
+			if (numStudentsAssigned[g] >= groupMinAssigned[g]) continue;
+			
+			// Lowest grades first, since they lose the least by being moved
+			for (int i = studentOrder.size() - 1; i >= 0 && numStudentsAssigned[g] < groupMinAssigned[g]; --i) {
+				int s = studentOrder.get(i);
+				List<Candidate> candidates = studentCandidates.get(s);
+				Candidate current = (choices[s] >= 0) ? candidates.get(choices[s]) : null;
+				
+				if (current != null && contains(current.groupIndices, g)) continue;
+				
+				for (int g2 : (current != null) ? current.groupIndices : new int[0]) --numStudentsAssigned[g2];
+				
+				int replacement = -1;
+				
+				for (int c = 0; c < candidates.size(); ++c) {
+					Candidate candidate = candidates.get(c);
+					
+					if (contains(candidate.groupIndices, g) && fits(candidate, numStudentsAssigned) && !dropsBelowMinimum(current, candidate, numStudentsAssigned)) {
+						if (replacement < 0 || candidate.value > candidates.get(replacement).value) replacement = c;
+					}
+				}
+				
+				if (replacement >= 0) choices[s] = replacement;
+				
+				for (int g2 : (choices[s] >= 0) ? candidates.get(choices[s]).groupIndices : new int[0]) ++numStudentsAssigned[g2];
+			}
+			
+			if (numStudentsAssigned[g] < groupMinAssigned[g]) feasible = false;
+		}
+		
+		return feasible;
+	}
+	
+	// True if moving a student from 'current' to 'replacement' leaves one of the groups they're leaving below its hard minimum (counts exclude 'current')
+	private boolean dropsBelowMinimum(Candidate current, Candidate replacement, int[] numStudentsAssigned) {
+		if (current == null) return false;
+		
+		for (int g : current.groupIndices) {
+			if (!contains(replacement.groupIndices, g) && groupMinAssigned[g] > 0 && numStudentsAssigned[g] < groupMinAssigned[g]) return true;
+		}
+		
+		return false;
+	}
+	
+	private static boolean contains(int[] array, int value) {
+		for (int element : array) {
+			if (element == value) return true;
+		}
+		
+		return false;
+	}
+}
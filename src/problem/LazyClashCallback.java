@@ -0,0 +1,93 @@
+package problem;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ilog.concert.IloException;
+import ilog.concert.IloIntVar;
+import ilog.concert.IloLinearIntExpr;
+import ilog.cplex.IloCplex;
+import model.Course;
+import model.Group;
+import model.Student;
+
+// Adds the "at most 1 concurrent practical class" rows only when they're needed: every candidate solution is checked against the groups' practical
+// timeslot bitsets, and for each student with two assigned practical classes in the same timeslot, that student's row for the timeslot is added
+class LazyClashCallback extends IloCplex.LazyConstraintCallback {
+	private IloCplex cplex;
+	private List<Student> students;
+	private List<IloIntVar[]> studentVars; // Per student, the assignment variables of the groups with practical classes
+	private List<BitSet[]> studentTimeslots; // Their practical class timeslots
+	private Set<Long> addedRows; // Student index in the high bits, timeslot index in the low 16. Callbacks can run on several threads at once
+	private AtomicInteger numAddedRows;
+	
+	public LazyClashCallback(IloCplex cplex, Collection<Student> students) {
+		this.cplex = cplex;
+		this.students = new ArrayList<>(students);
+		this.studentVars = new ArrayList<>();
+		this.studentTimeslots = new ArrayList<>();
+		this.addedRows = ConcurrentHashMap.newKeySet();
+		this.numAddedRows = new AtomicInteger();
+		
+		for (Student student : this.students) {
+			List<IloIntVar> vars = new ArrayList<>();
+			List<BitSet> timeslots = new ArrayList<>();
+			
+			for (Map.Entry<Course, Map<Group, IloIntVar>> courseAssignments : student.getCourseGroupAssignments().entrySet()) {
+				for (Map.Entry<Group, IloIntVar> groupAssignment : courseAssignments.getValue().entrySet()) {
+					if (groupAssignment.getKey().getOccupiedPracticalTimeslots().isEmpty()) continue;
+					
+					vars.add(groupAssignment.getValue());
+					timeslots.add(groupAssignment.getKey().getOccupiedPracticalTimeslots());
+				}
+			}
+			
+			studentVars.add(vars.toArray(new IloIntVar[0]));
+			studentTimeslots.add(timeslots.toArray(new BitSet[0]));
+		}
+	}
+	
+	public int getNumAddedRows() {
+		return numAddedRows.get();
+	}
+	
+	@Override
+	protected void main() throws IloException {
+		for (int s = 0; s < students.size(); ++s) {
+			IloIntVar[] vars = studentVars.get(s);
+			BitSet[] timeslots = studentTimeslots.get(s);
+			
+			if (vars.length < 2) continue;
+			
+			double[] values = getValues(vars);
+			BitSet occupied = new BitSet(), clashes = new BitSet();
+			
+			for (int i = 0; i < vars.length; ++i) {
+				if (values[i] < .5) continue;
+				
+				BitSet overlap = (BitSet) timeslots[i].clone();
+				overlap.and(occupied);
+				clashes.or(overlap);
+				occupied.or(timeslots[i]);
+			}
+			
+			for (int timeslotIndex = clashes.nextSetBit(0); timeslotIndex >= 0; timeslotIndex = clashes.nextSetBit(timeslotIndex + 1)) {
+				IloLinearIntExpr sumAllPracticalClasses = cplex.linearIntExpr(); // Same row processStudentTimeslot would have added
+				
+				for (int i = 0; i < vars.length; ++i) {
+					if (timeslots[i].get(timeslotIndex)) sumAllPracticalClasses.addTerm(1, vars[i]);
+				}
+				
+				add(cplex.le(sumAllPracticalClasses, 1));
+				
+				if (addedRows.add((long) s << 16 | timeslotIndex)) numAddedRows.incrementAndGet();
+			}
+		}
+	}
+}
@@ -0,0 +1,268 @@
+package problem;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import model.Course;
+import model.Group;
+import model.Student;
+import model.StudentPreference;
+import model.StudentTimetable;
+
+// Exact solver for optional course assignments when every preference is a single course-group pair. A student can then fulfill at most one preference,
+// which only happens if it's their only assignment, so giving each student at most one group is a transportation problem: students send one unit
+// to a group (worth their preference's coefficient, or nothing) or to nobody, and groups take between their minimum and their capacity.
+// It's solved by successive shortest paths, with costs compared lexicographically: first the units that don't count towards a group's minimum, then the
+// lost preference value. Students with several optional courses could also be assigned to more than one group to help the minimums, which one unit per
+// student can't represent, so in that case the solution is only accepted if it's within the gap of the same flow without the minimums (an upper bound)
+public class MinCostFlowSolver {
+	private static class Arc {
+		private int to;
+		private int capacity;
+		private int penalty; // Units that don't count towards a group's minimum
+		private double cost; // Preference value lost
+		private Arc reverse;
+		
+		public Arc(int to, int capacity, int penalty, double cost) {
+			this.to = to;
+			this.capacity = capacity;
+			this.penalty = penalty;
+			this.cost = cost;
+		}
+	}
+	
+	private TimetableEvaluator evaluator;
+	private double mipGap;
+	private List<Student> students;
+	private List<Group> groups;
+	private List<Course> groupCourses;
+	private Map<Group, Integer> groupIndices; // Groups from different courses can share the same code, so they're indexed by identity
+	private double maxCoefficient;
+	
+	private List<List<Arc>> arcs;
+	private double profit;
+	
+	public MinCostFlowSolver(Map<String, Course> courses, Map<String, Student> students, TimetableEvaluator evaluator, double mipGap) {
+		this.evaluator = evaluator;
+		this.mipGap = mipGap;
+		this.students = new ArrayList<>(students.values());
+		this.groups = new ArrayList<>();
+		this.groupCourses = new ArrayList<>();
+		this.groupIndices = new IdentityHashMap<>();
+		
+		this.students.sort(Comparator.comparing(Student::getCode));
+		
+		for (Course course : courses.values()) {
+			for (Group group : course.getGroups().values()) {
+				groupIndices.put(group, groups.size());
+				groups.add(group);
+				groupCourses.add(course);
+			}
+		}
+	}
+	
+	// Null if the instance isn't flow representable or the flow solution can't be shown to be optimal, in which case the MIP has to be solved
+	public Map<Student, StudentTimetable> solve() {
+		long startTime = System.currentTimeMillis();
+		
+		if (evaluator.isMandatoryAssignment()) return null;
+		
+		boolean singleOptionalCourseStudents = true; // If every student has at most one course with a minimum, one unit per student isn't a restriction
+		maxCoefficient = 0;
+		
+		for (Student student : students) {
+			for (StudentPreference preference : student.getPreferences()) {
+				if (preference.getSize() != 1) {
+					System.out.println("Min-cost flow: student " + student.getCode() + " has a multi-course preference, solving the MIP instead.");
+					return null;
+				}
+				
+				maxCoefficient = Math.max(maxCoefficient, evaluator.calculatePreferenceCoefficient(student, preference));
+			}
+			
+			int numCoursesWithMinimum = 0;
+			
+			for (Course course : student.getEnrolledCourses()) {
+				if (evaluator.hasCapacityConstraint(course)) ++numCoursesWithMinimum;
+			}
+			
+			if (numCoursesWithMinimum > 1) singleOptionalCourseStudents = false;
+		}
+		
+		Map<Student, StudentTimetable> solution = solveFlow(true);
+		
+		if (solution == null) {
+			System.out.println("Min-cost flow: the group minimums can't be met with one group per student, solving the MIP instead.");
+			return null;
+		}
+		
+		double solutionProfit = profit;
+		
+		if (!singleOptionalCourseStudents) {
+			solveFlow(false);
+			
+			double upperBound = profit;
+			
+			if (upperBound - solutionProfit > mipGap * Math.max(1e-10, Math.abs(upperBound))) {
+				System.out.println("Min-cost flow: solution " + solutionProfit + " isn't within the gap of the bound " + upperBound + ", solving the MIP instead.");
+				return null;
+			}
+		}
+		
+		System.out.println("Min-cost flow: solved " + students.size() + " students and " + groups.size() + " groups in " + (System.currentTimeMillis() - startTime) / 1000.
+				+ " s. Objective: " + evaluator.evaluateSolution(solution));
+		
+		return solution;
+	}
+	
+	// Node 0 is the source, then the students, the groups, the "not assigned" node and the sink. Null if some group's minimum isn't met
+	private Map<Student, StudentTimetable> solveFlow(boolean withMinimums) {
+		int numStudents = students.size(), numGroups = groups.size();
+		int source = 0, unassigned = numStudents + numGroups + 1, sink = numStudents + numGroups + 2;
+		
+		arcs = new ArrayList<>();
+		
+		for (int node = 0; node <= sink; ++node) {
+			arcs.add(new ArrayList<>());
+		}
+		
+		for (int i = 0; i < numStudents; ++i) {
+			Student student = students.get(i);
+			Map<Group, Double> preferenceCoefficients = new IdentityHashMap<>();
+			
+			for (StudentPreference preference : student.getPreferences()) {
+				for (Group group : preference.getCourseGroupPairs().values()) {
+					preferenceCoefficients.put(group, evaluator.calculatePreferenceCoefficient(student, preference));
+				}
+			}
+			
+			addArc(source, 1 + i, 1, 0, 0);
+			addArc(1 + i, unassigned, 1, 1, maxCoefficient);
+			
+			for (Course course : student.getEnrolledCourses()) {
+				for (Group group : course.getGroups().values()) {
+					addArc(1 + i, 1 + numStudents + groupIndices.get(group), 1, 0, maxCoefficient - preferenceCoefficients.getOrDefault(group, 0.));
+				}
+			}
+		}
+		
+		int[] minimums = new int[numGroups];
+		
+		for (int g = 0; g < numGroups; ++g) {
+			Course course = groupCourses.get(g);
+			int capacity = evaluator.hasCapacityConstraint(course) ? groups.get(g).getCapacity() : numStudents;
+			
+			// Same tolerance CPLEX gives the "sum of all assigned students >= minimum" row
+			minimums[g] = withMinimums ? Math.min(capacity, (int) Math.ceil(evaluator.getMinNumStudentsAssigned(course, groups.get(g)) - 1e-6)) : 0;
+			
+			if (minimums[g] > 0) addArc(1 + numStudents + g, sink, minimums[g], 0, 0);
+			if (capacity > minimums[g]) addArc(1 + numStudents + g, sink, capacity - minimums[g], 1, 0);
+		}
+		
+		addArc(unassigned, sink, numStudents, 0, 0);
+		
+		// Every student sends one unit (possibly to nobody) along the cheapest path, using Dijkstra with node potentials to keep the reduced costs non-negative
+		long[] potentialPenalty = new long[arcs.size()];
+		double[] potentialCost = new double[arcs.size()];
+		
+		for (int unit = 0; unit < numStudents; ++unit) {
+			long[] distancePenalty = new long[arcs.size()];
+			double[] distanceCost = new double[arcs.size()];
+			Arc[] previousArc = new Arc[arcs.size()];
+			int[] previousNode = new int[arcs.size()];
+			boolean[] done = new boolean[arcs.size()];
+			
+			Arrays.fill(distancePenalty, Long.MAX_VALUE);
+			distancePenalty[source] = 0;
+			
+			PriorityQueue<Object[]> queue = new PriorityQueue<>((a, b) -> compare((Long) a[1], (Double) a[2], (Long) b[1], (Double) b[2]));
+			queue.add(new Object[] {source, 0L, 0.});
+			
+			while (!queue.isEmpty()) {
+				int node = (Integer) queue.poll()[0];
+				if (done[node]) continue;
+				
+				done[node] = true;
+				if (node == sink) break;
+				
+				for (Arc arc : arcs.get(node)) {
+					if (arc.capacity == 0 || done[arc.to]) continue;
+					
+					long penalty = distancePenalty[node] + arc.penalty + potentialPenalty[node] - potentialPenalty[arc.to];
+					double cost = distanceCost[node] + arc.cost + potentialCost[node] - potentialCost[arc.to];
+					
+					if (compare(penalty, cost, distancePenalty[arc.to], distanceCost[arc.to]) < 0) {
+						distancePenalty[arc.to] = penalty;
+						distanceCost[arc.to] = cost;
+						previousArc[arc.to] = arc;
+						previousNode[arc.to] = node;
+						queue.add(new Object[] {arc.to, penalty, cost});
+					}
+				}
+			}
+			
+			// Nodes farther than the sink (or not reached) get the sink's distance, which keeps every residual arc's reduced cost non-negative
+			for (int node = 0; node < arcs.size(); ++node) {
+				boolean fartherThanSink = !done[node] || compare(distancePenalty[node], distanceCost[node], distancePenalty[sink], distanceCost[sink]) > 0;
+				
+				potentialPenalty[node] += fartherThanSink ? distancePenalty[sink] : distancePenalty[node];
+				potentialCost[node] += fartherThanSink ? distanceCost[sink] : distanceCost[node];
+			}
+			
+			for (int node = sink; node != source; node = previousNode[node]) {
+				previousArc[node].capacity -= 1;
+				previousArc[node].reverse.capacity += 1;
+			}
+		}
+		
+		for (int g = 0; g < numGroups; ++g) {
+			for (Arc arc : arcs.get(1 + numStudents + g)) {
+				if (arc.to == sink && arc.penalty == 0 && arc.capacity > 0) return null; // Minimum not met
+			}
+		}
+		
+		Map<Student, StudentTimetable> solution = new HashMap<>();
+		profit = 0;
+		
+		for (int i = 0; i < numStudents; ++i) {
+			Student student = students.get(i);
+			Map<Course, Group> courseGroupPairs = new HashMap<>();
+			
+			for (Arc arc : arcs.get(1 + i)) {
+				if (arc.to > numStudents && arc.to <= numStudents + numGroups && arc.capacity == 0 && arc.reverse.capacity > 0) {
+					int g = arc.to - 1 - numStudents;
+					courseGroupPairs.put(groupCourses.get(g), groups.get(g));
+					profit += maxCoefficient - arc.cost;
+				}
+			}
+			
+			solution.put(student, new StudentTimetable(student, courseGroupPairs));
+		}
+		
+		return solution;
+	}
+	
+	private void addArc(int from, int to, int capacity, int penalty, double cost) {
+		Arc arc = new Arc(to, capacity, penalty, cost);
+		Arc reverse = new Arc(from, 0, -penalty, -cost);
+		
+		arc.reverse = reverse;
+		reverse.reverse = arc;
+		
+		arcs.get(from).add(arc);
+		arcs.get(to).add(reverse);
+	}
+	
+	private static int compare(long penalty1, double cost1, long penalty2, double cost2) {
+		if (penalty1 != penalty2) return Long.compare(penalty1, penalty2);
+		if (Math.abs(cost1 - cost2) <= 1e-9 * Math.max(1, Math.abs(cost1))) return 0;
+		
+		return Double.compare(cost1, cost2);
+	}
+}
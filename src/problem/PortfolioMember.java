@@ -0,0 +1,96 @@
+package problem;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ilog.concert.IloException;
+import ilog.concert.IloIntVar;
+import ilog.concert.IloNumVar;
+import ilog.cplex.IloCplex;
+
+// Connects one CPLEX instance of a solver portfolio to the shared incumbent pool: its incumbents are published to the pool,
+// better incumbents found by other members are injected into its search, and it's aborted once the pool says the portfolio is done
+class PortfolioMember {
+	private String name;
+	private IncumbentPool pool;
+	private AssignmentProblem problem;
+	private IloIntVar[] assignmentVars;
+	private List<String[]> variableKeys;
+	private Map<String, Integer> variableIndices;
+	private int lastInjectedVersion;
+	
+	public PortfolioMember(String name, IncumbentPool pool, AssignmentProblem problem, List<IloIntVar> assignmentVars, List<String[]> variableKeys) {
+		this.name = name;
+		this.pool = pool;
+		this.problem = problem;
+		this.assignmentVars = assignmentVars.toArray(new IloIntVar[0]);
+		this.variableKeys = variableKeys;
+		this.variableIndices = new HashMap<>();
+		this.lastInjectedVersion = 0;
+		
+		for (int i = 0; i < variableKeys.size(); ++i) {
+			variableIndices.put(String.join("#", variableKeys.get(i)), i);
+		}
+	}
+	
+	public void use(IloCplex cplex) throws IloException {
+		cplex.use(new SharedIncumbentCallback());
+		cplex.use(new SharedSolutionHeuristic());
+		cplex.use(new StopCallback());
+	}
+	
+	public IloIntVar[] getAssignmentVars() {
+		return assignmentVars;
+	}
+	
+	public List<String[]> toAssignments(double[] values) {
+		List<String[]> assignments = new ArrayList<>();
+		
+		for (int i = 0; i < values.length; ++i) {
+			if (values[i] > .5) assignments.add(variableKeys.get(i));
+		}
+		
+		return assignments;
+	}
+	
+	private class SharedIncumbentCallback extends IloCplex.IncumbentCallback {
+		@Override
+		protected void main() throws IloException {
+			pool.offer(getObjValue(), toAssignments(getValues(assignmentVars)), name);
+		}
+	}
+	
+	private class SharedSolutionHeuristic extends IloCplex.HeuristicCallback {
+		@Override
+		protected void main() throws IloException {
+			int version = pool.getVersion();
+			if (version == lastInjectedVersion) return;
+			
+			lastInjectedVersion = version;
+			
+			double bestObjective = pool.getBestObjective();
+			if (hasIncumbent() && bestObjective <= getIncumbentObjValue() + 1e-9) return; // Nothing better than what this member already has
+			
+			double[] assignmentValues = new double[assignmentVars.length];
+			
+			for (String[] assignment : pool.getBestAssignments()) {
+				Integer index = variableIndices.get(String.join("#", assignment));
+				if (index != null) assignmentValues[index] = 1;
+			}
+			
+			// CPLEX checks the injected solution against this member's own model before accepting it
+			setSolution(problem.getAllVariables(), problem.completeSolution(assignmentVars, assignmentValues));
+		}
+	}
+	
+	private class StopCallback extends IloCplex.MIPInfoCallback {
+		@Override
+		protected void main() throws IloException {
+			pool.updateBound(getBestObjValue());
+			
+			if (pool.shouldStop()) abort();
+		}
+	}
+}
@@ -0,0 +1,84 @@
+package problem;
+
+import java.util.List;
+
+import ilog.concert.IloException;
+import ilog.concert.IloIntVar;
+import ilog.concert.IloNumExpr;
+import ilog.cplex.IloCplex;
+import io.CheckpointLog;
+
+// Samples the incumbent, bound, gap and node count every time the incumbent changes, and otherwise at most once per 'sampleInterval' seconds.
+// New incumbents are also handed over to the checkpoint log, if there is one: CPLEX only keeps one informational callback, and unlike an incumbent
+// callback it doesn't turn dynamic search off
+class ProgressCallback extends IloCplex.MIPInfoCallback {
+	private IloNumExpr[] components;
+	private List<ProgressListener> listeners;
+	private double sampleInterval;
+	private IloIntVar[] checkpointVars;
+	private CheckpointLog checkpointLog;
+	private double lastIncumbent;
+	private double lastSampleTime;
+	
+	public ProgressCallback(IloNumExpr[] components, List<ProgressListener> listeners, double sampleInterval) {
+		this.components = components;
+		this.listeners = listeners;
+		this.sampleInterval = sampleInterval;
+		this.lastIncumbent = Double.NaN;
+		this.lastSampleTime = Double.NEGATIVE_INFINITY;
+	}
+	
+	// Only the variable values are read here, the disk write happens on the log's own thread
+	public void setCheckpointLog(IloIntVar[] checkpointVars, CheckpointLog checkpointLog) {
+		this.checkpointVars = checkpointVars;
+		this.checkpointLog = checkpointLog;
+	}
+	
+	@Override
+	protected synchronized void main() throws IloException {
+		double time = getCplexTime() - getStartTime();
+		boolean hasIncumbent = hasIncumbent();
+		double incumbent = hasIncumbent ? getIncumbentObjValue() : Double.NaN;
+		boolean isNewIncumbent = hasIncumbent && incumbent != lastIncumbent;
+		
+		if (!isNewIncumbent && time - lastSampleTime < sampleInterval) return;
+		
+		double[] componentValues = null;
+		
+		if (isNewIncumbent) {
+			componentValues = new double[components.length];
+			
+			for (int i = 0; i < components.length; ++i) {
+				componentValues[i] = getIncumbentValue(components[i]);
+			}
+			
+			if (checkpointLog != null) checkpointIncumbent(incumbent);
+		}
+		
+		ProgressSample sample = new ProgressSample(time, incumbent, getBestObjValue(), hasIncumbent ? getMIPRelativeGap() : Double.NaN, getNnodes64(), componentValues);
+		
+		lastIncumbent = incumbent;
+		lastSampleTime = time;
+		
+		for (ProgressListener listener : listeners) {
+			listener.progressUpdated(sample);
+		}
+	}
+	
+	private void checkpointIncumbent(double incumbent) throws IloException {
+		double[] values = getIncumbentValues(checkpointVars);
+		int numAssigned = 0;
+		
+		for (double value : values) {
+			if (value > .5) ++numAssigned;
+		}
+		
+		int[] assignedVariables = new int[numAssigned];
+		
+		for (int i = 0, j = 0; i < values.length; ++i) {
+			if (values[i] > .5) assignedVariables[j++] = i;
+		}
+		
+		checkpointLog.append(incumbent, assignedVariables);
+	}
+}
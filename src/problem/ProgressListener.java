@@ -0,0 +1,6 @@
+package problem;
+
+public interface ProgressListener {
+	// Called from CPLEX's threads while the solve is running
+	public void progressUpdated(ProgressSample sample);
+}
@@ -0,0 +1,51 @@
+package problem;
+
+// A snapshot of the solve's progress, taken by ProgressCallback
+public class ProgressSample {
+	public static final String[] COMPONENT_NAMES = {"weightedSumAllAssignments", "weightedSumAllCompleteStudents", "sumAllOccupiedTimeslots", "weightedSumFulfilledPreferences",
+			"sumAllGroupUtilizationSlacks", "sumAllOccupiedPeriodsWithNoPreferenceAssigned", "sumAllUnwantedOccupiedPeriods", "sumAllAssignmentsToUnwantedGroups"};
+	
+	private double time; // Seconds since the solve started
+	private double incumbent; // NaN while there's no incumbent
+	private double bound;
+	private double gap; // NaN while there's no incumbent
+	private long numNodes;
+	private double[] components; // Values of the objective components in a new incumbent (in the same order as COMPONENT_NAMES), null if the incumbent didn't change
+	
+	public ProgressSample(double time, double incumbent, double bound, double gap, long numNodes, double[] components) {
+		this.time = time;
+		this.incumbent = incumbent;
+		this.bound = bound;
+		this.gap = gap;
+		this.numNodes = numNodes;
+		this.components = components;
+	}
+	
+	public double getTime() {
+		return time;
+	}
+	
+	public double getIncumbent() {
+		return incumbent;
+	}
+	
+	public double getBound() {
+		return bound;
+	}
+	
+	public double getGap() {
+		return gap;
+	}
+	
+	public long getNumNodes() {
+		return numNodes;
+	}
+	
+	public double[] getComponents() {
+		return components;
+	}
+	
+	public boolean isNewIncumbent() {
+		return components != null;
+	}
+}
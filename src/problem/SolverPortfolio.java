@@ -0,0 +1,58 @@
+package problem;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Runs several differently configured solvers at once on the same problem. They share their incumbents and bounds through an IncumbentPool
+// and all of them stop as soon as the pool reaches the target gap or the time limit
+public class SolverPortfolio {
+	private IncumbentPool pool;
+	private List<String> memberNames;
+	private List<Callable<Void>> members;
+	
+	public SolverPortfolio(double targetGap, double timeLimit) {
+		this.pool = new IncumbentPool(targetGap, timeLimit);
+		this.memberNames = new ArrayList<>();
+		this.members = new ArrayList<>();
+	}
+	
+	public IncumbentPool getPool() {
+		return pool;
+	}
+	
+	public void addMember(String name, Callable<Void> member) {
+		memberNames.add(name);
+		members.add(member);
+	}
+	
+	public void run() throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(members.size());
+		List<Future<Void>> results = new ArrayList<>();
+		
+		for (Callable<Void> member : members) {
+			results.add(executor.submit(member));
+		}
+		
+		executor.shutdown();
+		
+		for (int i = 0; i < results.size(); ++i) {
+			try {
+				results.get(i).get();
+			} catch (ExecutionException e) {
+				System.out.println("Portfolio member " + memberNames.get(i) + " failed:");
+				e.getCause().printStackTrace();
+			}
+		}
+		
+		pool.stop();
+		
+		System.out.println();
+		System.out.println("Portfolio finished in " + pool.getElapsedTime() + " s. Best solution: " + pool.getBestObjective() + " (from " + pool.getBestSource()
+				+ "), best bound: " + pool.getBestBound() + ", gap: " + pool.getGap() * 100 + "%");
+	}
+}
@@ -0,0 +1,202 @@
+package problem;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Properties;
+
+import ilog.concert.IloException;
+import ilog.cplex.IloCplex;
+
+// CPLEX resource settings (threads, memory, node files, parallel mode) and stopping criteria, settable from the UI, the command line or a properties file
+public class SolverSettings {
+	private int threads; // 0 lets CPLEX use every core
+	private boolean deterministic; // Deterministic parallel mode gives reproducible runs, opportunistic is usually faster
+	private int workingMemory; // MB of working memory before the node files start being written to disk (0 keeps CPLEX's default)
+	private int treeMemoryLimit; // MB of branch and bound tree (in memory and on disk) after which the solve stops (0 for no limit)
+	private String workDirectory; // Where the compressed node files are written (null keeps CPLEX's default)
+	private double mipGap;
+	private double timeLimit;
+	private double heuristicTimeLimit; // Seconds the Lagrangian heuristic gets within the portfolio's time limit
+	
+	public SolverSettings() {
+		this.threads = 0;
+		this.deterministic = true;
+		this.workingMemory = 0;
+		this.treeMemoryLimit = 0;
+		this.workDirectory = null;
+		this.mipGap = 1e-4;
+		this.timeLimit = 300;
+		this.heuristicTimeLimit = 60;
+	}
+	
+	public SolverSettings copy() {
+		SolverSettings copy = new SolverSettings();
+		
+		copy.threads = threads;
+		copy.deterministic = deterministic;
+		copy.workingMemory = workingMemory;
+		copy.treeMemoryLimit = treeMemoryLimit;
+		copy.workDirectory = workDirectory;
+		copy.mipGap = mipGap;
+		copy.timeLimit = timeLimit;
+		copy.heuristicTimeLimit = heuristicTimeLimit;
+		
+		return copy;
+	}
+	
+	public int getThreads() {
+		return threads;
+	}
+	
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+	
+	public boolean getDeterministic() {
+		return deterministic;
+	}
+	
+	public void setDeterministic(boolean deterministic) {
+		this.deterministic = deterministic;
+	}
+	
+	public int getWorkingMemory() {
+		return workingMemory;
+	}
+	
+	public void setWorkingMemory(int workingMemory) {
+		this.workingMemory = workingMemory;
+	}
+	
+	public int getTreeMemoryLimit() {
+		return treeMemoryLimit;
+	}
+	
+	public void setTreeMemoryLimit(int treeMemoryLimit) {
+		this.treeMemoryLimit = treeMemoryLimit;
+	}
+	
+	public String getWorkDirectory() {
+		return workDirectory;
+	}
+	
+	public void setWorkDirectory(String workDirectory) {
+		this.workDirectory = (workDirectory == null || workDirectory.isEmpty()) ? null : workDirectory;
+	}
+	
+	public double getMipGap() {
+		return mipGap;
+	}
+	
+	public void setMipGap(double mipGap) {
+		this.mipGap = mipGap;
+	}
+	
+	public double getTimeLimit() {
+		return timeLimit;
+	}
+	
+	public void setTimeLimit(double timeLimit) {
+		this.timeLimit = timeLimit;
+	}
+	
+	public double getHeuristicTimeLimit() {
+		return heuristicTimeLimit;
+	}
+	
+	public void setHeuristicTimeLimit(double heuristicTimeLimit) {
+		this.heuristicTimeLimit = heuristicTimeLimit;
+	}
+	
+	public void apply(IloCplex cplex) throws IloException {
+		cplex.setParam(IloCplex.IntParam.Threads, threads);
+		cplex.setParam(IloCplex.IntParam.ParallelMode, deterministic ? 1 : -1);
+		cplex.setParam(IloCplex.IntParam.NodeFileInd, 3); // Node files are written to disk compressed, instead of only when memory runs out
+		cplex.setParam(IloCplex.DoubleParam.EpGap, mipGap);
+		cplex.setParam(IloCplex.DoubleParam.TiLim, timeLimit); // Set timeout in seconds
+		
+		if (workingMemory > 0) cplex.setParam(IloCplex.DoubleParam.WorkMem, workingMemory);
+		if (treeMemoryLimit > 0) cplex.setParam(IloCplex.DoubleParam.TreLim, treeMemoryLimit);
+		if (workDirectory != null) cplex.setParam(IloCplex.StringParam.WorkDir, workDirectory);
+	}
+	
+	// Keys are the same as the command line options without the leading "--" (e.g. "threads=8")
+	public void load(String filename) throws IOException {
+		Properties properties = new Properties();
+		
+		try (InputStream input = new FileInputStream(filename)) {
+			properties.load(input);
+		}
+		
+		load(properties);
+	}
+	
+	// Unknown keys are ignored, so the settings can come with other properties
+	public void load(Properties properties) {
+		for (String key : properties.stringPropertyNames()) {
+			set(key, properties.getProperty(key).trim());
+		}
+	}
+	
+	// Options: --config=<file> --threads=<n> --deterministic=<true|false> --working-memory=<MB> --tree-memory-limit=<MB> --work-directory=<dir>
+	// --mip-gap=<gap> --time-limit=<s> --heuristic-time-limit=<s>. The config file is read first, so the other options override it
+	public void parseArguments(List<String> arguments) throws IOException {
+		for (String argument : arguments) {
+			if (argument.startsWith("--config=")) load(argument.substring("--config=".length()));
+		}
+		
+		for (String argument : arguments) {
+			int separator = argument.indexOf('=');
+			
+			if (!argument.startsWith("--") || separator < 0 || argument.startsWith("--config=")) continue;
+			
+			set(argument.substring(2, separator), argument.substring(separator + 1));
+		}
+	}
+	
+	private void set(String key, String value) {
+		switch (key) {
+		case "threads":
+			threads = Integer.parseInt(value);
+			break;
+		case "deterministic":
+			deterministic = Boolean.parseBoolean(value);
+			break;
+		case "working-memory":
+			workingMemory = Integer.parseInt(value);
+			break;
+		case "tree-memory-limit":
+			treeMemoryLimit = Integer.parseInt(value);
+			break;
+		case "work-directory":
+			setWorkDirectory(value);
+			break;
+		case "mip-gap":
+			mipGap = Double.parseDouble(value);
+			break;
+		case "time-limit":
+			timeLimit = Double.parseDouble(value);
+			break;
+		case "heuristic-time-limit":
+			heuristicTimeLimit = Double.parseDouble(value);
+			break;
+		}
+	}
+	
+	public String buildReport() {
+		String output = "";
+		
+		output += "Threads: " + (threads == 0 ? "todos os núcleos (" + Runtime.getRuntime().availableProcessors() + ")" : threads);
+		output += "\r\n" + "Paralelismo: " + (deterministic ? "determinístico" : "oportunista");
+		output += "\r\n" + "Memória de trabalho: " + (workingMemory == 0 ? "predefinida" : workingMemory + " MB");
+		output += "\r\n" + "Limite de memória da árvore: " + (treeMemoryLimit == 0 ? "nenhum" : treeMemoryLimit + " MB");
+		output += "\r\n" + "Diretório de trabalho: " + (workDirectory == null ? "predefinido" : workDirectory);
+		output += "\r\n" + "Gap relativo: " + mipGap;
+		output += "\r\n" + "Tempo limite: " + timeLimit + " s";
+		output += "\r\n" + "Tempo limite da heurística: " + heuristicTimeLimit + " s";
+		
+		return output;
+	}
+}
@@ -0,0 +1,71 @@
+package problem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ilog.concert.IloConstraint;
+import ilog.concert.IloIntVar;
+import ilog.concert.IloLinearIntExpr;
+
+// What the top-K solve needs to model more of a student's preferences after the model is built: the sums the preference rows are made of,
+// and every occupied period row (they depend on the sum of fulfilled preferences, so they're replaced when it changes)
+class StudentPreferenceRows {
+	private IloLinearIntExpr sumAllAssignments;
+	private IloLinearIntExpr sumFulfilledPreferences;
+	private int numModelledPreferences; // The first ones in the student's preference list
+	private List<IloLinearIntExpr> periodAssignments;
+	private List<IloIntVar> occupiedPeriods;
+	private List<IloConstraint> periodConstraints;
+	
+	public StudentPreferenceRows(IloLinearIntExpr sumAllAssignments, IloLinearIntExpr sumFulfilledPreferences, int numModelledPreferences) {
+		this.sumAllAssignments = sumAllAssignments;
+		this.sumFulfilledPreferences = sumFulfilledPreferences;
+		this.numModelledPreferences = numModelledPreferences;
+		this.periodAssignments = new ArrayList<>();
+		this.occupiedPeriods = new ArrayList<>();
+		this.periodConstraints = new ArrayList<>();
+	}
+	
+	public IloLinearIntExpr getSumAllAssignments() {
+		return sumAllAssignments;
+	}
+	
+	public IloLinearIntExpr getSumFulfilledPreferences() {
+		return sumFulfilledPreferences;
+	}
+	
+	public int getNumModelledPreferences() {
+		return numModelledPreferences;
+	}
+	
+	public void setNumModelledPreferences(int numModelledPreferences) {
+		this.numModelledPreferences = numModelledPreferences;
+	}
+	
+	public void addPeriod(IloLinearIntExpr sumAssignmentsThisPeriod, IloIntVar occupiedPeriod, IloConstraint periodConstraint) {
+		periodAssignments.add(sumAssignmentsThisPeriod);
+		occupiedPeriods.add(occupiedPeriod);
+		periodConstraints.add(periodConstraint);
+	}
+	
+	// Only the periods that can be occupied, in no particular numbering
+	public int getNumPeriods() {
+		return periodConstraints.size();
+	}
+	
+	public IloLinearIntExpr getPeriodAssignments(int index) {
+		return periodAssignments.get(index);
+	}
+	
+	public IloIntVar getOccupiedPeriod(int index) {
+		return occupiedPeriods.get(index);
+	}
+	
+	public IloConstraint getPeriodConstraint(int index) {
+		return periodConstraints.get(index);
+	}
+	
+	public void setPeriodConstraint(int index, IloConstraint periodConstraint) {
+		periodConstraints.set(index, periodConstraint);
+	}
+}
@@ -0,0 +1,206 @@
+package problem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ilog.concert.IloException;
+import ilog.concert.IloIntVar;
+import ilog.concert.IloLinearIntExpr;
+import ilog.cplex.IloCplex;
+import model.Course;
+import model.Group;
+import model.Student;
+import model.StudentPreference;
+
+// Finds students and groups that the model can't tell apart, so that CPLEX doesn't have to explore every permutation of them
+public class SymmetryAnalyzer {
+	private List<Course> courses;
+	private List<Student> students;
+	private List<List<Student>> preferenceClasses; // Students with the same enrollments and preference lists (grades may differ)
+	private List<List<Student>> studentClasses; // Students with the same enrollments, preference lists and grade, which are fully interchangeable
+	private Map<Course, List<List<Group>>> groupClasses; // Groups of the same course with the same capacity and schedule that no student asked for
+	private int numSymmetryBreakingConstraints;
+	
+	public SymmetryAnalyzer(Map<String, Course> courses, Map<String, Student> students) {
+		this.courses = new ArrayList<>(courses.values());
+		this.students = new ArrayList<>(students.values());
+		this.preferenceClasses = new ArrayList<>();
+		this.studentClasses = new ArrayList<>();
+		this.groupClasses = new LinkedHashMap<>();
+		
+		this.courses.sort(Comparator.comparing(Course::getCode));
+		this.students.sort(Comparator.comparing(Student::getCode));
+	}
+	
+	public void analyze() {
+		Map<String, List<Student>> studentsByPreferences = new LinkedHashMap<>();
+		Map<String, List<Student>> studentsByPreferencesAndGrade = new LinkedHashMap<>();
+		Set<String> wantedCourseGroups = new HashSet<>();
+		
+		for (Student student : students) {
+			String preferencesKey = buildPreferencesKey(student, wantedCourseGroups);
+			
+			studentsByPreferences.computeIfAbsent(preferencesKey, key -> new ArrayList<>()).add(student);
+			studentsByPreferencesAndGrade.computeIfAbsent(preferencesKey + "#" + student.getAvgGrade(), key -> new ArrayList<>()).add(student);
+		}
+		
+		for (List<Student> preferenceClass : studentsByPreferences.values()) {
+			if (preferenceClass.size() > 1) preferenceClasses.add(preferenceClass);
+		}
+		
+		for (List<Student> studentClass : studentsByPreferencesAndGrade.values()) {
+			if (studentClass.size() > 1) studentClasses.add(studentClass);
+		}
+		
+		for (Course course : courses) {
+			if (course.getNumEnrollments() == 0) continue;
+			
+			Map<String, List<Group>> groupsBySchedule = new LinkedHashMap<>();
+			List<Group> groups = new ArrayList<>(course.getGroups().values());
+			groups.sort(Comparator.comparing(Group::getCode));
+			
+			for (Group group : groups) {
+				if (wantedCourseGroups.contains(course.getCode() + "-" + group.getCode())) continue; // Preferences tell this group apart from the others
+				
+				String groupKey = group.getCapacity() + "#" + group.getMinUtilization() + "#" + group.getOccupiedTimeslots() + "#" + group.getOccupiedPracticalTimeslots();
+				groupsBySchedule.computeIfAbsent(groupKey, key -> new ArrayList<>()).add(group);
+			}
+			
+			for (List<Group> groupClass : groupsBySchedule.values()) {
+				if (groupClass.size() > 1) groupClasses.computeIfAbsent(course, key -> new ArrayList<>()).add(groupClass);
+			}
+		}
+	}
+	
+	private String buildPreferencesKey(Student student, Set<String> wantedCourseGroups) {
+		List<String> enrolledCourses = new ArrayList<>();
+		
+		for (Course course : student.getEnrolledCourses()) {
+			enrolledCourses.add(course.getCode());
+		}
+		
+		Collections.sort(enrolledCourses);
+		
+		StringBuilder key = new StringBuilder(String.join(",", enrolledCourses));
+		
+		for (StudentPreference preference : student.getPreferences()) {
+			List<String> courseGroupPairs = new ArrayList<>();
+			
+			for (Map.Entry<Course, Group> courseGroupPair : preference.getCourseGroupPairs().entrySet()) {
+				String courseGroup = courseGroupPair.getKey().getCode() + "-" + courseGroupPair.getValue().getCode();
+				
+				courseGroupPairs.add(courseGroup);
+				wantedCourseGroups.add(courseGroup);
+			}
+			
+			Collections.sort(courseGroupPairs);
+			key.append("|").append(String.join(",", courseGroupPairs));
+		}
+		
+		return key.toString();
+	}
+	
+	// Must be called after the assignment variables have been created
+	public void addSymmetryBreakingConstraints(IloCplex cplex) throws IloException {
+		numSymmetryBreakingConstraints = 0;
+		
+		// Interchangeable students are ordered by the index of their group in their first course (0 if unassigned), so only one of their permutations is feasible
+		for (List<Student> studentClass : studentClasses) {
+			List<Course> enrolledCourses = new ArrayList<>(studentClass.get(0).getEnrolledCourses());
+			enrolledCourses.sort(Comparator.comparing(Course::getCode));
+			
+			if (enrolledCourses.isEmpty()) continue; // E.g. students whose every input row had unknown codes: nothing to assign, so nothing to order
+			
+			Course firstCourse = enrolledCourses.get(0);
+			List<Group> groups = new ArrayList<>(firstCourse.getGroups().values());
+			groups.sort(Comparator.comparing(Group::getCode));
+			
+			for (int i = 0; i + 1 < studentClass.size(); ++i) {
+				IloLinearIntExpr groupIndexDifference = cplex.linearIntExpr();
+				
+				for (int g = 0; g < groups.size(); ++g) {
+					IloIntVar thisStudentAssignment = studentClass.get(i).getCourseGroupAssignments().get(firstCourse).get(groups.get(g));
+					IloIntVar nextStudentAssignment = studentClass.get(i + 1).getCourseGroupAssignments().get(firstCourse).get(groups.get(g));
+					
+					groupIndexDifference.addTerm(g + 1, thisStudentAssignment);
+					groupIndexDifference.addTerm(-(g + 1), nextStudentAssignment);
+				}
+				
+				cplex.addLe(groupIndexDifference, 0); // CONSTRAINT: this student's group index <= next student's group index
+				++numSymmetryBreakingConstraints;
+			}
+		}
+		
+		// Interchangeable groups are ordered by their number of assigned students
+		for (List<List<Group>> courseGroupClasses : groupClasses.values()) {
+			for (List<Group> groupClass : courseGroupClasses) {
+				for (int i = 0; i + 1 < groupClass.size(); ++i) {
+					IloLinearIntExpr thisGroupAssignedStudents = groupClass.get(i).getSumAllAssignedStudents();
+					IloLinearIntExpr nextGroupAssignedStudents = groupClass.get(i + 1).getSumAllAssignedStudents();
+					
+					if (thisGroupAssignedStudents == null || nextGroupAssignedStudents == null) continue;
+					
+					cplex.addGe(cplex.diff(thisGroupAssignedStudents, nextGroupAssignedStudents), 0); // CONSTRAINT: this group's students >= next group's students
+					++numSymmetryBreakingConstraints;
+				}
+			}
+		}
+	}
+	
+	public String buildReport(double solveTime) {
+		int numInterchangeableStudents = 0, largestStudentClass = 0, numPreferenceClassStudents = 0, numInterchangeableGroups = 0, numGroupClasses = 0;
+		double log10SymmetricSolutions = 0; // log10 of the number of equivalent copies of each solution (product of the factorials of every class size)
+		
+		for (List<Student> studentClass : studentClasses) {
+			numInterchangeableStudents += studentClass.size();
+			largestStudentClass = Math.max(largestStudentClass, studentClass.size());
+			log10SymmetricSolutions += log10Factorial(studentClass.size());
+		}
+		
+		for (List<Student> preferenceClass : preferenceClasses) {
+			numPreferenceClassStudents += preferenceClass.size();
+		}
+		
+		for (List<List<Group>> courseGroupClasses : groupClasses.values()) {
+			for (List<Group> groupClass : courseGroupClasses) {
+				++numGroupClasses;
+				numInterchangeableGroups += groupClass.size();
+				log10SymmetricSolutions += log10Factorial(groupClass.size());
+			}
+		}
+		
+		String output = "";
+		
+		output += "Estudantes: " + students.size();
+		output += "\r\n" + "Estudantes com inscrições e preferências iguais às de outro estudante: " + numPreferenceClassStudents + " (" + preferenceClasses.size() + " classes)";
+		output += "\r\n" + "Estudantes intermutáveis (também com a mesma média): " + numInterchangeableStudents + " (" + studentClasses.size() + " classes, a maior com " + largestStudentClass + ")";
+		output += "\r\n" + "\r\n" + "Turmas intermutáveis (mesma capacidade e horário, não pedidas por nenhum estudante): " + numInterchangeableGroups + " (" + numGroupClasses + " classes)";
+		output += "\r\n" + "\r\n" + "Soluções equivalentes por solução: 10^" + String.format("%.2f", log10SymmetricSolutions);
+		output += "\r\n" + "Restrições de quebra de simetria adicionadas: " + numSymmetryBreakingConstraints;
+		output += "\r\n" + "Tempo de resolução: " + solveTime + " s";
+		
+		for (Map.Entry<Course, List<List<Group>>> courseGroupClasses : groupClasses.entrySet()) {
+			for (List<Group> groupClass : courseGroupClasses.getValue()) {
+				output += "\r\n" + courseGroupClasses.getKey().getCode() + ": " + groupClass;
+			}
+		}
+		
+		return output;
+	}
+	
+	private static double log10Factorial(int n) {
+		double value = 0;
+		
+		for (int i = 2; i <= n; ++i) {
+			value += Math.log10(i);
+		}
+		
+		return value;
+	}
+}
@@ -0,0 +1,204 @@
+package problem;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToDoubleFunction;
+
+import model.Course;
+import model.Group;
+import model.Student;
+import model.StudentPreference;
+import model.StudentTimetable;
+
+// Enumerates the clash-free timetables a student can be assigned to (at most 1 group per course, at most 1 concurrent practical class)
+public class TimetableEnumerator {
+	// What findBestTimetable found, and whether it got to search every timetable (if it didn't, a better one may have been missed)
+	public static class PricingResult {
+		private StudentTimetable timetable; // Null if no timetable beats the minimum reduced value
+		private double reducedValue;
+		private boolean complete;
+		
+		public StudentTimetable getTimetable() {
+			return timetable;
+		}
+		
+		public double getReducedValue() {
+			return reducedValue;
+		}
+		
+		public boolean isComplete() {
+			return complete;
+		}
+	}
+	
+	private int maxTimetablesPerStudent;
+	
+	public TimetableEnumerator(int maxTimetablesPerStudent) {
+		this.maxTimetablesPerStudent = maxTimetablesPerStudent;
+	}
+	
+	// Timetables built only from the course-group pairs the student included in one of their preferences, starting with the preferences themselves
+	public List<StudentTimetable> enumerateWantedTimetables(Student student) {
+		Map<Map<Course, Group>, StudentTimetable> timetables = new LinkedHashMap<>();
+		
+		Map<Course, Group> noAssignments = new HashMap<>(); // Not assigning the student to anything is always feasible
+		timetables.put(noAssignments, new StudentTimetable(student, noAssignments));
+		
+		for (StudentPreference preference : student.getPreferences()) {
+			Map<Course, Group> courseGroupPairs = preference.getCourseGroupPairs();
+			
+			if (!hasPracticalClash(courseGroupPairs.values())) {
+				timetables.put(courseGroupPairs, new StudentTimetable(student, new HashMap<>(courseGroupPairs)));
+			}
+		}
+		
+		List<Course> enrolledCourses = new ArrayList<>(student.getEnrolledCourses());
+		enrolledCourses.sort(Comparator.comparing(Course::getCode));
+		
+		enumerate(student, enrolledCourses, 0, new HashMap<>(), new BitSet(), timetables);
+		
+		return new ArrayList<>(timetables.values());
+	}
+	
+	private void enumerate(Student student, List<Course> enrolledCourses, int courseIndex, Map<Course, Group> currentCourseGroupPairs, BitSet currentPracticalTimeslots,
+			Map<Map<Course, Group>, StudentTimetable> timetables) {
+		if (timetables.size() >= maxTimetablesPerStudent) return;
+		
+		if (courseIndex == enrolledCourses.size()) {
+			if (!timetables.containsKey(currentCourseGroupPairs)) {
+				Map<Course, Group> courseGroupPairs = new HashMap<>(currentCourseGroupPairs);
+				timetables.put(courseGroupPairs, new StudentTimetable(student, courseGroupPairs));
+			}
+			
+			return;
+		}
+		
+		Course course = enrolledCourses.get(courseIndex);
+		
+		for (Group group : student.getWantedCourseGroups(course)) {
+			if (group.getOccupiedPracticalTimeslots().intersects(currentPracticalTimeslots)) continue; // A student can have at most 1 concurrent practical class
+			
+			BitSet practicalTimeslots = (BitSet) currentPracticalTimeslots.clone();
+			practicalTimeslots.or(group.getOccupiedPracticalTimeslots());
+			
+			currentCourseGroupPairs.put(course, group);
+			enumerate(student, enrolledCourses, courseIndex + 1, currentCourseGroupPairs, practicalTimeslots, timetables);
+			currentCourseGroupPairs.remove(course);
+		}
+		
+		enumerate(student, enrolledCourses, courseIndex + 1, currentCourseGroupPairs, currentPracticalTimeslots, timetables); // Leave this course unassigned
+	}
+	
+	// Branch and bound over every clash-free timetable (wanted groups or not), looking for the one with the highest value minus the prices of its groups.
+	// The result has no timetable if none beats 'minReducedValue' within the node budget, and is only complete if the budget wasn't used up
+	public PricingResult findBestTimetable(Student student, TimetableEvaluator evaluator, ToDoubleFunction<Group> groupPrices, double minReducedValue) {
+		Pricing pricing = new Pricing();
+		pricing.student = student;
+		pricing.evaluator = evaluator;
+		pricing.groupPrices = groupPrices;
+		pricing.courses = new ArrayList<>(student.getEnrolledCourses());
+		pricing.courses.sort(Comparator.comparing(Course::getCode));
+		pricing.courseGroups = new ArrayList<>();
+		pricing.remainingBounds = new double[pricing.courses.size() + 1];
+		pricing.bestReducedValue = minReducedValue;
+		
+		double[] courseBounds = new double[pricing.courses.size()];
+		
+		for (int c = 0; c < pricing.courses.size(); ++c) {
+			Course course = pricing.courses.get(c);
+			List<Group> groups = new ArrayList<>(course.getGroups().values());
+			Map<Group, Double> bounds = new IdentityHashMap<>();
+			
+			for (Group group : groups) {
+				bounds.put(group, evaluator.calculateAssignmentUpperBound(student, course, group) - groupPrices.applyAsDouble(group));
+			}
+			
+			groups.sort((g1, g2) -> Double.compare(bounds.get(g2), bounds.get(g1))); // Most promising groups first
+			pricing.courseGroups.add(groups);
+			
+			courseBounds[c] = groups.isEmpty() ? 0 : Math.max(0, bounds.get(groups.get(0)));
+		}
+		
+		for (int c = pricing.courses.size() - 1; c >= 0; --c) {
+			pricing.remainingBounds[c] = pricing.remainingBounds[c + 1] + courseBounds[c];
+		}
+		
+		pricing.search(0, new HashMap<>(), new BitSet(), 0, evaluator.calculateTimetableBonusUpperBound(student));
+		
+		PricingResult result = new PricingResult();
+		result.timetable = pricing.best;
+		result.reducedValue = pricing.bestReducedValue;
+		result.complete = pricing.numNodes <= maxTimetablesPerStudent;
+		
+		return result;
+	}
+	
+	private class Pricing {
+		private Student student;
+		private TimetableEvaluator evaluator;
+		private ToDoubleFunction<Group> groupPrices;
+		private List<Course> courses;
+		private List<List<Group>> courseGroups;
+		private double[] remainingBounds; // Upper bound on what courses from index N onwards can still add
+		private double bestReducedValue;
+		private StudentTimetable best;
+		private int numNodes;
+		
+		private void search(int courseIndex, Map<Course, Group> currentCourseGroupPairs, BitSet currentPracticalTimeslots, double currentBound, double bonusBound) {
+			if (++numNodes > maxTimetablesPerStudent) return;
+			if (currentBound + remainingBounds[courseIndex] + bonusBound <= bestReducedValue) return; // Can't beat the best timetable found so far
+			
+			if (courseIndex == courses.size()) {
+				StudentTimetable timetable = new StudentTimetable(student, new HashMap<>(currentCourseGroupPairs));
+				double reducedValue = evaluator.evaluate(timetable);
+				
+				for (Group group : currentCourseGroupPairs.values()) {
+					reducedValue -= groupPrices.applyAsDouble(group);
+				}
+				
+				if (reducedValue > bestReducedValue) {
+					bestReducedValue = reducedValue;
+					best = timetable;
+				}
+				
+				return;
+			}
+			
+			Course course = courses.get(courseIndex);
+			
+			for (Group group : courseGroups.get(courseIndex)) {
+				if (group.getOccupiedPracticalTimeslots().intersects(currentPracticalTimeslots)) continue; // A student can have at most 1 concurrent practical class
+				
+				BitSet practicalTimeslots = (BitSet) currentPracticalTimeslots.clone();
+				practicalTimeslots.or(group.getOccupiedPracticalTimeslots());
+				
+				double groupBound = evaluator.calculateAssignmentUpperBound(student, course, group) - groupPrices.applyAsDouble(group);
+				
+				currentCourseGroupPairs.put(course, group);
+				search(courseIndex + 1, currentCourseGroupPairs, practicalTimeslots, currentBound + groupBound, bonusBound);
+				currentCourseGroupPairs.remove(course);
+			}
+			
+			search(courseIndex + 1, currentCourseGroupPairs, currentPracticalTimeslots, currentBound, bonusBound); // Leave this course unassigned
+		}
+	}
+	
+	public static boolean hasPracticalClash(Collection<Group> groups) {
+		BitSet practicalTimeslots = new BitSet();
+		
+		for (Group group : groups) {
+			if (group.getOccupiedPracticalTimeslots().intersects(practicalTimeslots)) return true;
+			
+			practicalTimeslots.or(group.getOccupiedPracticalTimeslots());
+		}
+		
+		return false;
+	}
+}
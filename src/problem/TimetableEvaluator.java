@@ -0,0 +1,249 @@
+package problem;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import model.Course;
+import model.Group;
+import model.Student;
+import model.StudentPreference;
+import model.StudentTimetable;
+import problem.AssignmentProblem.PreferenceWeightingMode;
+
+// Evaluates complete student timetables with the same objective terms and normalizers used by AssignmentProblem, without going through CPLEX
+public class TimetableEvaluator {
+	private Map<String, Course> courses;
+	private Map<String, Student> students;
+	private boolean isMandatoryAssignment;
+	private PreferenceWeightingMode preferenceWeightingMode;
+	private GradeWeighting gradeWeighting;
+	private float weightMaximizeSumAllAssignments, weightMaximizeCompleteStudents, weightMaximizeOccupiedTimeslots, weightMaximizeFulfilledPreferences,
+	weightMinimizeGroupUtilizationSlacks, weightMinimizeOccupiedPeriodsWithNoPreferenceAssigned, weightMinimizeUnwantedOccupiedPeriods,
+	weightMinimizeAssignmentsToUnwantedGroups;
+	
+	private float sumEnrollmentsTimesAvgGrade, sumAvgGrades, sumAvgPow, sumTargetNumStudentsAssigned;
+	private int sumEnrollments, targetNumOccupiedTimeslots;
+	private Map<Group, Float> targetNumStudentsAssigned; // Group -> target number of students for the group balance soft constraint (mandatory assignment only)
+	
+	public TimetableEvaluator(Map<String, Course> courses, Map<String, Student> students, boolean isMandatoryAssignment, PreferenceWeightingMode preferenceWeightingMode, boolean scaledObjective,
+			float weightMaximizeSumAllAssignments, float weightMaximizeCompleteStudents, float weightMaximizeOccupiedTimeslots, float weightMaximizeFulfilledPreferences,
+			float weightMinimizeGroupUtilizationSlacks, float weightMinimizeOccupiedPeriodsWithNoPreferenceAssigned, float weightMinimizeUnwantedOccupiedPeriods,
+			float weightMinimizeAssignmentsToUnwantedGroups) {
+		this.courses = courses;
+		this.students = students;
+		this.isMandatoryAssignment = isMandatoryAssignment;
+		this.preferenceWeightingMode = preferenceWeightingMode;
+		this.gradeWeighting = new GradeWeighting(students.values(), scaledObjective);
+		this.weightMaximizeSumAllAssignments = weightMaximizeSumAllAssignments;
+		this.weightMaximizeCompleteStudents = weightMaximizeCompleteStudents;
+		this.weightMaximizeOccupiedTimeslots = weightMaximizeOccupiedTimeslots;
+		this.weightMaximizeFulfilledPreferences = weightMaximizeFulfilledPreferences;
+		this.weightMinimizeGroupUtilizationSlacks = weightMinimizeGroupUtilizationSlacks;
+		this.weightMinimizeOccupiedPeriodsWithNoPreferenceAssigned = weightMinimizeOccupiedPeriodsWithNoPreferenceAssigned;
+		this.weightMinimizeUnwantedOccupiedPeriods = weightMinimizeUnwantedOccupiedPeriods;
+		this.weightMinimizeAssignmentsToUnwantedGroups = weightMinimizeAssignmentsToUnwantedGroups;
+		this.targetNumStudentsAssigned = new IdentityHashMap<>();
+		
+		calculateNormalizers();
+	}
+	
+	private void calculateNormalizers() {
+		for (Student student : students.values()) {
+			int studentEnrollments = student.getEnrolledCourses().size();
+			float studentAvgGrade = student.getAvgGrade();
+			
+			sumEnrollmentsTimesAvgGrade += studentEnrollments * studentAvgGrade;
+			sumAvgGrades += studentAvgGrade;
+			
+			if (preferenceWeightingMode == PreferenceWeightingMode.EXPONENT) {
+				sumAvgPow += gradeWeighting.weigh(studentAvgGrade) * 10;
+			}
+			
+			sumEnrollments += studentEnrollments;
+			
+			for (Course course : student.getEnrolledCourses()) {
+				targetNumOccupiedTimeslots += course.getWeeklyTimeslots();
+			}
+		}
+		
+		if (!isMandatoryAssignment) return;
+		
+		for (Course course : courses.values()) {
+			int numStudentsEnrolledThisCourse = course.getNumEnrollments();
+			int sumGroupCapacitiesThisCourse = course.calculateSumGroupCapacities();
+			
+			if (numStudentsEnrolledThisCourse == 0) continue; // Some courses might not have enrolled students
+			
+			for (Group group : course.getGroups().values()) {
+				float target = group.getMinUtilization() * group.getCapacity() / sumGroupCapacitiesThisCourse * numStudentsEnrolledThisCourse;
+				
+				targetNumStudentsAssigned.put(group, target);
+				sumTargetNumStudentsAssigned += target;
+			}
+		}
+	}
+	
+	public boolean isMandatoryAssignment() {
+		return isMandatoryAssignment;
+	}
+	
+	// True if the model has a "sum of all assigned students <= group's capacity" constraint for this course's groups
+	public boolean hasCapacityConstraint(Course course) {
+		if (course.getNumEnrollments() == 0) return false;
+		
+		return isMandatoryAssignment ? course.getMandatory() : !course.getMandatory();
+	}
+	
+	// Hard lower bound on the number of students assigned to this group (only used when assigning optional courses)
+	public float getMinNumStudentsAssigned(Course course, Group group) {
+		if (isMandatoryAssignment || course.getMandatory() || course.getNumEnrollments() == 0) return 0;
+		
+		return .1f * group.getCapacity();
+	}
+	
+	// Target number of students for the group balance soft constraint (only used when assigning mandatory courses)
+	public float getTargetNumStudentsAssigned(Group group) {
+		Float target = targetNumStudentsAssigned.get(group);
+		
+		return (target != null) ? target : 0;
+	}
+	
+	// Objective coefficient of each unit of group utilization slack (always <= 0)
+	public double getGroupUtilizationSlackCoefficient() {
+		if (!isMandatoryAssignment || sumTargetNumStudentsAssigned == 0) return 0;
+		
+		return -weightMinimizeGroupUtilizationSlacks / sumTargetNumStudentsAssigned;
+	}
+	
+	// Part of the objective function that doesn't depend on any decision
+	public double getConstant() {
+		if (!isMandatoryAssignment) {
+			return (getFulfilledPreferencesNormalizer() != 0) ? 0 : 1;
+		}
+		
+		double constant = weightMinimizeGroupUtilizationSlacks + weightMinimizeOccupiedPeriodsWithNoPreferenceAssigned + weightMinimizeUnwantedOccupiedPeriods
+				+ weightMinimizeAssignmentsToUnwantedGroups;
+		
+		if (sumEnrollmentsTimesAvgGrade == 0) constant += weightMaximizeSumAllAssignments;
+		if (sumAvgGrades == 0) constant += weightMaximizeCompleteStudents;
+		if (targetNumOccupiedTimeslots == 0) constant += weightMaximizeOccupiedTimeslots;
+		if (getFulfilledPreferencesNormalizer() == 0) constant += weightMaximizeFulfilledPreferences;
+		
+		return constant;
+	}
+	
+	public double evaluate(StudentTimetable timetable) {
+		Student student = timetable.getStudent();
+		float avgGrade = student.getAvgGrade();
+		StudentPreference fulfilledPreference = timetable.getFulfilledPreference();
+		double value = 0;
+		
+		if (fulfilledPreference != null && getFulfilledPreferencesNormalizer() != 0) {
+			value += (isMandatoryAssignment ? weightMaximizeFulfilledPreferences : 1) * calculatePreferenceCoefficient(student, fulfilledPreference) / getFulfilledPreferencesNormalizer();
+		}
+		
+		if (isMandatoryAssignment) {
+			if (sumEnrollmentsTimesAvgGrade != 0) {
+				value += weightMaximizeSumAllAssignments * avgGrade * timetable.getNumAssignments() / sumEnrollmentsTimesAvgGrade;
+			}
+			
+			if (sumAvgGrades != 0 && timetable.isComplete()) {
+				value += weightMaximizeCompleteStudents * avgGrade / sumAvgGrades;
+			}
+			
+			if (targetNumOccupiedTimeslots != 0) {
+				value += weightMaximizeOccupiedTimeslots * timetable.calculateNumOccupiedTimeslots() / targetNumOccupiedTimeslots;
+			}
+			
+			if (fulfilledPreference == null) { // Occupied periods only count against students who weren't assigned to one of their preferences
+				int occupiedPeriodMask = timetable.calculateOccupiedPeriodMask();
+				int numUnwantedOccupiedPeriods = Integer.bitCount(occupiedPeriodMask & ~student.getWantedPeriodMask());
+				
+				value -= weightMinimizeOccupiedPeriodsWithNoPreferenceAssigned * Integer.bitCount(occupiedPeriodMask) / (students.size() * 12.);
+				value -= weightMinimizeUnwantedOccupiedPeriods * numUnwantedOccupiedPeriods / (students.size() * 12.);
+			}
+			
+			value -= weightMinimizeAssignmentsToUnwantedGroups * timetable.calculateNumAssignmentsToUnwantedGroups() / (double) sumEnrollments;
+		}
+		
+		timetable.setValue(value);
+		
+		return value;
+	}
+	
+	// Objective value of a complete solution, where students missing from the map aren't assigned to anything
+	public double evaluateSolution(Map<Student, StudentTimetable> timetables) {
+		double value = getConstant();
+		Map<Group, Integer> numStudentsAssigned = new IdentityHashMap<>();
+		
+		for (StudentTimetable timetable : timetables.values()) {
+			value += evaluate(timetable);
+			
+			for (Group group : timetable.getCourseGroupPairs().values()) {
+				numStudentsAssigned.merge(group, 1, Integer::sum);
+			}
+		}
+		
+		double slackCoefficient = getGroupUtilizationSlackCoefficient();
+		
+		if (slackCoefficient != 0) {
+			for (Map.Entry<Group, Float> groupTarget : targetNumStudentsAssigned.entrySet()) {
+				int assigned = numStudentsAssigned.getOrDefault(groupTarget.getKey(), 0);
+				
+				value += slackCoefficient * Math.max(0, groupTarget.getValue() - assigned);
+			}
+		}
+		
+		return value;
+	}
+	
+	// Upper bound on what assigning the student to this course-group pair adds to their timetable's value, assuming the timeslots don't overlap
+	public double calculateAssignmentUpperBound(Student student, Course course, Group group) {
+		if (!isMandatoryAssignment) return 0;
+		
+		double value = 0;
+		
+		if (sumEnrollmentsTimesAvgGrade != 0) value += weightMaximizeSumAllAssignments * student.getAvgGrade() / sumEnrollmentsTimesAvgGrade;
+		if (targetNumOccupiedTimeslots != 0) value += weightMaximizeOccupiedTimeslots * group.getOccupiedTimeslots().cardinality() / targetNumOccupiedTimeslots;
+		if (!student.getWantedCourseGroup(course, group)) value -= weightMinimizeAssignmentsToUnwantedGroups / (double) sumEnrollments;
+		
+		return value;
+	}
+	
+	// Upper bound on the parts of a timetable's value that don't come from individual assignments (complete assignment, fulfilled preference)
+	public double calculateTimetableBonusUpperBound(Student student) {
+		double value = 0;
+		
+		if (isMandatoryAssignment && sumAvgGrades != 0) value += weightMaximizeCompleteStudents * student.getAvgGrade() / sumAvgGrades;
+		
+		if (getFulfilledPreferencesNormalizer() != 0) {
+			double maxPreferenceValue = 0;
+			
+			for (StudentPreference preference : student.getPreferences()) {
+				maxPreferenceValue = Math.max(maxPreferenceValue, calculatePreferenceCoefficient(student, preference) / getFulfilledPreferencesNormalizer());
+			}
+			
+			value += (isMandatoryAssignment ? weightMaximizeFulfilledPreferences : 1) * maxPreferenceValue;
+		}
+		
+		return value;
+	}
+	
+	public double calculatePreferenceCoefficient(Student student, StudentPreference preference) {
+		if (preferenceWeightingMode == PreferenceWeightingMode.EXPONENT) {
+			return gradeWeighting.weigh(student.getAvgGrade()) * (10 - (preference.getOrder() - 1));
+		}
+		else {
+			return student.getAvgGrade() * (10 - (preference.getOrder() - 1));
+		}
+	}
+	
+	private double getFulfilledPreferencesNormalizer() {
+		if (preferenceWeightingMode == PreferenceWeightingMode.EXPONENT) {
+			return sumAvgPow;
+		}
+		else {
+			return sumAvgGrades * 10;
+		}
+	}
+}
@@ -0,0 +1,237 @@
+package ui;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.ModelCache;
+import problem.AssignmentProblem;
+import problem.SolverSettings;
+
+// Local HTTP service so other tools can request assignments without the window. It only listens on the loopback address.
+// POST /jobs with a properties body (see INPUT_KEYS and PARAMETER_KEYS, plus any solver setting) submits a job and returns its id and status,
+// GET /jobs/<id> returns its status and progress and GET /jobs/<id>/<file> returns one of its RESULT_FILES.
+// Results are kept in a directory named after the job's id, so an identical request is answered at once, even after a restart
+public class AssignmentService {
+	private static final String[] INPUT_KEYS = {"courses", "groups", "schedule", "composites", "preferences", "grades"};
+	private static final String[] PARAMETER_KEYS = {"semester", "version", "mandatory", "weighting", "weights"};
+	private static final List<String> RESULT_FILES = Arrays.asList("colocações.csv", "turmas.csv", "estatísticas.txt");
+	
+	private HttpServer server;
+	private ThreadPoolExecutor executor;
+	private String resultsPath;
+	private SolverSettings solverSettings;
+	private Map<String, ServiceJob> jobs;
+	
+	// At most 'workers' jobs are solved at once and at most 'queueCapacity' wait for a worker, further jobs are refused until there's room
+	public AssignmentService(int port, int workers, int queueCapacity, String resultsPath, SolverSettings solverSettings) throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity));
+		this.resultsPath = resultsPath;
+		this.solverSettings = solverSettings;
+		this.jobs = new ConcurrentHashMap<>();
+		
+		server.createContext("/jobs", this::handle);
+	}
+	
+	public void start() {
+		server.start();
+		System.out.println("Assignment service listening on http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/jobs");
+	}
+	
+	public void stop() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+	
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			String[] path = exchange.getRequestURI().getPath().replaceAll("/+$", "").split("/"); // "", "jobs", id, file
+			
+			if (exchange.getRequestMethod().equals("POST") && path.length == 2) {
+				submit(exchange);
+			}
+			else if (exchange.getRequestMethod().equals("GET") && path.length == 3) {
+				ServiceJob job = jobs.get(path[2]);
+				
+				if (job == null) respond(exchange, 404, "Trabalho desconhecido.");
+				else respondJson(exchange, 200, job.toJson());
+			}
+			else if (exchange.getRequestMethod().equals("GET") && path.length == 4) {
+				ServiceJob job = jobs.get(path[2]);
+				
+				if (job == null) respond(exchange, 404, "Trabalho desconhecido.");
+				else if (!RESULT_FILES.contains(path[3])) respond(exchange, 404, "Ficheiro desconhecido.");
+				else if (job.getStatus() != ServiceJob.Status.DONE) respond(exchange, 409, "O trabalho ainda não terminou.");
+				else respondFile(exchange, job.getOutputPath() + path[3]);
+			}
+			else {
+				respond(exchange, 404, "Pedido desconhecido.");
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			respond(exchange, 500, e.toString());
+		} finally {
+			exchange.close();
+		}
+	}
+	
+	private void submit(HttpExchange exchange) throws IOException {
+		Properties parameters = new Properties();
+		parameters.load(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+		
+		String[] inputFilenames = new String[INPUT_KEYS.length];
+		
+		for (int i = 0; i < INPUT_KEYS.length; ++i) {
+			inputFilenames[i] = parameters.getProperty(INPUT_KEYS[i]);
+			
+			if (inputFilenames[i] == null || !new File(inputFilenames[i]).isFile()) {
+				respond(exchange, 400, "Ficheiro de entrada em falta: " + INPUT_KEYS[i]);
+				return;
+			}
+		}
+		
+		for (String key : PARAMETER_KEYS) {
+			if (parameters.getProperty(key) == null) {
+				respond(exchange, 400, "Parâmetro em falta: " + key);
+				return;
+			}
+		}
+		
+		// Every parameter but the file names (their contents are hashed instead), in a fixed order
+		String key = "";
+		
+		for (String name : new TreeSet<>(parameters.stringPropertyNames())) {
+			if (!Arrays.asList(INPUT_KEYS).contains(name)) key += name + "=" + parameters.getProperty(name).trim() + "\n";
+		}
+		
+		String id = ModelCache.hash(inputFilenames, key).substring(0, 16);
+		ServiceJob job;
+		
+		synchronized (jobs) {
+			job = jobs.get(id);
+			
+			if (job == null || job.getStatus() == ServiceJob.Status.FAILED) { // Failed jobs are tried again
+				job = new ServiceJob(id, parameters, resultsPath + id + File.separator);
+				
+				if (new File(job.getOutputPath() + "turmas.csv").exists()) { // turmas.csv is the last file written, so the job was completed before
+					job.setStatus(ServiceJob.Status.DONE);
+				}
+				else {
+					ServiceJob newJob = job;
+					
+					try {
+						executor.execute(() -> run(newJob));
+					} catch (RejectedExecutionException e) {
+						respond(exchange, 503, "A fila de trabalhos está cheia.");
+						return;
+					}
+				}
+				
+				jobs.put(id, job);
+			}
+		}
+		
+		respondJson(exchange, job.getStatus() == ServiceJob.Status.DONE ? 200 : 202, job.toJson());
+	}
+	
+	private void run(ServiceJob job) {
+		job.setStatus(ServiceJob.Status.RUNNING);
+		
+		try {
+			Properties parameters = job.getParameters();
+			String[] weights = parameters.getProperty("weights").split(",");
+			
+			new File(job.getOutputPath()).mkdirs();
+			
+			AssignmentProblem problem = new AssignmentProblem(parameters.getProperty("courses"), parameters.getProperty("groups"), parameters.getProperty("schedule"),
+					parameters.getProperty("composites"), parameters.getProperty("preferences"), parameters.getProperty("grades"),
+					Integer.parseInt(parameters.getProperty("semester").trim()), parameters.getProperty("version").trim(),
+					Boolean.parseBoolean(parameters.getProperty("mandatory").trim()), AssignmentProblem.PreferenceWeightingMode.valueOf(parameters.getProperty("weighting").trim()),
+					Float.parseFloat(weights[0]), Float.parseFloat(weights[1]), Float.parseFloat(weights[2]), Float.parseFloat(weights[3]), Float.parseFloat(weights[4]),
+					Float.parseFloat(weights[5]), Float.parseFloat(weights[6]), Float.parseFloat(weights[7]), job.getOutputPath());
+			
+			SolverSettings jobSolverSettings = solverSettings.copy();
+			jobSolverSettings.load(parameters);
+			
+			problem.setSolverSettings(jobSolverSettings);
+			problem.addProgressListener(job);
+			problem.run();
+			
+			if (new File(job.getOutputPath() + "turmas.csv").exists()) {
+				job.setStatus(ServiceJob.Status.DONE);
+			}
+			else {
+				job.setError("Nenhuma solução encontrada.");
+				job.setStatus(ServiceJob.Status.FAILED);
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+			job.setError(e.toString());
+			job.setStatus(ServiceJob.Status.FAILED);
+		}
+	}
+	
+	private static void respondJson(HttpExchange exchange, int code, String json) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+		send(exchange, code, json.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	private static void respond(HttpExchange exchange, int code, String text) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		send(exchange, code, text.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	private static void respondFile(HttpExchange exchange, String filename) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", (filename.endsWith(".csv") ? "text/csv" : "text/plain") + "; charset=utf-8");
+		send(exchange, 200, Files.readAllBytes(Paths.get(filename)));
+	}
+	
+	private static void send(HttpExchange exchange, int code, byte[] body) throws IOException {
+		exchange.sendResponseHeaders(code, body.length);
+		
+		OutputStream output = exchange.getResponseBody();
+		output.write(body);
+		output.close();
+	}
+	
+	// Options: --port=<port> (8085) --workers=<n> (1) --queue=<n> (16), plus the solver settings every job starts from
+	public static void main(String[] args) {
+		try {
+			List<String> arguments = Arrays.asList(args);
+			SolverSettings solverSettings = new SolverSettings();
+			solverSettings.parseArguments(arguments);
+			
+			int port = 8085, workers = 1, queueCapacity = 16;
+			
+			for (String argument : arguments) {
+				if (argument.startsWith("--port=")) port = Integer.parseInt(argument.substring("--port=".length()));
+				if (argument.startsWith("--workers=")) workers = Integer.parseInt(argument.substring("--workers=".length()));
+				if (argument.startsWith("--queue=")) queueCapacity = Integer.parseInt(argument.substring("--queue=".length()));
+			}
+			
+			new AssignmentService(port, workers, queueCapacity, "res" + File.separator + "output" + File.separator + "serviço" + File.separator, solverSettings).start();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
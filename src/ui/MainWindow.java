@@ -13,6 +13,7 @@ import javax.swing.ButtonGroup;
 import javax.swing.GroupLayout;
 import javax.swing.GroupLayout.Alignment;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
@@ -28,6 +29,7 @@ import javax.swing.UIManager;
 import ilog.concert.IloException;
 import net.miginfocom.swing.MigLayout;
 import problem.AssignmentProblem;
+import problem.SolverSettings;
 
 public class MainWindow {
 	private JFrame frmGroupAssignment;
@@ -75,8 +77,18 @@ public class MainWindow {
 	private JLabel lblOutput;
 	private JTextField txtOutput;
 	private JButton btnOutput;
+	private JPanel panelSolver;
+	private JTextField txtSolverConfig;
+	private JTextField txtThreads;
+	private JCheckBox chckbxOpportunisticParallelMode;
+	private JTextField txtWorkingMemory;
+	private JTextField txtTreeMemoryLimit;
+	private JTextField txtWorkDirectory;
+	private JTextField txtMipGap;
+	private JTextField txtTimeLimit;
 	private JPanel panelOutput;
 	private JTextArea txtOutputArea;
+	private ProgressChart progressChart;
 	
 	/**
 	 * Launch the application.
@@ -353,6 +365,76 @@ public class MainWindow {
 		panelObjectiveWeights.add(txtObjMinimizeAssignmentsToUnwantedGroups, "cell 1 7,alignx leading");
 		txtObjMinimizeAssignmentsToUnwantedGroups.setColumns(3);
 		
+		panelSolver = new JPanel();
+		tabbedPane.addTab("Resolução", null, panelSolver, null);
+		panelSolver.setLayout(new MigLayout("", "[][grow][]", "[][][][][][][][]"));
+		
+		// Empty fields keep the value from the configuration file (or CPLEX's default if there's no file)
+		JLabel lblSolverConfig = new JLabel("Ficheiro de configuração:");
+		panelSolver.add(lblSolverConfig, "cell 0 0,alignx trailing");
+		
+		txtSolverConfig = new JTextField();
+		panelSolver.add(txtSolverConfig, "cell 1 0,growx");
+		txtSolverConfig.setColumns(10);
+		
+		JButton btnSolverConfig = new JButton("Procurar...");
+		panelSolver.add(btnSolverConfig, "cell 2 0");
+		btnSolverConfig.addActionListener(new DirectoryBrowseButtonListener(txtSolverConfig));
+		
+		JLabel lblThreads = new JLabel("Threads (0 = todos os núcleos):");
+		panelSolver.add(lblThreads, "cell 0 1,alignx trailing");
+		
+		txtThreads = new JTextField();
+		txtThreads.setHorizontalAlignment(SwingConstants.CENTER);
+		panelSolver.add(txtThreads, "cell 1 1,alignx leading");
+		txtThreads.setColumns(5);
+		
+		chckbxOpportunisticParallelMode = new JCheckBox("Paralelismo oportunista (não determinístico)");
+		panelSolver.add(chckbxOpportunisticParallelMode, "cell 1 2");
+		
+		JLabel lblWorkingMemory = new JLabel("Memória de trabalho (MB):");
+		panelSolver.add(lblWorkingMemory, "cell 0 3,alignx trailing");
+		
+		txtWorkingMemory = new JTextField();
+		txtWorkingMemory.setHorizontalAlignment(SwingConstants.CENTER);
+		panelSolver.add(txtWorkingMemory, "cell 1 3,alignx leading");
+		txtWorkingMemory.setColumns(5);
+		
+		JLabel lblTreeMemoryLimit = new JLabel("Limite de memória da árvore (MB):");
+		panelSolver.add(lblTreeMemoryLimit, "cell 0 4,alignx trailing");
+		
+		txtTreeMemoryLimit = new JTextField();
+		txtTreeMemoryLimit.setHorizontalAlignment(SwingConstants.CENTER);
+		panelSolver.add(txtTreeMemoryLimit, "cell 1 4,alignx leading");
+		txtTreeMemoryLimit.setColumns(5);
+		
+		JLabel lblWorkDirectory = new JLabel("Diretório de trabalho:");
+		panelSolver.add(lblWorkDirectory, "cell 0 5,alignx trailing");
+		
+		txtWorkDirectory = new JTextField();
+		panelSolver.add(txtWorkDirectory, "cell 1 5,growx");
+		txtWorkDirectory.setColumns(10);
+		
+		JButton btnWorkDirectory = new JButton("Procurar...");
+		panelSolver.add(btnWorkDirectory, "cell 2 5");
+		btnWorkDirectory.addActionListener(new DirectoryBrowseButtonListener(txtWorkDirectory));
+		
+		JLabel lblMipGap = new JLabel("Gap relativo:");
+		panelSolver.add(lblMipGap, "cell 0 6,alignx trailing");
+		
+		txtMipGap = new JTextField();
+		txtMipGap.setHorizontalAlignment(SwingConstants.CENTER);
+		panelSolver.add(txtMipGap, "cell 1 6,alignx leading");
+		txtMipGap.setColumns(5);
+		
+		JLabel lblTimeLimit = new JLabel("Tempo limite (s):");
+		panelSolver.add(lblTimeLimit, "cell 0 7,alignx trailing");
+		
+		txtTimeLimit = new JTextField();
+		txtTimeLimit.setHorizontalAlignment(SwingConstants.CENTER);
+		panelSolver.add(txtTimeLimit, "cell 1 7,alignx leading");
+		txtTimeLimit.setColumns(5);
+		
 		panelOutput = new JPanel();
 		tabbedPane.addTab("Saída", null, panelOutput, null);
 		panelOutput.setLayout(new BorderLayout(0, 0));
@@ -365,26 +447,36 @@ public class MainWindow {
 		JScrollPane outputScrollPane = new JScrollPane(txtOutputArea);
 		panelOutput.add(outputScrollPane);
 		
+		progressChart = new ProgressChart();
+		tabbedPane.addTab("Progresso", null, progressChart, null);
+		
 		JButton btnNewButton = new JButton("Executar");
 		btnNewButton.addActionListener(new ActionListener() {
 			public void actionPerformed(ActionEvent arg0) {
 				int semester = radioButton1stSemester.isSelected() ? 1 : 2;
 				boolean isMandatoryAssignment = radioButtonOptionalCourses.isSelected() ? false : true;
 				
-				try {
-					AssignmentProblem problem = new AssignmentProblem(txtCourses.getText(), txtGroups.getText(), txtGroupSchedules.getText(), txtGroupComposites.getText(),
-							txtStudentPreferences.getText(), txtStudentGrades.getText(), semester, txtProcVersion.getText(), isMandatoryAssignment,
-							AssignmentProblem.PreferenceWeightingMode.EXPONENT, Float.parseFloat(txtObjMaximizeSumAllAssignments.getText()),
-							Float.parseFloat(txtObjMaximizeCompleteStudents.getText()), Float.parseFloat(txtObjMaximizeOccupiedTimeslots.getText()),
-							Float.parseFloat(txtObjMaximizeFulfilledPreferences.getText()), Float.parseFloat(txtObjMinimizeGroupUtilizationSlacks.getText()),
-							Float.parseFloat(txtObjMinimizeOccupiedPeriodsWithNoPreferenceAssigned.getText()), Float.parseFloat(txtObjMinimizeUnwantedOccupiedPeriods.getText()),
-							Float.parseFloat(txtObjMinimizeAssignmentsToUnwantedGroups.getText()), txtOutput.getText() + File.separator);
-					problem.run();
-				} catch (IOException e) {
-					e.printStackTrace();
-				} catch (IloException e) {
-					e.printStackTrace();
-				}
+				progressChart.clear();
+				
+				// Solving runs outside of the event thread, so that the progress chart and the output keep updating
+				new Thread(() -> {
+					try {
+						AssignmentProblem problem = new AssignmentProblem(txtCourses.getText(), txtGroups.getText(), txtGroupSchedules.getText(), txtGroupComposites.getText(),
+								txtStudentPreferences.getText(), txtStudentGrades.getText(), semester, txtProcVersion.getText(), isMandatoryAssignment,
+								AssignmentProblem.PreferenceWeightingMode.EXPONENT, Float.parseFloat(txtObjMaximizeSumAllAssignments.getText()),
+								Float.parseFloat(txtObjMaximizeCompleteStudents.getText()), Float.parseFloat(txtObjMaximizeOccupiedTimeslots.getText()),
+								Float.parseFloat(txtObjMaximizeFulfilledPreferences.getText()), Float.parseFloat(txtObjMinimizeGroupUtilizationSlacks.getText()),
+								Float.parseFloat(txtObjMinimizeOccupiedPeriodsWithNoPreferenceAssigned.getText()), Float.parseFloat(txtObjMinimizeUnwantedOccupiedPeriods.getText()),
+								Float.parseFloat(txtObjMinimizeAssignmentsToUnwantedGroups.getText()), txtOutput.getText() + File.separator);
+						problem.setSolverSettings(readSolverSettings());
+						problem.addProgressListener(progressChart);
+						problem.run();
+					} catch (IOException e) {
+						e.printStackTrace();
+					} catch (IloException e) {
+						e.printStackTrace();
+					}
+				}).start();
 			}
 		});
 		frmGroupAssignment.getContentPane().add(btnNewButton, BorderLayout.SOUTH);
@@ -395,4 +487,20 @@ public class MainWindow {
 			e.printStackTrace();
 		}
 	}
+	
+	private SolverSettings readSolverSettings() throws IOException {
+		SolverSettings solverSettings = new SolverSettings();
+		
+		if (!txtSolverConfig.getText().isEmpty()) solverSettings.load(txtSolverConfig.getText());
+		
+		if (!txtThreads.getText().isEmpty()) solverSettings.setThreads(Integer.parseInt(txtThreads.getText()));
+		if (chckbxOpportunisticParallelMode.isSelected()) solverSettings.setDeterministic(false);
+		if (!txtWorkingMemory.getText().isEmpty()) solverSettings.setWorkingMemory(Integer.parseInt(txtWorkingMemory.getText()));
+		if (!txtTreeMemoryLimit.getText().isEmpty()) solverSettings.setTreeMemoryLimit(Integer.parseInt(txtTreeMemoryLimit.getText()));
+		if (!txtWorkDirectory.getText().isEmpty()) solverSettings.setWorkDirectory(txtWorkDirectory.getText());
+		if (!txtMipGap.getText().isEmpty()) solverSettings.setMipGap(Double.parseDouble(txtMipGap.getText()));
+		if (!txtTimeLimit.getText().isEmpty()) solverSettings.setTimeLimit(Double.parseDouble(txtTimeLimit.getText()));
+		
+		return solverSettings;
+	}
 }
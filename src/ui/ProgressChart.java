@@ -0,0 +1,121 @@
+package ui;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+
+import problem.ProgressListener;
+import problem.ProgressSample;
+
+// Live chart of the incumbent and best bound over the solve time
+public class ProgressChart extends JPanel implements ProgressListener {
+	private static final long serialVersionUID = 1L;
+	private static final int MARGIN = 50;
+	
+	private List<ProgressSample> samples;
+	
+	public ProgressChart() {
+		this.samples = new ArrayList<>();
+		
+		setBackground(Color.WHITE);
+	}
+	
+	public synchronized void clear() {
+		samples.clear();
+		repaint();
+	}
+	
+	@Override
+	public void progressUpdated(ProgressSample sample) {
+		synchronized (this) {
+			samples.add(sample);
+		}
+		
+		SwingUtilities.invokeLater(this::repaint);
+	}
+	
+	@Override
+	protected synchronized void paintComponent(Graphics graphics) {
+		super.paintComponent(graphics);
+		
+		Graphics2D g = (Graphics2D) graphics;
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+		
+		int width = getWidth() - 2 * MARGIN, height = getHeight() - 2 * MARGIN;
+		
+		g.setColor(Color.GRAY);
+		g.drawRect(MARGIN, MARGIN, width, height);
+		
+		if (samples.isEmpty()) {
+			g.drawString("Sem dados de progresso.", MARGIN + 10, MARGIN + 20);
+			return;
+		}
+		
+		double maxTime = Math.max(1e-3, samples.get(samples.size() - 1).getTime());
+		double minValue = Double.POSITIVE_INFINITY, maxValue = Double.NEGATIVE_INFINITY;
+		
+		for (ProgressSample sample : samples) {
+			for (double value : new double[] {sample.getIncumbent(), sample.getBound()}) {
+				if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) > 1e20) continue; // No incumbent or no bound yet
+				
+				minValue = Math.min(minValue, value);
+				maxValue = Math.max(maxValue, value);
+			}
+		}
+		
+		if (minValue > maxValue) return;
+		if (maxValue - minValue < 1e-9) maxValue = minValue + 1e-9;
+		
+		drawSeries(g, true, Color.BLUE, maxTime, minValue, maxValue, width, height);
+		drawSeries(g, false, Color.RED, maxTime, minValue, maxValue, width, height);
+		
+		ProgressSample last = samples.get(samples.size() - 1);
+		
+		g.setColor(Color.BLACK);
+		g.drawString(String.format(Locale.ROOT, "%.4f", maxValue), 5, MARGIN + 5);
+		g.drawString(String.format(Locale.ROOT, "%.4f", minValue), 5, MARGIN + height);
+		g.drawString("0 s", MARGIN, MARGIN + height + 15);
+		g.drawString(String.format(Locale.ROOT, "%.1f s", maxTime), MARGIN + width - 40, MARGIN + height + 15);
+		
+		g.setColor(Color.BLUE);
+		g.drawString("Incumbente", MARGIN, MARGIN - 25);
+		g.setColor(Color.RED);
+		g.drawString("Melhor limite", MARGIN + 90, MARGIN - 25);
+		g.setColor(Color.BLACK);
+		g.drawString(String.format(Locale.ROOT, "Gap: %.4f%%   Nós: %d", last.getGap() * 100, last.getNumNodes()), MARGIN + 200, MARGIN - 25);
+	}
+	
+	// Both series are step functions: each value holds until the next sample changes it
+	private void drawSeries(Graphics2D g, boolean incumbent, Color color, double maxTime, double minValue, double maxValue, int width, int height) {
+		g.setColor(color);
+		g.setStroke(new BasicStroke(2));
+		
+		int lastX = -1, lastY = -1;
+		
+		for (ProgressSample sample : samples) {
+			double value = incumbent ? sample.getIncumbent() : sample.getBound();
+			if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) > 1e20) continue;
+			
+			int x = MARGIN + (int) (sample.getTime() / maxTime * width);
+			int y = MARGIN + height - (int) ((value - minValue) / (maxValue - minValue) * height);
+			
+			if (lastX >= 0) {
+				g.drawLine(lastX, lastY, x, lastY);
+				g.drawLine(x, lastY, x, y);
+			}
+			
+			lastX = x;
+			lastY = y;
+		}
+		
+		if (lastX >= 0) g.drawLine(lastX, lastY, MARGIN + width, lastY);
+	}
+}
@@ -0,0 +1,73 @@
+package ui;
+
+import java.util.Locale;
+import java.util.Properties;
+
+import problem.ProgressListener;
+import problem.ProgressSample;
+
+// A job submitted to the assignment service. Its id is the hash of its input files and parameters, so identical requests are the same job
+public class ServiceJob implements ProgressListener {
+	public enum Status {QUEUED, RUNNING, DONE, FAILED};
+	
+	private String id;
+	private Properties parameters;
+	private String outputPath;
+	private volatile Status status;
+	private volatile ProgressSample lastSample;
+	private volatile String error;
+	
+	public ServiceJob(String id, Properties parameters, String outputPath) {
+		this.id = id;
+		this.parameters = parameters;
+		this.outputPath = outputPath;
+		this.status = Status.QUEUED;
+	}
+	
+	public String getId() {
+		return id;
+	}
+	
+	public Properties getParameters() {
+		return parameters;
+	}
+	
+	public String getOutputPath() {
+		return outputPath;
+	}
+	
+	public Status getStatus() {
+		return status;
+	}
+	
+	public void setStatus(Status status) {
+		this.status = status;
+	}
+	
+	public void setError(String error) {
+		this.error = error;
+	}
+	
+	@Override
+	public void progressUpdated(ProgressSample sample) {
+		lastSample = sample;
+	}
+	
+	public String toJson() {
+		String json = "{\"id\":\"" + id + "\",\"status\":\"" + status.name().toLowerCase() + "\"";
+		ProgressSample sample = lastSample;
+		
+		if (sample != null) {
+			json += ",\"time\":" + toJson(sample.getTime()) + ",\"incumbent\":" + toJson(sample.getIncumbent()) + ",\"bound\":" + toJson(sample.getBound())
+					+ ",\"gap\":" + toJson(sample.getGap()) + ",\"nodes\":" + sample.getNumNodes();
+		}
+		
+		if (error != null) json += ",\"error\":\"" + error.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+		
+		return json + "}";
+	}
+	
+	private static String toJson(double value) {
+		return (Double.isNaN(value) || Double.isInfinite(value)) ? "null" : String.format(Locale.ROOT, "%.6f", value);
+	}
+}